@@ -1,48 +1,44 @@
 -- PostgreSQL Trigger to generate email messages when payslips are approved
 
 -- Function to generate the message content
-CREATE OR REPLACE FUNCTION generate_salary_message()
+-- Runs once per UPDATE statement: the transition tables hold every row the statement changed, so a bulk
+-- approval of a whole month writes all of its messages with a single INSERT ... SELECT
+CREATE OR REPLACE FUNCTION generate_salary_messages()
 RETURNS TRIGGER AS $$
 DECLARE
-    employee_firstname VARCHAR;
-    employee_code VARCHAR;
-    month_name VARCHAR;
     institution VARCHAR := 'Rwanda Government';  -- This could be parameterized or stored in a settings table
 BEGIN
-    -- Get employee details from the employee_code foreign key
-    SELECT e.first_name, e.code INTO employee_firstname, employee_code
-    FROM employees e
-    JOIN payslips p ON e.code = p.employee_code
-    WHERE p.id = NEW.id;
-
-    -- Convert month number to month name
-    SELECT TO_CHAR(TO_DATE(NEW.month::text, 'MM'), 'Month') INTO month_name;
-
-    -- Create message record
+    -- Create one message record per payslip that went from PENDING to PAID
     INSERT INTO messages (
+        id,
         employee_code,
         message_content,
         sent_at,
         month,
         year,
         email_sent_status
-    ) VALUES (
-        employee_code,
-        'Dear ' || employee_firstname || ', your salary for ' || month_name || '/' || NEW.year || 
-        ' from ' || institution || ' amounting to ' || NEW.net_salary || 
-        ' has been credited to your account ' || employee_code || ' successfully.',
+    )
+    SELECT
+        nextval('messages_seq'),
+        e.code,
+        'Dear ' || e.first_name || ', your salary for ' || TO_CHAR(TO_DATE(new_payslip.month::text, 'MM'), 'Month') ||
+        '/' || new_payslip.year || ' from ' || institution || ' amounting to ' || new_payslip.net_salary ||
+        ' has been credited to your account ' || e.code || ' successfully.',
         NOW(),
-        NEW.month,
-        NEW.year,
+        new_payslip.month,
+        new_payslip.year,
         'UNSENT'
-    );
+    FROM new_payslips new_payslip
+    JOIN old_payslips old_payslip ON old_payslip.id = new_payslip.id
+    JOIN employees e ON e.code = new_payslip.employee_code
+    WHERE old_payslip.status = 'PENDING' AND new_payslip.status = 'PAID';
 
-    RETURN NEW;
+    RETURN NULL;
 END;
 $$ LANGUAGE plpgsql;
 
 -- Create the trigger
--- First, check if the trigger exists and drop it if it does
+-- First, drop the trigger if it exists, including the former row-level version and its function
 DO $$
 BEGIN
     -- Check if the trigger exists
@@ -52,17 +48,21 @@ BEGIN
     END IF;
 END $$;
 
+DROP FUNCTION IF EXISTS generate_salary_message();
+
 -- Create the trigger
+-- Statement-level with transition tables; row-level WHEN conditions are not available here, so the
+-- PENDING to PAID filter is in the function's WHERE clause
 CREATE TRIGGER payslip_approval_trigger
 AFTER UPDATE ON payslips
-FOR EACH ROW
-WHEN (OLD.status = 'PENDING' AND NEW.status = 'PAID')
-EXECUTE FUNCTION generate_salary_message();
+REFERENCING OLD TABLE AS old_payslips NEW TABLE AS new_payslips
+FOR EACH STATEMENT
+EXECUTE FUNCTION generate_salary_messages();
 
 -- Instructions for applying this trigger:
 -- 1. Connect to your PostgreSQL database
 -- 2. Run this script to create the trigger
--- 3. The trigger will automatically generate messages when payslips are approved
+-- 3. The trigger will automatically generate messages when payslips are approved, one INSERT per approving statement
 --
 -- Example command to run this script:
 -- psql -U postgres -d erp -f create_email_trigger.sql
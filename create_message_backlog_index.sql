@@ -0,0 +1,20 @@
+-- PostgreSQL partial index for the payslip email backlog
+
+-- The outbox dispatcher and the failed-email retry only ever read messages that are not SENT, which become
+-- a small fraction of the table once payroll has run for a while. Indexing just those rows on
+-- (email_sent_status, id) keeps the index small and lets the claim and the keyset-paginated backlog
+-- pages (WHERE email_sent_status = 'FAILED' AND id > ? ORDER BY id LIMIT ?) read it in order without sorting.
+-- The claim reads each status in its own UNION ALL branch for that reason, and the queries spell the status
+-- as a literal so the planner can match them to this partial index even in a generic plan.
+-- PROCESSING is included so stale claims can be found the same way.
+
+CREATE INDEX IF NOT EXISTS idx_messages_backlog
+    ON messages (email_sent_status, id)
+    WHERE email_sent_status IN ('UNSENT', 'FAILED', 'PROCESSING');
+
+-- Instructions for applying this index:
+-- 1. Connect to your PostgreSQL database
+-- 2. Run this script; CREATE INDEX CONCURRENTLY can be used instead on a busy database
+--
+-- Example command to run this script:
+-- psql -U postgres -d erp -f create_message_backlog_index.sql
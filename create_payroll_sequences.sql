@@ -0,0 +1,23 @@
+-- PostgreSQL migration from IDENTITY ids to the pooled sequences used by PaySlip and Message
+
+-- Hibernate allocates ids in blocks of 50 from these sequences, which lets it batch inserts.
+-- Fresh databases get them from spring.jpa.hibernate.ddl-auto=update; existing databases
+-- need the sequences moved past the ids that the IDENTITY columns already handed out.
+
+CREATE SEQUENCE IF NOT EXISTS payslips_seq START WITH 1 INCREMENT BY 50;
+CREATE SEQUENCE IF NOT EXISTS messages_seq START WITH 1 INCREMENT BY 50;
+
+SELECT setval('payslips_seq', (SELECT COALESCE(MAX(id), 0) + 50 FROM payslips));
+SELECT setval('messages_seq', (SELECT COALESCE(MAX(id), 0) + 50 FROM messages));
+
+-- Ids now come from the sequences (Hibernate or the email trigger), not from the columns
+ALTER TABLE payslips ALTER COLUMN id DROP IDENTITY IF EXISTS;
+ALTER TABLE messages ALTER COLUMN id DROP IDENTITY IF EXISTS;
+
+-- Instructions for applying this migration:
+-- 1. Stop the application
+-- 2. Run this script, then re-run create_email_trigger.sql so the trigger uses messages_seq
+-- 3. Start the application
+--
+-- Example command to run this script:
+-- psql -U postgres -d erp -f create_payroll_sequences.sql
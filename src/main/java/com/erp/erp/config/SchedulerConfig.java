@@ -1,30 +1,63 @@
-//package com.erp.erp.config;
-//
-//import com.erp.erp.services.PayRollService;
-//import org.slf4j.Logger;
-//import org.slf4j.LoggerFactory;
-//import org.springframework.beans.factory.annotation.Autowired;
-//import org.springframework.context.annotation.Configuration;
-//import org.springframework.scheduling.annotation.EnableScheduling;
-//import org.springframework.scheduling.annotation.Scheduled;
-//
-//@Configuration
-//@EnableScheduling
-//public class SchedulerConfig {
-//
-//    private static final Logger logger = LoggerFactory.getLogger(SchedulerConfig.class);
-//
-//    @Autowired
-//    private PayRollService payRollService;
-//
-//    /**
-//     * Scheduled task to process unsent and failed emails.
-//     * Runs every 15 minutes.
-//     */
-//    @Scheduled(fixedRate = 900000) // 15 minutes in milliseconds
-//    public void scheduleEmailProcessing() {
-//        logger.info("Starting scheduled email processing task");
-//        payRollService.processUnsentAndFailedEmails();
-//        logger.info("Completed scheduled email processing task");
-//    }
-//}
\ No newline at end of file
+package com.erp.erp.config;
+
+import com.erp.erp.services.Impl.DistributedPayrollEngine;
+import com.erp.erp.services.Impl.PayrollRunManager;
+import com.erp.erp.services.Impl.PayslipEmailDispatcher;
+import com.erp.erp.services.PayrollJobService;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.scheduling.annotation.EnableScheduling;
+import org.springframework.scheduling.annotation.Scheduled;
+
+@Configuration
+@EnableScheduling
+public class SchedulerConfig {
+
+    @Autowired
+    private DistributedPayrollEngine distributedPayrollEngine;
+
+    @Autowired
+    private PayslipEmailDispatcher payslipEmailDispatcher;
+
+    @Autowired
+    private PayrollJobService payrollJobService;
+
+    @Autowired
+    private PayrollRunManager payrollRunManager;
+
+    /**
+     * Scheduled task to work on the distributed payroll runs started by any node.
+     * Runs every app.payroll.distributed.pollMillis after the previous poll finished.
+     */
+    @Scheduled(fixedDelayString = "${app.payroll.distributed.pollMillis:2000}")
+    public void scheduleDistributedPayrollWork() {
+        distributedPayrollEngine.pollForWork();
+    }
+
+    /**
+     * Scheduled task to send the payslip emails left in the outbox, e.g. those written while this node was down.
+     * Approvals wake the dispatcher directly, so this mainly retries failed messages whose backoff is due.
+     */
+    @Scheduled(fixedDelayString = "${app.payroll.email.pollMillis:60000}")
+    public void scheduleEmailDispatch() {
+        payslipEmailDispatcher.wakeUp();
+    }
+
+    /**
+     * Scheduled task to keep the jobs of this node alive and fail the jobs of nodes that stopped.
+     * Runs every app.payroll.jobHeartbeatMillis, which must stay well below app.payroll.jobStaleSeconds.
+     */
+    @Scheduled(fixedDelayString = "${app.payroll.jobHeartbeatMillis:30000}")
+    public void schedulePayrollJobHeartbeat() {
+        payrollJobService.renewHeartbeats();
+    }
+
+    /**
+     * Scheduled task to keep the payroll runs this node generates from being resumed by another node.
+     * Runs every app.payroll.runHeartbeatMillis, which must stay well below app.payroll.runStaleSeconds.
+     */
+    @Scheduled(fixedDelayString = "${app.payroll.runHeartbeatMillis:30000}")
+    public void schedulePayrollRunHeartbeat() {
+        payrollRunManager.renewHeartbeats();
+    }
+}
@@ -0,0 +1,55 @@
+package com.erp.erp.controllers;
+import com.erp.erp.dto.response.PayrollJobResponseDTO;
+import com.erp.erp.services.PayrollJobService;
+import io.swagger.v3.oas.annotations.Operation;
+import io.swagger.v3.oas.annotations.Parameter;
+import io.swagger.v3.oas.annotations.security.SecurityRequirement;
+import io.swagger.v3.oas.annotations.tags.Tag;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.ResponseEntity;
+import org.springframework.security.access.prepost.PreAuthorize;
+import org.springframework.web.bind.annotation.*;
+
+import java.util.List;
+
+@CrossOrigin(origins = "*", maxAge = 3600)
+@RestController
+@RequestMapping("/api/payslips/jobs")
+@Tag(name = "Payroll Jobs")
+@SecurityRequirement(name = "bearerAuth")
+public class PayrollJobController {
+
+    private static final Logger logger = LoggerFactory.getLogger(PayrollJobController.class);
+
+    @Autowired
+    private PayrollJobService payrollJobService;
+
+    @GetMapping
+    @PreAuthorize("hasRole('ROLE_MANAGER') or hasRole('ROLE_ADMIN')")
+    @Operation(summary = "List recent payroll jobs",
+            description = "Returns the 50 most recent generate and approve jobs, newest first.")
+    public ResponseEntity<List<PayrollJobResponseDTO>> getRecentJobs() {
+        return ResponseEntity.ok(payrollJobService.getRecentJobs());
+    }
+
+    @GetMapping("/{jobId}")
+    @PreAuthorize("hasRole('ROLE_MANAGER') or hasRole('ROLE_ADMIN')")
+    @Operation(summary = "Get a payroll job",
+            description = "Returns the job status with its progress (processed, total, failed), live while it runs and persisted once it finishes.")
+    public ResponseEntity<PayrollJobResponseDTO> getJob(
+            @Parameter(description = "Job ID", required = true) @PathVariable Long jobId) {
+        return ResponseEntity.ok(payrollJobService.getJob(jobId));
+    }
+
+    @PostMapping("/{jobId}/cancel")
+    @PreAuthorize("hasRole('ROLE_MANAGER') or hasRole('ROLE_ADMIN')")
+    @Operation(summary = "Cancel a payroll job",
+            description = "Requests cancellation. A running job stops at its next chunk boundary; work already committed by completed partitions is kept.")
+    public ResponseEntity<PayrollJobResponseDTO> cancelJob(
+            @Parameter(description = "Job ID", required = true) @PathVariable Long jobId) {
+        logger.info("Request to cancel payroll job {}", jobId);
+        return ResponseEntity.ok(payrollJobService.cancelJob(jobId));
+    }
+}
@@ -0,0 +1,37 @@
+package com.erp.erp.controllers;
+import com.erp.erp.dto.request.PayrollSimulationRequestDTO;
+import com.erp.erp.dto.response.PayrollSimulationResponseDTO;
+import com.erp.erp.services.PayrollSimulationService;
+import io.swagger.v3.oas.annotations.Operation;
+import io.swagger.v3.oas.annotations.security.SecurityRequirement;
+import io.swagger.v3.oas.annotations.tags.Tag;
+import jakarta.validation.Valid;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.ResponseEntity;
+import org.springframework.security.access.prepost.PreAuthorize;
+import org.springframework.web.bind.annotation.*;
+
+@CrossOrigin(origins = "*", maxAge = 3600)
+@RestController
+@RequestMapping("/api/payroll/simulations")
+@Tag(name = "Payroll Simulation")
+@SecurityRequirement(name = "bearerAuth")
+public class PayrollSimulationController {
+
+    private static final Logger logger = LoggerFactory.getLogger(PayrollSimulationController.class);
+
+    @Autowired
+    private PayrollSimulationService payrollSimulationService;
+
+    @PostMapping
+    @PreAuthorize("hasRole('ROLE_MANAGER') or hasRole('ROLE_ADMIN')")
+    @Operation(summary = "Simulate a payroll scenario",
+            description = "Computes the payroll of the active roster with changed deduction rates and/or raises, next to the current one, "
+                    + "in total and per department. Nothing is persisted.")
+    public ResponseEntity<PayrollSimulationResponseDTO> simulate(@Valid @RequestBody PayrollSimulationRequestDTO request) {
+        logger.info("Request to simulate payroll: {}", request);
+        return ResponseEntity.ok(payrollSimulationService.simulate(request));
+    }
+}
@@ -1,10 +1,20 @@
 package com.erp.erp.controllers;
+import com.erp.erp.dto.response.EmailDispatcherStatsDTO;
 import com.erp.erp.dto.response.MessageResponseDTO;
+import com.erp.erp.dto.response.PayrollBackfillSummaryDTO;
+import com.erp.erp.dto.response.PayrollJobResponseDTO;
+import com.erp.erp.dto.response.PayrollRunSummaryDTO;
 import com.erp.erp.dto.response.PayslipResponseDTO;
+import com.erp.erp.enums.PayrollEngine;
 import com.erp.erp.exceptions.ValidationException;
 import com.erp.erp.security.services.UserDetailsImpl;
 import com.erp.erp.services.PayRollService;
+import com.erp.erp.services.PayrollJobService;
 import com.erp.erp.services.PayslipPdfService;
+import com.erp.erp.utils.NdjsonWriter;
+import com.erp.erp.utils.PdfFileCache;
+import com.erp.erp.utils.PayrollProgress;
+import com.fasterxml.jackson.databind.ObjectMapper;
 import io.swagger.v3.oas.annotations.Operation;
 import io.swagger.v3.oas.annotations.Parameter;
 import io.swagger.v3.oas.annotations.security.SecurityRequirement;
@@ -12,7 +22,7 @@ import io.swagger.v3.oas.annotations.tags.Tag;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
-import org.springframework.core.io.InputStreamResource;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.MediaType;
@@ -20,11 +30,21 @@ import org.springframework.http.ResponseEntity;
 import org.springframework.security.access.prepost.PreAuthorize;
 import org.springframework.security.core.Authentication;
 import org.springframework.security.core.context.SecurityContextHolder;
+import org.springframework.util.StringUtils;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
-import java.io.InputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
 import java.time.Month;
 import java.util.List;
+import java.util.Map;
+import java.util.function.Consumer;
 
 @CrossOrigin(origins = "*", maxAge = 3600)
 @RestController
@@ -41,6 +61,15 @@ public class PayslipController {
     @Autowired
     private PayslipPdfService payslipPdfService;
 
+    @Autowired
+    private PayrollJobService payrollJobService;
+
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    @Value("${app.payroll.batchSize:500}")
+    private int streamFlushSize;
+
     /**
      * Validates month and year parameters
      * 
@@ -59,32 +88,96 @@ public class PayslipController {
         }
     }
 
+    private boolean acceptsNdjson(String accept) {
+        if (!StringUtils.hasText(accept)) {
+            return false;
+        }
+        return MediaType.parseMediaTypes(accept).stream().anyMatch(MediaType.APPLICATION_NDJSON::equalsTypeAndSubtype);
+    }
+
+    /**
+     * Streams the payslips handed to the sink as NDJSON, flushing every batch, instead of collecting them in a list.
+     * The status line is already sent when the producer runs, so a failure is reported as a final error line.
+     */
+    private ResponseEntity<StreamingResponseBody> streamNdjson(Consumer<Consumer<PayslipResponseDTO>> producer) {
+        StreamingResponseBody body = out -> {
+            NdjsonWriter writer = new NdjsonWriter(out, objectMapper, streamFlushSize);
+            try {
+                producer.accept(writer::write);
+            } catch (UncheckedIOException e) {
+                throw e.getCause(); // Client went away
+            } catch (RuntimeException e) {
+                logger.error("NDJSON stream failed: {}", e.getMessage());
+                writer.write(Map.of("error", String.valueOf(e.getMessage())));
+            }
+            writer.flush();
+        };
+        return ResponseEntity.ok().contentType(MediaType.APPLICATION_NDJSON).body(body);
+    }
+
+    private String currentUsername() {
+        Authentication authentication = SecurityContextHolder.getContext().getAuthentication();
+        return authentication != null ? authentication.getName() : null;
+    }
+
     @PostMapping("/generate")
     @PreAuthorize("hasRole('ROLE_MANAGER')")
     @Operation(summary = "Generate payroll for a given month and year",
-            description = "Manager starts payroll process. System computes and generates salary for all active employees.")
-    public ResponseEntity<List<PayslipResponseDTO>> generatePayroll(
+            description = "Manager starts payroll process. System computes and generates salary for all active employees in a background job; the response is the submitted job, whose progress is available under /api/payslips/jobs. With Accept: application/x-ndjson the run happens in the request instead and every payslip is streamed as one JSON line.")
+    public ResponseEntity<?> generatePayroll(
             @Parameter(description = "Month (1-12)", required = true) @RequestParam int month,
-            @Parameter(description = "Year (e.g., 2025)", required = true) @RequestParam int year) {
+            @Parameter(description = "Year (e.g., 2025)", required = true) @RequestParam int year,
+            @Parameter(description = "Generation engine (SERIAL, PARTITIONED, DATABASE or DISTRIBUTED); defaults to app.payroll.engine. DATABASE generates in PostgreSQL and streams no payslips; DISTRIBUTED shares the run with every node and streams only this node's payslips") @RequestParam(required = false) PayrollEngine engine,
+            @Parameter(description = "Send application/x-ndjson to run in the request and stream each payslip as it is generated") @RequestHeader(value = HttpHeaders.ACCEPT, required = false) String accept) {
         logger.info("Request to generate payroll for {}/{}", month, year);
         validateMonthYearParams(month, year);
-        List<PayslipResponseDTO> generatedPayslips = payrollService.generatePayroll(month, year);
-        logger.info("Generated {} payslips for {}/{}", generatedPayslips.size(), month, year);
-        return ResponseEntity.ok(generatedPayslips);
+        if (acceptsNdjson(accept)) {
+            return streamNdjson(sink -> payrollService.generatePayroll(month, year, engine, new PayrollProgress(), sink));
+        }
+        PayrollJobResponseDTO job = payrollJobService.submitGenerate(month, year, engine, currentUsername());
+        return ResponseEntity.status(HttpStatus.ACCEPTED).body(job);
+    }
+
+    @PostMapping("/generate/incremental")
+    @PreAuthorize("hasRole('ROLE_MANAGER')")
+    @Operation(summary = "Incrementally re-run payroll for a given month and year",
+            description = "Generates payslips for employees that have none and recomputes only the PENDING payslips whose base salary, deduction plan or employee status changed since they were generated.")
+    public ResponseEntity<PayrollRunSummaryDTO> regeneratePayroll(
+            @Parameter(description = "Month (1-12)", required = true) @RequestParam int month,
+            @Parameter(description = "Year (e.g., 2025)", required = true) @RequestParam int year) {
+        logger.info("Request to incrementally re-run payroll for {}/{}", month, year);
+        validateMonthYearParams(month, year);
+        PayrollRunSummaryDTO summary = payrollService.regeneratePayroll(month, year);
+        return ResponseEntity.ok(summary);
+    }
+
+    @PostMapping("/backfill")
+    @PreAuthorize("hasRole('ROLE_MANAGER')")
+    @Operation(summary = "Generate payroll for a range of past months",
+            description = "Generates every month from the start to the end month (inclusive) from one read of the roster and deductions, committing each month separately. Employees that already have a payslip for a month are skipped.")
+    public ResponseEntity<PayrollBackfillSummaryDTO> backfillPayroll(
+            @Parameter(description = "First month (1-12)", required = true) @RequestParam int fromMonth,
+            @Parameter(description = "Year of the first month", required = true) @RequestParam int fromYear,
+            @Parameter(description = "Last month (1-12)", required = true) @RequestParam int toMonth,
+            @Parameter(description = "Year of the last month", required = true) @RequestParam int toYear) {
+        logger.info("Request to backfill payroll from {}/{} to {}/{}", fromMonth, fromYear, toMonth, toYear);
+        validateMonthYearParams(fromMonth, fromYear);
+        validateMonthYearParams(toMonth, toYear);
+        PayrollBackfillSummaryDTO summary = payrollService.backfillPayroll(fromMonth, fromYear, toMonth, toYear);
+        return ResponseEntity.ok(summary);
     }
 
     @PutMapping("/approve")
     @PreAuthorize("hasRole('ROLE_ADMIN')")
     @Operation(summary = "Approve payroll for a given month and year",
-            description = "Admin approves payroll, updating payslip status from PENDING to PAID. This triggers email notifications.")
-    public ResponseEntity<List<PayslipResponseDTO>> approvePayroll(
+            description = "Admin approves payroll, updating payslip status from PENDING to PAID in a background job. This triggers email notifications.")
+    public ResponseEntity<PayrollJobResponseDTO> approvePayroll(
             @Parameter(description = "Month (1-12)", required = true) @RequestParam int month,
             @Parameter(description = "Year (e.g., 2025)", required = true) @RequestParam int year) {
         logger.info("Request to approve payroll for {}/{}", month, year);
         validateMonthYearParams(month, year);
-        List<PayslipResponseDTO> approvedPayslips = payrollService.approvePayroll(month, year);
-        logger.info("Approved {} payslips for {}/{}", approvedPayslips.size(), month, year);
-        return ResponseEntity.ok(approvedPayslips);
+        PayrollJobResponseDTO job = payrollJobService.submitApprove(month, year, currentUsername());
+        return ResponseEntity.status(HttpStatus.ACCEPTED).body(job);
     }
 
     @GetMapping("/my")
@@ -105,17 +198,29 @@ public class PayslipController {
     @GetMapping
     @PreAuthorize("hasRole('ROLE_MANAGER')")
     @Operation(summary = "Get all payslips for a given month and year",
-            description = "Manager can view all payslips for a given period.")
-    public ResponseEntity<List<PayslipResponseDTO>> getAllPayslips(
+            description = "Manager can view all payslips for a given period. With Accept: application/x-ndjson they are streamed as one JSON line each.")
+    public ResponseEntity<?> getAllPayslips(
             @Parameter(description = "Month (1-12)", required = true) @RequestParam int month,
-            @Parameter(description = "Year (e.g., 2025)", required = true) @RequestParam int year) {
+            @Parameter(description = "Year (e.g., 2025)", required = true) @RequestParam int year,
+            @Parameter(description = "Send application/x-ndjson to stream the payslips as one JSON line each") @RequestHeader(value = HttpHeaders.ACCEPT, required = false) String accept) {
         logger.info("Request to get all payslips for {}/{}", month, year);
         validateMonthYearParams(month, year);
+        if (acceptsNdjson(accept)) {
+            return streamNdjson(sink -> payrollService.streamPayslipsForMonthYear(month, year, sink));
+        }
         List<PayslipResponseDTO> payslips = payrollService.getAllPayslipsForMonthYear(month, year);
         logger.info("Retrieved {} payslips for {}/{}", payslips.size(), month, year);
         return ResponseEntity.ok(payslips);
     }
 
+    @GetMapping("/emails/dispatcher")
+    @PreAuthorize("hasRole('ROLE_MANAGER') or hasRole('ROLE_ADMIN')")
+    @Operation(summary = "Get payslip email dispatcher statistics",
+            description = "Current adaptive concurrency limit, emails in flight, outbox queue depth and messages per second of this node.")
+    public ResponseEntity<EmailDispatcherStatsDTO> getEmailDispatcherStats() {
+        return ResponseEntity.ok(payrollService.getEmailDispatcherStats());
+    }
+
     @GetMapping("/{payslipId}")
     @PreAuthorize("hasRole('ROLE_MANAGER') or hasRole('ROLE_ADMIN')")
     @Operation(summary = "Get a specific payslip by its ID (for Manager/Admin)",
@@ -128,7 +233,7 @@ public class PayslipController {
     @PreAuthorize("hasRole('ROLE_EMPLOYEE')")
     @Operation(summary = "Download current employee's payslip as PDF for a given month and year",
             description = "Employee can download their own payslip as PDF.")
-    public ResponseEntity<InputStreamResource> downloadMyPayslipPdf(
+    public ResponseEntity<StreamingResponseBody> downloadMyPayslipPdf(
             @Parameter(description = "Month (1-12)", required = true) @RequestParam int month,
             @Parameter(description = "Year (e.g., 2025)", required = true) @RequestParam int year) {
         validateMonthYearParams(month, year);
@@ -139,25 +244,14 @@ public class PayslipController {
 
         logger.info("Employee {} requesting PDF payslip for {}/{}", employeeCode, month, year);
 
-        InputStream pdfStream = payslipPdfService.generatePayslipPdf(employeeCode, month, year);
-
-        String filename = "payslip_" + employeeCode + "_" + Month.of(month).toString() + "_" + year + ".pdf";
-
-        HttpHeaders headers = new HttpHeaders();
-        headers.add(HttpHeaders.CONTENT_DISPOSITION, "attachment; filename=" + filename);
-
-        return ResponseEntity
-                .ok()
-                .headers(headers)
-                .contentType(MediaType.APPLICATION_PDF)
-                .body(new InputStreamResource(pdfStream));
+        return pdfResponse(employeeCode, month, year);
     }
 
     @GetMapping("/pdf")
     @PreAuthorize("hasRole('ROLE_MANAGER') or hasRole('ROLE_ADMIN')")
     @Operation(summary = "Download a specific employee's payslip as PDF for a given month and year",
             description = "Manager or Admin can download any employee's payslip as PDF.")
-    public ResponseEntity<InputStreamResource> downloadEmployeePayslipPdf(
+    public ResponseEntity<StreamingResponseBody> downloadEmployeePayslipPdf(
             @Parameter(description = "Employee Code", required = true) @RequestParam String employeeCode,
             @Parameter(description = "Month (1-12)", required = true) @RequestParam int month,
             @Parameter(description = "Year (e.g., 2025)", required = true) @RequestParam int year) {
@@ -165,18 +259,56 @@ public class PayslipController {
 
         logger.info("Request to download PDF payslip for employee {} for {}/{}", employeeCode, month, year);
 
-        InputStream pdfStream = payslipPdfService.generatePayslipPdf(employeeCode, month, year);
+        return pdfResponse(employeeCode, month, year);
+    }
 
-        String filename = "payslip_" + employeeCode + "_" + Month.of(month).toString() + "_" + year + ".pdf";
+    // Makes sure the PDF is cached before the response is committed, so a missing payslip still gets its error
+    // status and the length is known, but opens it only in the body, which closes it: a channel opened here would
+    // leak if the body never ran, e.g. when the client disconnects or the async request times out first
+    private ResponseEntity<StreamingResponseBody> pdfResponse(String employeeCode, int month, int year) {
+        Path pdf = payslipPdfService.cachePayslipPdf(employeeCode, month, year);
+        long length;
+        try {
+            length = Files.size(pdf);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
 
         HttpHeaders headers = new HttpHeaders();
-        headers.add(HttpHeaders.CONTENT_DISPOSITION, "attachment; filename=" + filename);
+        headers.add(HttpHeaders.CONTENT_DISPOSITION,
+                "attachment; filename=payslip_" + employeeCode + "_" + Month.of(month).toString() + "_" + year + ".pdf");
 
         return ResponseEntity
                 .ok()
                 .headers(headers)
                 .contentType(MediaType.APPLICATION_PDF)
-                .body(new InputStreamResource(pdfStream));
+                .contentLength(length)
+                .body(out -> {
+                    try (FileChannel channel = openCachedPdf(pdf, length, employeeCode, month, year)) {
+                        PdfFileCache.transferTo(channel, out);
+                    }
+                });
     }
 
+    private FileChannel openCachedPdf(Path pdf, long length, String employeeCode, int month, int year) throws IOException {
+        try {
+            return FileChannel.open(pdf, StandardOpenOption.READ);
+        } catch (NoSuchFileException e) {
+            // Evicted since it was cached: rendered again, which must not change the announced length
+            FileChannel channel = payslipPdfService.openPayslipPdf(employeeCode, month, year);
+            if (channel.size() != length) {
+                closeQuietly(channel);
+                throw new IOException("Payslip PDF of employee " + employeeCode + " changed while being sent");
+            }
+            return channel;
+        }
+    }
+
+    private static void closeQuietly(FileChannel channel) {
+        try {
+            channel.close();
+        } catch (IOException ignored) {
+            // Already failing
+        }
+    }
 }
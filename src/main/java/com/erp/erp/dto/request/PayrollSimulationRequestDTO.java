@@ -0,0 +1,29 @@
+package com.erp.erp.dto.request;
+
+
+import jakarta.validation.constraints.DecimalMin;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.math.BigDecimal;
+import java.util.HashMap;
+import java.util.Map;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class PayrollSimulationRequestDTO {
+    // New rate per deduction name (e.g. "Employee Tax" -> 0.32); an unknown name adds a new deduction
+    private Map<String, BigDecimal> rateOverrides = new HashMap<>();
+
+    // Change to the current rate per deduction name (e.g. "Employee Tax" -> 0.02 for +2 points)
+    private Map<String, BigDecimal> rateDeltas = new HashMap<>();
+
+    // Raise for every employee (e.g. 0.03 for +3%)
+    @DecimalMin(value = "-1.0", inclusive = false, message = "Raise must be greater than -1.0")
+    private BigDecimal raise;
+
+    // Raise per department, applied on top of the global raise (e.g. "Engineering" -> 0.05)
+    private Map<String, BigDecimal> departmentRaises = new HashMap<>();
+}
@@ -0,0 +1,18 @@
+package com.erp.erp.dto.response;
+
+
+import lombok.Data;
+
+@Data
+public class EmailDispatcherStatsDTO {
+    private int concurrencyLimit; // Current adaptive limit on emails in flight on this node
+    private int inFlight; // Emails being sent right now on this node
+    private long queueDepth; // UNSENT messages in the outbox, all nodes
+    private long retryWaiting; // FAILED messages waiting for their next attempt, all nodes
+    private long deadLetters; // DEAD messages that will not be retried, all nodes
+    private int claimedWaiting; // Messages this node claimed that wait for a send slot
+    private double messagesPerSecond; // Emails sent by this node, averaged over the last minute
+    private long sent; // Since this node started
+    private long failed; // Since this node started
+    private long averageLatencyMillis; // Average send latency on this node
+}
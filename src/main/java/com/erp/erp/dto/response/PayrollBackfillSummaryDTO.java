@@ -0,0 +1,30 @@
+package com.erp.erp.dto.response;
+
+
+import com.erp.erp.enums.PayrollRunStatus;
+import lombok.Data;
+import java.util.ArrayList;
+import java.util.List;
+
+@Data
+public class PayrollBackfillSummaryDTO {
+    private int fromMonth;
+    private int fromYear;
+    private int toMonth;
+    private int toYear;
+    private int employeeCount;
+    private int totalGenerated;
+    private int totalSkipped;
+    private long durationMillis;
+    private List<MonthSummary> months = new ArrayList<>();
+
+    @Data
+    public static class MonthSummary {
+        private int month;
+        private int year;
+        private int generated; // Payslips committed for the month
+        private int skipped; // Employees that already had a payslip for the month
+        private PayrollRunStatus status; // COMPLETED, FAILED, or PENDING if the backfill stopped before it
+        private String errorMessage;
+    }
+}
@@ -0,0 +1,27 @@
+package com.erp.erp.dto.response;
+
+
+import com.erp.erp.enums.PayrollEngine;
+import com.erp.erp.enums.PayrollJobStatus;
+import com.erp.erp.enums.PayrollJobType;
+import lombok.Data;
+import java.time.LocalDateTime;
+
+@Data
+public class PayrollJobResponseDTO {
+    private Long id;
+    private PayrollJobType type;
+    private PayrollJobStatus status;
+    private int month;
+    private int year;
+    private PayrollEngine engine;
+    private int total;
+    private int processed;
+    private int failed;
+    private boolean cancelRequested;
+    private String errorMessage;
+    private String requestedBy;
+    private LocalDateTime createdAt;
+    private LocalDateTime startedAt;
+    private LocalDateTime finishedAt;
+}
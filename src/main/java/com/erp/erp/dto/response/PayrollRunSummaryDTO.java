@@ -0,0 +1,16 @@
+package com.erp.erp.dto.response;
+
+
+import lombok.Data;
+
+@Data
+public class PayrollRunSummaryDTO {
+    private int month;
+    private int year;
+    private long deductionPlanVersion;
+    private int added; // Payslips generated for employees that had none
+    private int changed; // PENDING payslips recomputed because their inputs changed
+    private int unchanged; // PENDING payslips whose inputs are the same
+    private int skipped; // Payslips left as is because they are no longer PENDING
+    private long durationMillis;
+}
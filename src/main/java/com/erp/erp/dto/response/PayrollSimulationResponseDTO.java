@@ -0,0 +1,24 @@
+package com.erp.erp.dto.response;
+
+
+import lombok.Data;
+import java.util.ArrayList;
+import java.util.List;
+
+@Data
+public class PayrollSimulationResponseDTO {
+    private long deductionPlanVersion;
+    private int employeeCount;
+    private PayrollTotalsDTO baseline; // Current roster and deductions
+    private PayrollTotalsDTO scenario; // With the requested overrides
+    private List<DepartmentSimulationDTO> departments = new ArrayList<>();
+    private long durationMillis;
+
+    @Data
+    public static class DepartmentSimulationDTO {
+        private String department;
+        private int employeeCount;
+        private PayrollTotalsDTO baseline;
+        private PayrollTotalsDTO scenario;
+    }
+}
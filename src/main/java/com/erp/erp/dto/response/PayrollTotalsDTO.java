@@ -0,0 +1,17 @@
+package com.erp.erp.dto.response;
+
+
+import lombok.Data;
+import java.math.BigDecimal;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+@Data
+public class PayrollTotalsDTO {
+    private BigDecimal baseSalary;
+    private Map<String, BigDecimal> earnings = new LinkedHashMap<>(); // By earning name, e.g. Housing
+    private BigDecimal grossSalary;
+    private Map<String, BigDecimal> deductions = new LinkedHashMap<>(); // By deduction name
+    private BigDecimal totalDeductions;
+    private BigDecimal netSalary;
+}
@@ -18,6 +18,7 @@ public class PayslipResponseDTO {
     private BigDecimal pensionAmount;
     private BigDecimal medicalInsuranceAmount;
     private BigDecimal otherTaxedAmount;
+    private BigDecimal additionalDeductionsAmount;
     private BigDecimal grossSalary;
     private BigDecimal netSalary;
     private int month;
@@ -13,7 +13,8 @@ public class Message {
     // <--- METHOD NEEDED
     @Getter
     @Id
-    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "messages_seq")
+    @SequenceGenerator(name = "messages_seq", sequenceName = "messages_seq", allocationSize = 50) // Pooled ids so inserts can be JDBC-batched
     private Long id;
 
     @Setter
@@ -35,7 +36,20 @@ public class Message {
     @Setter
     @Getter
     @Enumerated(EnumType.STRING)
-    private MessageSentStatus emailSentStatus = MessageSentStatus.UNSENT; // UNSENT, SENT, FAILED
+    private MessageSentStatus emailSentStatus = MessageSentStatus.UNSENT; // UNSENT, PROCESSING, SENT, FAILED, DEAD
+
+    @Getter
+    private LocalDateTime claimedAt; // When a dispatcher marked the message PROCESSING
+
+    // Delivery attempts so far; a FAILED message is retried from nextAttemptAt with exponential backoff
+    @Getter
+    @Column(columnDefinition = "integer not null default 0") // The approval trigger does not set it
+    private int attemptCount;
+    @Getter
+    private LocalDateTime nextAttemptAt;
+    @Getter
+    @Column(columnDefinition = "TEXT")
+    private String lastError;
     // Getters, Setters
 
 }
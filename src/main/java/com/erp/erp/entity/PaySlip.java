@@ -11,7 +11,8 @@ import java.math.BigDecimal;
 })
 public class PaySlip {
     @Id
-    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "payslips_seq")
+    @SequenceGenerator(name = "payslips_seq", sequenceName = "payslips_seq", allocationSize = 50) // Pooled ids so inserts can be JDBC-batched
     private Long id;
 
     @ManyToOne(fetch = FetchType.LAZY)
@@ -24,6 +25,7 @@ public class PaySlip {
     private BigDecimal pensionAmount;
     private BigDecimal medicalInsuranceAmount;
     private BigDecimal otherTaxedAmount;
+    private BigDecimal additionalDeductionsAmount; // Sum of deductions outside the standard ones
     private BigDecimal grossSalary;
     private BigDecimal netSalary;
 
@@ -35,6 +37,8 @@ public class PaySlip {
     @Enumerated(EnumType.STRING)
     @Column(nullable = false)
     private PayslipStatus status; // PENDING, PAID
+
+    private Long inputFingerprint; // Hash of the inputs the amounts were computed from, see DeductionPlan#inputFingerprint
     // Getters, Setters
 
     public PaySlip() {
@@ -106,6 +110,14 @@ public class PaySlip {
         this.otherTaxedAmount = otherTaxedAmount;
     }
 
+    public BigDecimal getAdditionalDeductionsAmount() {
+        return additionalDeductionsAmount;
+    }
+
+    public void setAdditionalDeductionsAmount(BigDecimal additionalDeductionsAmount) {
+        this.additionalDeductionsAmount = additionalDeductionsAmount;
+    }
+
     public BigDecimal getGrossSalary() {
         return grossSalary;
     }
@@ -146,6 +158,14 @@ public class PaySlip {
         this.status = status;
     }
 
+    public Long getInputFingerprint() {
+        return inputFingerprint;
+    }
+
+    public void setInputFingerprint(Long inputFingerprint) {
+        this.inputFingerprint = inputFingerprint;
+    }
+
     // Optional: You might also want an all-arguments constructor if you use it elsewhere
     public PaySlip(Employee employee, BigDecimal houseAmount, BigDecimal transportAmount,
                    BigDecimal employeeTaxedAmount, BigDecimal pensionAmount, BigDecimal medicalInsuranceAmount,
@@ -0,0 +1,61 @@
+package com.erp.erp.entity;
+
+import com.erp.erp.enums.PayrollEngine;
+import com.erp.erp.enums.PayrollJobStatus;
+import com.erp.erp.enums.PayrollJobType;
+import jakarta.persistence.*;
+import lombok.Getter;
+import lombok.Setter;
+
+import java.time.LocalDateTime;
+
+/**
+ * A generate or approve run submitted through the job API. The row is the persisted summary of the run;
+ * live progress of a running job is kept in memory by the node running it, which alone records its outcome.
+ */
+@Getter
+@Setter
+@Entity
+@Table(name = "payroll_jobs")
+public class PayrollJob {
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+
+    @Enumerated(EnumType.STRING)
+    @Column(nullable = false)
+    private PayrollJobType type; // GENERATE, APPROVE
+
+    @Enumerated(EnumType.STRING)
+    @Column(nullable = false)
+    private PayrollJobStatus status; // QUEUED, RUNNING, COMPLETED, FAILED, CANCELLED
+
+    @Column(nullable = false)
+    private int month;
+    @Column(nullable = false)
+    private int year;
+
+    @Enumerated(EnumType.STRING)
+    private PayrollEngine engine; // Only for GENERATE jobs
+
+    private int total;
+    private int processed;
+    private int failed;
+
+    @Column(length = 2000)
+    private String errorMessage;
+
+    private String requestedBy;
+    private LocalDateTime createdAt;
+    private LocalDateTime startedAt;
+    private LocalDateTime finishedAt;
+    // Renewed with the database clock while the job is queued or running on a node; a stale one means the node
+    // stopped without finishing it
+    private LocalDateTime heartbeatAt;
+
+    // Set by a cancel on any node; the node running the job polls it with its heartbeat and stops the job itself
+    @Column(columnDefinition = "boolean not null default false") // Jobs from before the flag existed were not cancelled
+    private boolean cancelRequested;
+
+    public PayrollJob() {}
+}
@@ -0,0 +1,55 @@
+package com.erp.erp.entity;
+
+import com.erp.erp.enums.PayrollEngine;
+import com.erp.erp.enums.PayrollRunStatus;
+import jakarta.persistence.*;
+import lombok.Getter;
+import lombok.Setter;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Durable checkpoint of one payroll generation for a month. The roster is split into employee-code
+ * ranges, one {@link PayrollRunPartition} each, and every committed chunk advances its partition's
+ * checkpoint. A run that did not complete is resumed by the next generation of the same month, unless
+ * it is RUNNING on a node that still renews its heartbeat.
+ */
+@Getter
+@Setter
+@Entity
+@Table(name = "payroll_runs")
+public class PayrollRun {
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+
+    @Column(nullable = false)
+    private int month;
+    @Column(nullable = false)
+    private int year;
+
+    @Enumerated(EnumType.STRING)
+    @Column(nullable = false)
+    private PayrollRunStatus status; // RUNNING, COMPLETED, FAILED, CANCELLED
+
+    @Enumerated(EnumType.STRING)
+    private PayrollEngine engine;
+
+    private long deductionPlanVersion;
+    private int rosterSize;
+
+    private LocalDateTime createdAt;
+    private LocalDateTime updatedAt;
+
+    // Node that started or last resumed the run, and the last time that node reported it alive (database clock)
+    private String owner;
+    private LocalDateTime heartbeatAt;
+
+    @OneToMany(mappedBy = "run", cascade = CascadeType.ALL, orphanRemoval = true)
+    @OrderBy("partitionIndex ASC")
+    private List<PayrollRunPartition> partitions = new ArrayList<>();
+
+    public PayrollRun() {}
+}
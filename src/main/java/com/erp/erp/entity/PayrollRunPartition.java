@@ -0,0 +1,69 @@
+package com.erp.erp.entity;
+
+import com.erp.erp.enums.PayrollRunStatus;
+import jakarta.persistence.*;
+import lombok.Getter;
+import lombok.Setter;
+
+import java.time.LocalDateTime;
+
+/**
+ * One employee-code range of a {@link PayrollRun}: codes greater than {@code fromEmployeeCode} (exclusive,
+ * null for the first range) up to {@code toEmployeeCode} (inclusive, null for the last range).
+ * {@code lastCommittedEmployeeCode} is updated in the same transaction as each chunk of payslips, so the
+ * range can be resumed right after it. With the DISTRIBUTED engine each partition is a unit of work that any
+ * node claims under a time-limited lease.
+ */
+@Getter
+@Setter
+@Entity
+@Table(name = "payroll_run_partitions", uniqueConstraints = {
+        @UniqueConstraint(columnNames = {"run_id", "partition_index"})
+})
+public class PayrollRunPartition {
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+
+    @ManyToOne(fetch = FetchType.LAZY)
+    @JoinColumn(name = "run_id", nullable = false)
+    private PayrollRun run;
+
+    @Column(name = "partition_index", nullable = false)
+    private int partitionIndex;
+
+    private String fromEmployeeCode; // Exclusive lower bound
+    private String toEmployeeCode; // Inclusive upper bound
+    private String lastCommittedEmployeeCode; // Checkpoint; null until the first chunk commits
+
+    @Enumerated(EnumType.STRING)
+    @Column(nullable = false)
+    private PayrollRunStatus status; // PENDING, RUNNING, COMPLETED, FAILED, CANCELLED
+
+    private int processedCount;
+    private LocalDateTime updatedAt;
+
+    // DISTRIBUTED engine: the node working on the partition and until when; an expired lease can be claimed by another node
+    private String leaseOwner;
+    private LocalDateTime leaseExpiresAt;
+
+    public PayrollRunPartition() {}
+
+    /**
+     * Codes are compared with String.compareTo, by code point, like the roster the ranges were cut from and the
+     * ucs_basic range queries of {@link com.erp.erp.repository.EmploymentRepository}.
+     *
+     * @return true if the employee code falls in this partition's range
+     */
+    public boolean covers(String employeeCode) {
+        return (fromEmployeeCode == null || employeeCode.compareTo(fromEmployeeCode) > 0)
+                && (toEmployeeCode == null || employeeCode.compareTo(toEmployeeCode) <= 0);
+    }
+
+    /**
+     * @return true if the employee's payslip was committed by an earlier chunk of this partition
+     */
+    public boolean isCheckpointed(String employeeCode) {
+        return lastCommittedEmployeeCode != null && employeeCode.compareTo(lastCommittedEmployeeCode) <= 0;
+    }
+}
@@ -5,5 +5,6 @@ public enum MessageSentStatus {
     UNSENT,
     PROCESSING,
     SENT,
-    FAILED
+    FAILED,
+    DEAD // Gave up after app.payroll.email.maxAttempts or a permanent failure
 }
\ No newline at end of file
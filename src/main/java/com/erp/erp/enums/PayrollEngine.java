@@ -0,0 +1,9 @@
+package com.erp.erp.enums;
+
+
+public enum PayrollEngine {
+    SERIAL,
+    PARTITIONED,
+    DATABASE,
+    DISTRIBUTED
+}
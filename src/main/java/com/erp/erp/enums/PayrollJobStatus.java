@@ -0,0 +1,10 @@
+package com.erp.erp.enums;
+
+
+public enum PayrollJobStatus {
+    QUEUED,
+    RUNNING,
+    COMPLETED,
+    FAILED,
+    CANCELLED
+}
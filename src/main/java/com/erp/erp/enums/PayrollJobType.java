@@ -0,0 +1,7 @@
+package com.erp.erp.enums;
+
+
+public enum PayrollJobType {
+    GENERATE,
+    APPROVE
+}
@@ -0,0 +1,10 @@
+package com.erp.erp.enums;
+
+
+public enum PayrollRunStatus {
+    PENDING,
+    RUNNING,
+    COMPLETED,
+    FAILED,
+    CANCELLED
+}
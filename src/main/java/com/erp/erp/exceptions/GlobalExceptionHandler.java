@@ -237,6 +237,19 @@ public class GlobalExceptionHandler {
         return new ResponseEntity<>(errorDetails, HttpStatus.INTERNAL_SERVER_ERROR);
     }
 
+    @ExceptionHandler(PayrollException.class)
+    public ResponseEntity<ErrorDetails> handlePayrollException(PayrollException ex, WebRequest request) {
+        ErrorDetails errorDetails = new ErrorDetails(
+                new Date(), 
+                ex.getMessage(), 
+                request.getDescription(false),
+                "PAYROLL_ERROR",
+                HttpStatus.INTERNAL_SERVER_ERROR.value()
+        );
+        logger.error("Payroll error: {}", ex.getMessage());
+        return new ResponseEntity<>(errorDetails, HttpStatus.INTERNAL_SERVER_ERROR);
+    }
+
     // Handle global exceptions
     @ExceptionHandler(Exception.class)
     public ResponseEntity<ErrorDetails> handleGlobalException(Exception ex, WebRequest request) {
@@ -0,0 +1,19 @@
+package com.erp.erp.exceptions;
+
+import org.springframework.http.HttpStatus;
+import org.springframework.web.bind.annotation.ResponseStatus;
+
+/**
+ * Exception thrown when a payroll run cannot be completed.
+ */
+@ResponseStatus(HttpStatus.INTERNAL_SERVER_ERROR)
+public class PayrollException extends RuntimeException {
+
+    public PayrollException(String message) {
+        super(message);
+    }
+
+    public PayrollException(String message, Throwable cause) {
+        super(message, cause);
+    }
+}
@@ -10,6 +10,7 @@ import org.springframework.data.jpa.repository.JpaRepository;
 import org.springframework.data.jpa.repository.Query;
 import org.springframework.stereotype.Repository;
 import org.springframework.data.repository.query.Param;
+import java.util.Collection;
 import java.util.List;
 import java.util.Optional;
 
@@ -17,6 +18,9 @@ import java.util.Optional;
 public interface EmploymentRepository extends JpaRepository<Employment, String> {
     Optional<Employment> findByEmployee(Employee employee);
     Optional<Employment> findByEmployeeCode(String employeeCode);
+
+    @Query("SELECT em FROM Employment em JOIN FETCH em.employee e WHERE e.code IN :employeeCodes")
+    List<Employment> findWithEmployeeByEmployeeCodeIn(@Param("employeeCodes") Collection<String> employeeCodes);
     Boolean existsByCode(String code);
     Boolean existsByEmployeeCode(String employeeCode);
 
@@ -26,4 +30,35 @@ public interface EmploymentRepository extends JpaRepository<Employment, String>
             @Param("employeeStatusParam") EmployeeStatus employeeStatus,
             @Param("employmentStatusParam") EmploymentStatus employmentStatus
     );
+
+    // Department and base salary of every active employment, without loading entities, for payroll simulations
+    @Query("SELECT em.department, em.baseSalary FROM Employment em JOIN em.employee e "
+            + "WHERE e.status = :employeeStatusParam AND em.status = :employmentStatusParam")
+    List<Object[]> findActiveSalariesForSimulation(
+            @Param("employeeStatusParam") EmployeeStatus employeeStatus,
+            @Param("employmentStatusParam") EmploymentStatus employmentStatus
+    );
+
+    // Active employments with codes after afterCode up to upToCode (inclusive), for one range of a distributed payroll run.
+    // The range boundaries are cut from a roster sorted with String.compareTo, so the codes are compared by code point
+    // (ucs_basic) rather than in the database's collation, which orders case, punctuation and digits differently and
+    // would leave some employees in no range and others in two
+    @Query("SELECT em FROM Employment em JOIN FETCH em.employee e WHERE e.status = :employeeStatusParam AND em.status = :employmentStatusParam "
+            + "AND collate(e.code as ucs_basic) > :afterCode AND collate(e.code as ucs_basic) <= :upToCode "
+            + "ORDER BY collate(e.code as ucs_basic)")
+    List<Employment> findActiveEmploymentsForPayrollInRange(
+            @Param("employeeStatusParam") EmployeeStatus employeeStatus,
+            @Param("employmentStatusParam") EmploymentStatus employmentStatus,
+            @Param("afterCode") String afterCode,
+            @Param("upToCode") String upToCode
+    );
+
+    // Same as above for the last, open-ended range
+    @Query("SELECT em FROM Employment em JOIN FETCH em.employee e WHERE e.status = :employeeStatusParam AND em.status = :employmentStatusParam "
+            + "AND collate(e.code as ucs_basic) > :afterCode ORDER BY collate(e.code as ucs_basic)")
+    List<Employment> findActiveEmploymentsForPayrollAfter(
+            @Param("employeeStatusParam") EmployeeStatus employeeStatus,
+            @Param("employmentStatusParam") EmploymentStatus employmentStatus,
+            @Param("afterCode") String afterCode
+    );
 }
@@ -4,9 +4,13 @@ import com.erp.erp.entity.Employee;
 import com.erp.erp.entity.Message;
 import com.erp.erp.enums.MessageSentStatus;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
 import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
+import java.time.LocalDateTime;
+import java.util.Collection;
 import java.util.List;
 
 @Repository
@@ -19,4 +23,65 @@ public interface MessageRepository extends JpaRepository<Message, Long> {
             @Param("month") int month, 
             @Param("year") int year, 
             @Param("status") MessageSentStatus status);
+
+    @Query("SELECT m FROM Message m JOIN FETCH m.employee WHERE m.id IN :ids")
+    List<Message> findWithEmployeeByIdIn(@Param("ids") Collection<Long> ids);
+
+    // Outbox: the oldest UNSENT messages, FAILED ones whose retry is due, and PROCESSING ones whose dispatcher stopped
+    // before finishing them. Each status is read in its own branch, so each walks idx_messages_backlog in id order and
+    // stops after :limit rows; an OR across the statuses with one ORDER BY id cannot use the index that way and sorts
+    // the whole backlog instead. The outer query locks the merged candidates, skipping rows another dispatcher is
+    // claiming instead of waiting for them, and repeats the conditions so a row claimed since the branches read it
+    // is dropped when its lock is acquired
+    @Query(value = "SELECT m.id FROM messages m WHERE m.id IN ("
+            + "(SELECT id FROM messages WHERE email_sent_status = 'UNSENT' ORDER BY id LIMIT :limit) "
+            + "UNION ALL (SELECT id FROM messages WHERE email_sent_status = 'FAILED' "
+            + "AND (next_attempt_at IS NULL OR next_attempt_at <= now()) ORDER BY id LIMIT :limit) "
+            + "UNION ALL (SELECT id FROM messages WHERE email_sent_status = 'PROCESSING' "
+            + "AND claimed_at < now() - make_interval(secs => :claimTimeoutSeconds) ORDER BY id LIMIT :limit)) "
+            + "AND (m.email_sent_status = 'UNSENT' "
+            + "OR (m.email_sent_status = 'FAILED' AND (m.next_attempt_at IS NULL OR m.next_attempt_at <= now())) "
+            + "OR (m.email_sent_status = 'PROCESSING' AND m.claimed_at < now() - make_interval(secs => :claimTimeoutSeconds))) "
+            + "ORDER BY m.id LIMIT :limit FOR UPDATE SKIP LOCKED", nativeQuery = true)
+    List<Long> findDispatchableIdsForUpdate(@Param("limit") int limit, @Param("claimTimeoutSeconds") int claimTimeoutSeconds);
+
+    @Transactional
+    @Modifying
+    @Query("UPDATE Message m SET m.emailSentStatus = :status, m.claimedAt = :now WHERE m.id IN :ids")
+    int markClaimed(@Param("ids") List<Long> ids, @Param("status") MessageSentStatus status, @Param("now") LocalDateTime now);
+
+    @Transactional
+    @Modifying
+    @Query("UPDATE Message m SET m.emailSentStatus = :status, m.sentAt = :sentAt, m.attemptCount = m.attemptCount + 1, "
+            + "m.nextAttemptAt = NULL WHERE m.id = :id")
+    int markSent(@Param("id") Long id, @Param("status") MessageSentStatus status, @Param("sentAt") LocalDateTime sentAt);
+
+    // Records a failed attempt: FAILED with the next attempt after an exponential backoff with jitter, or DEAD once
+    // the attempts run out or the failure is permanent. Uses the database clock like the claim query
+    @Transactional
+    @Modifying
+    @Query(value = "UPDATE messages SET attempt_count = attempt_count + 1, last_error = :error, "
+            + "email_sent_status = CASE WHEN :retryable AND attempt_count + 1 < :maxAttempts THEN 'FAILED' ELSE 'DEAD' END, "
+            + "next_attempt_at = CASE WHEN :retryable AND attempt_count + 1 < :maxAttempts "
+            + "THEN now() + make_interval(secs => LEAST(:maxBackoffSeconds, :baseBackoffSeconds * power(2, attempt_count)) * (0.5 + random() / 2)) "
+            + "ELSE NULL END WHERE id = :id", nativeQuery = true)
+    int recordFailure(@Param("id") Long id, @Param("error") String error, @Param("retryable") boolean retryable,
+                      @Param("maxAttempts") int maxAttempts, @Param("baseBackoffSeconds") int baseBackoffSeconds,
+                      @Param("maxBackoffSeconds") int maxBackoffSeconds);
+
+    long countByEmailSentStatus(MessageSentStatus status);
+
+    // Backlog keyset page: ids of the FAILED messages after the last id of the previous page, from any period.
+    // The status is a literal rather than a parameter so that even a generic plan of the prepared statement can
+    // prove it matches the partial index idx_messages_backlog (create_message_backlog_index.sql)
+    @Query(value = "SELECT id FROM messages WHERE email_sent_status = 'FAILED' AND id > :afterId ORDER BY id LIMIT :limit",
+            nativeQuery = true)
+    List<Long> findFailedIdsAfter(@Param("afterId") long afterId, @Param("limit") int limit);
+
+    // Puts failed messages back in the outbox for the dispatcher without waiting for their backoff. attempt_count is
+    // kept, so a requeued message that fails again still uses up one of its attempts and moves to DEAD after the last
+    @Transactional
+    @Modifying
+    @Query("UPDATE Message m SET m.emailSentStatus = :unsent, m.nextAttemptAt = NULL WHERE m.id IN :ids AND m.emailSentStatus = :failed")
+    int requeueByIdIn(@Param("ids") List<Long> ids, @Param("failed") MessageSentStatus failed, @Param("unsent") MessageSentStatus unsent);
 }
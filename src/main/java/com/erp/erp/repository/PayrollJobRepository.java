@@ -0,0 +1,58 @@
+package com.erp.erp.repository;
+
+import com.erp.erp.entity.PayrollJob;
+import com.erp.erp.enums.PayrollJobStatus;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
+import java.time.LocalDateTime;
+import java.util.Collection;
+import java.util.List;
+
+@Repository
+public interface PayrollJobRepository extends JpaRepository<PayrollJob, Long> {
+    List<PayrollJob> findTop50ByOrderByCreatedAtDesc();
+
+    // Heartbeat times use the database clock so nodes with skewed clocks agree on staleness
+    @Transactional
+    @Modifying
+    @Query(value = "UPDATE payroll_jobs SET heartbeat_at = now() WHERE id IN :ids AND status IN ('QUEUED', 'RUNNING')",
+            nativeQuery = true)
+    int renewHeartbeats(@Param("ids") Collection<Long> ids);
+
+    // Ends the jobs whose node stopped renewing them: FAILED, or CANCELLED if a cancel was requested meanwhile.
+    // Jobs from before heartbeats were recorded count from their creation
+    @Transactional
+    @Modifying
+    @Query(value = "UPDATE payroll_jobs SET status = CASE WHEN cancel_requested THEN 'CANCELLED' ELSE 'FAILED' END, "
+            + "error_message = :errorMessage, finished_at = now() WHERE status IN ('QUEUED', 'RUNNING') "
+            + "AND COALESCE(heartbeat_at, created_at) < now() - make_interval(secs => :staleSeconds)", nativeQuery = true)
+    int failAbandoned(@Param("staleSeconds") int staleSeconds, @Param("errorMessage") String errorMessage);
+
+    @Transactional
+    @Modifying
+    @Query("UPDATE PayrollJob j SET j.cancelRequested = true WHERE j.id = :id AND j.status IN :statuses")
+    int requestCancel(@Param("id") Long id, @Param("statuses") Collection<PayrollJobStatus> statuses);
+
+    @Query("SELECT j.id FROM PayrollJob j WHERE j.id IN :ids AND j.cancelRequested = true")
+    List<Long> findCancelRequestedIds(@Param("ids") Collection<Long> ids);
+
+    // Starts the job only if it is still queued, i.e. no other node ended it as abandoned in the meantime
+    @Transactional
+    @Modifying
+    @Query("UPDATE PayrollJob j SET j.status = :running, j.startedAt = :now WHERE j.id = :id AND j.status = :queued")
+    int markRunning(@Param("id") Long id, @Param("queued") PayrollJobStatus queued, @Param("running") PayrollJobStatus running,
+                    @Param("now") LocalDateTime now);
+
+    // Records the outcome only if the job is still unfinished, so it never overwrites a status another node wrote
+    @Transactional
+    @Modifying
+    @Query("UPDATE PayrollJob j SET j.status = :status, j.total = :total, j.processed = :processed, j.failed = :failed, "
+            + "j.errorMessage = :errorMessage, j.finishedAt = :now WHERE j.id = :id AND j.status IN :statuses")
+    int finish(@Param("id") Long id, @Param("statuses") Collection<PayrollJobStatus> statuses,
+               @Param("status") PayrollJobStatus status, @Param("total") int total, @Param("processed") int processed,
+               @Param("failed") int failed, @Param("errorMessage") String errorMessage, @Param("now") LocalDateTime now);
+}
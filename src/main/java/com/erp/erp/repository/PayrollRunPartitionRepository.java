@@ -0,0 +1,82 @@
+package com.erp.erp.repository;
+
+import com.erp.erp.entity.PayrollRunPartition;
+import com.erp.erp.enums.PayrollRunStatus;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Optional;
+
+@Repository
+public interface PayrollRunPartitionRepository extends JpaRepository<PayrollRunPartition, Long> {
+    List<PayrollRunPartition> findByRunIdOrderByPartitionIndex(Long runId);
+
+    // Advances the checkpoint; runs in the transaction that commits the chunk
+    @Transactional
+    @Modifying
+    @Query("UPDATE PayrollRunPartition p SET p.lastCommittedEmployeeCode = :employeeCode, "
+            + "p.processedCount = p.processedCount + :count, p.updatedAt = :now WHERE p.id = :id")
+    int recordCheckpoint(@Param("id") Long id, @Param("employeeCode") String employeeCode,
+                         @Param("count") int count, @Param("now") LocalDateTime now);
+
+    // Counts employees that were processed without advancing the checkpoint, e.g. skipped because already paid
+    @Transactional
+    @Modifying
+    @Query("UPDATE PayrollRunPartition p SET p.processedCount = p.processedCount + :count, p.updatedAt = :now WHERE p.id = :id")
+    int addProcessedCount(@Param("id") Long id, @Param("count") int count, @Param("now") LocalDateTime now);
+
+    @Transactional
+    @Modifying
+    @Query("UPDATE PayrollRunPartition p SET p.status = :status, p.updatedAt = :now WHERE p.id = :id")
+    int updateStatus(@Param("id") Long id, @Param("status") PayrollRunStatus status, @Param("now") LocalDateTime now);
+
+    // Per-status partition count and processed employees of a run
+    @Query("SELECT p.status, COUNT(p), COALESCE(SUM(p.processedCount), 0) FROM PayrollRunPartition p "
+            + "WHERE p.run.id = :runId GROUP BY p.status")
+    List<Object[]> summarizeByStatus(@Param("runId") Long runId);
+
+    // Makes failed, cancelled and abandoned partitions of a resumed run claimable again; leased partitions are left to their node
+    @Transactional
+    @Modifying
+    @Query("UPDATE PayrollRunPartition p SET p.status = :pending, p.updatedAt = :now WHERE p.run.id = :runId "
+            + "AND (p.status IN :resettable OR (p.status = :running AND p.leaseOwner IS NULL))")
+    int resetUnfinished(@Param("runId") Long runId, @Param("pending") PayrollRunStatus pending,
+                        @Param("resettable") List<PayrollRunStatus> resettable, @Param("running") PayrollRunStatus running,
+                        @Param("now") LocalDateTime now);
+
+    // Next partition of a running run that no node holds: never claimed, or claimed by a node whose lease ran out.
+    // Rows locked by another node's claim or chunk transaction are skipped instead of waited for
+    @Query(value = "SELECT p.id FROM payroll_run_partitions p JOIN payroll_runs r ON r.id = p.run_id "
+            + "WHERE p.run_id = :runId AND r.status = 'RUNNING' "
+            + "AND (p.status = 'PENDING' OR (p.status = 'RUNNING' AND p.lease_expires_at < now())) "
+            + "ORDER BY p.partition_index LIMIT 1 FOR UPDATE OF p SKIP LOCKED", nativeQuery = true)
+    Optional<Long> findClaimablePartitionIdForUpdate(@Param("runId") Long runId);
+
+    // Lease times use the database clock so nodes with skewed clocks agree on expiry
+    @Transactional
+    @Modifying
+    @Query(value = "UPDATE payroll_run_partitions SET status = 'RUNNING', lease_owner = :owner, "
+            + "lease_expires_at = now() + make_interval(secs => :leaseSeconds), updated_at = now() WHERE id = :id", nativeQuery = true)
+    int claim(@Param("id") Long id, @Param("owner") String owner, @Param("leaseSeconds") int leaseSeconds);
+
+    // Succeeds only while the node still holds the lease. The row lock it takes keeps other nodes from
+    // reclaiming the partition until the calling transaction commits
+    @Transactional
+    @Modifying
+    @Query(value = "UPDATE payroll_run_partitions SET lease_expires_at = now() + make_interval(secs => :leaseSeconds), "
+            + "updated_at = now() WHERE id = :id AND lease_owner = :owner AND status = 'RUNNING'", nativeQuery = true)
+    int renewLease(@Param("id") Long id, @Param("owner") String owner, @Param("leaseSeconds") int leaseSeconds);
+
+    // Ends the lease with a final status, if the node still holds it
+    @Transactional
+    @Modifying
+    @Query("UPDATE PayrollRunPartition p SET p.status = :status, p.leaseOwner = NULL, p.leaseExpiresAt = NULL, p.updatedAt = :now "
+            + "WHERE p.id = :id AND p.leaseOwner = :owner")
+    int releaseLease(@Param("id") Long id, @Param("owner") String owner, @Param("status") PayrollRunStatus status,
+                     @Param("now") LocalDateTime now);
+}
@@ -0,0 +1,50 @@
+package com.erp.erp.repository;
+
+import com.erp.erp.entity.PayrollRun;
+import com.erp.erp.enums.PayrollRunStatus;
+import com.erp.erp.enums.PayrollEngine;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
+import java.time.LocalDateTime;
+import java.util.Collection;
+import java.util.List;
+import java.util.Optional;
+
+@Repository
+public interface PayrollRunRepository extends JpaRepository<PayrollRun, Long> {
+    // The latest run of the month that did not complete, i.e. the one to resume
+    Optional<PayrollRun> findFirstByMonthAndYearAndStatusNotOrderByIdDesc(int month, int year, PayrollRunStatus status);
+
+    List<PayrollRun> findByStatusAndEngine(PayrollRunStatus status, PayrollEngine engine);
+
+    // Serializes starting and resuming the runs of one month across nodes until the calling transaction ends, so two
+    // nodes cannot both find no unfinished run and each create one
+    @Query(value = "SELECT 1 FROM pg_advisory_xact_lock(:month, :year)", nativeQuery = true)
+    Integer lockMonth(@Param("month") int month, @Param("year") int year);
+
+    // Locks the run for a start or resume if no live node is running it: it is not RUNNING, belongs to this node,
+    // or its owner stopped renewing the heartbeat. A run another node is locking right now is skipped, not waited for
+    @Query(value = "SELECT id FROM payroll_runs WHERE id = :id AND (status <> 'RUNNING' OR owner IS NULL OR owner = :owner "
+            + "OR heartbeat_at IS NULL OR heartbeat_at < now() - make_interval(secs => :staleSeconds)) "
+            + "FOR UPDATE SKIP LOCKED", nativeQuery = true)
+    Optional<Long> lockResumable(@Param("id") Long id, @Param("owner") String owner, @Param("staleSeconds") int staleSeconds);
+
+    // Heartbeat times use the database clock so nodes with skewed clocks agree on staleness
+    @Transactional
+    @Modifying
+    @Query(value = "UPDATE payroll_runs SET heartbeat_at = now() WHERE id IN :ids AND owner = :owner AND status = 'RUNNING'",
+            nativeQuery = true)
+    int renewHeartbeats(@Param("ids") Collection<Long> ids, @Param("owner") String owner);
+
+    // Completes the run if it is still running and every partition completed; safe to call from every node
+    @Transactional
+    @Modifying
+    @Query("UPDATE PayrollRun r SET r.status = :completed, r.updatedAt = :now WHERE r.id = :id AND r.status = :running "
+            + "AND NOT EXISTS (SELECT p.id FROM PayrollRunPartition p WHERE p.run.id = :id AND p.status <> :completed)")
+    int completeIfAllPartitionsCompleted(@Param("id") Long id, @Param("completed") PayrollRunStatus completed,
+                                         @Param("running") PayrollRunStatus running, @Param("now") LocalDateTime now);
+}
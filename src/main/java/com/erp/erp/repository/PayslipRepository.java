@@ -4,15 +4,136 @@ package com.erp.erp.repository;
 import com.erp.erp.entity.Employee;
 import com.erp.erp.entity.PaySlip;
 import com.erp.erp.enums.PayslipStatus;
+import com.erp.erp.utils.DeductionPlan;
+import jakarta.persistence.QueryHint;
+import org.hibernate.jpa.HibernateHints;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
+import java.util.Collection;
 import java.util.List;
 import java.util.Optional;
+import java.util.stream.Stream;
 
 @Repository
 public interface PayslipRepository extends JpaRepository<PaySlip, Long> {
     boolean existsByEmployeeAndMonthAndYear(Employee employee, int month, int year);
     Optional<PaySlip> findByEmployeeAndMonthAndYear(Employee employee, int month, int year);
     List<PaySlip> findByMonthAndYear(int month, int year);
+    long countByMonthAndYear(int month, int year);
     List<PaySlip> findByMonthAndYearAndStatus(int month, int year, PayslipStatus status);
+
+    // Codes of every employee that already has a payslip for the period, used for set-based duplicate detection
+    @Query("SELECT p.employee.code FROM PaySlip p WHERE p.month = :month AND p.year = :year")
+    List<String> findEmployeeCodesByMonthAndYear(@Param("month") int month, @Param("year") int year);
+
+    // Same as above restricted to the given employees
+    @Query("SELECT p.employee.code FROM PaySlip p WHERE p.month = :month AND p.year = :year AND p.employee.code IN :employeeCodes")
+    List<String> findEmployeeCodesByMonthAndYearAndEmployeeCodeIn(@Param("month") int month, @Param("year") int year,
+                                                                  @Param("employeeCodes") List<String> employeeCodes);
+
+    @Query("SELECT p FROM PaySlip p WHERE p.month = :month AND p.year = :year AND p.employee.code IN :employeeCodes")
+    List<PaySlip> findByMonthAndYearAndEmployeeCodeIn(
+            @Param("month") int month,
+            @Param("year") int year,
+            @Param("employeeCodes") Collection<String> employeeCodes);
+
+    // The payslips of the period with the employee name and base salary, read through a cursor for streaming listings
+    @QueryHints(@QueryHint(name = HibernateHints.HINT_FETCH_SIZE, value = "500"))
+    @Query("SELECT p, e.firstName, e.lastName, em.baseSalary FROM PaySlip p JOIN p.employee e "
+            + "LEFT JOIN Employment em ON em.employee = e WHERE p.month = :month AND p.year = :year ORDER BY e.code")
+    Stream<Object[]> streamWithEmployeeByMonthAndYear(@Param("month") int month, @Param("year") int year);
+
+    // The payslips of the period with the employee name and base salary in one query, instead of a lookup per payslip
+    @Query("SELECT p, e.firstName, e.lastName, em.baseSalary FROM PaySlip p JOIN p.employee e "
+            + "LEFT JOIN Employment em ON em.employee = e WHERE p.month = :month AND p.year = :year ORDER BY e.code")
+    List<Object[]> findWithEmployeeByMonthAndYear(@Param("month") int month, @Param("year") int year);
+
+    // One employee's payslip of the period with the employee name and base salary; empty if there is none
+    @Query("SELECT p, e.firstName, e.lastName, em.baseSalary FROM PaySlip p JOIN p.employee e "
+            + "LEFT JOIN Employment em ON em.employee = e WHERE e.code = :employeeCode AND p.month = :month AND p.year = :year")
+    List<Object[]> findWithEmployeeByEmployeeCodeAndMonthAndYear(@Param("employeeCode") String employeeCode,
+                                                                @Param("month") int month, @Param("year") int year);
+
+    // The given payslips with the employee name and base salary, in the layout of streamWithEmployeeByMonthAndYear
+    @Query("SELECT p, e.firstName, e.lastName, em.baseSalary FROM PaySlip p JOIN p.employee e "
+            + "LEFT JOIN Employment em ON em.employee = e WHERE p.id IN :ids ORDER BY e.code")
+    List<Object[]> findWithEmployeeByIdIn(@Param("ids") Collection<Long> ids);
+
+    /**
+     * Set-based approval: marks every PENDING payslip of the period PAID in one statement, which fires the
+     * statement-level payslip_approval_trigger (create_email_trigger.sql) once to write all the outbox messages.
+     *
+     * <p>
+     * Not {@link Modifying}: that runs the statement with executeUpdate, which can only return a row count, while
+     * the ids come back as the result set of RETURNING. The statement therefore bypasses the persistence context
+     * like any bulk update, and the caller clears it afterwards so no stale PENDING payslip is read back. It has
+     * no transaction of its own and must run in the caller's; outside one it would get the repository's read-only
+     * default and PostgreSQL would reject the UPDATE.
+     *
+     * @return the ids of the approved payslips
+     */
+    @Query(value = "UPDATE payslips SET status = 'PAID' WHERE month = :month AND year = :year AND status = 'PENDING' RETURNING id",
+            nativeQuery = true)
+    List<Long> approvePendingByMonthAndYear(@Param("month") int month, @Param("year") int year);
+
+    /**
+     * Set-based generation (DATABASE engine): computes the PENDING payslips of every active employee in PostgreSQL
+     * with one INSERT ... SELECT, skipping employees that already have one through the unique constraint.
+     * ROUND(x, 2) on numeric rounds half away from zero, which is HALF_UP for these non-negative amounts, and every
+     * amount is rounded exactly where {@link com.erp.erp.utils.DeductionPlan} rounds it. Deductions outside the
+     * standard names are summed into additional_deductions_amount. input_fingerprint is left NULL, so the
+     * incremental re-run recomputes these rows once.
+     *
+     * @return the number of payslips inserted
+     */
+    @Transactional
+    @Modifying
+    @Query(nativeQuery = true, value = "INSERT INTO payslips (id, employee_code, month, year, status, house_amount, transport_amount, "
+            + "employee_taxed_amount, pension_amount, medical_insurance_amount, other_taxed_amount, "
+            + "additional_deductions_amount, gross_salary, net_salary) "
+            + "SELECT nextval('payslips_seq'), a.employee_code, :month, :year, 'PENDING', a.house, a.transport, "
+            + "a.tax, a.pension, a.medical, a.others, a.additional, "
+            + "ROUND(a.base + a.house + a.transport, 2), "
+            + "ROUND(a.base + a.house + a.transport - (a.tax + a.pension + a.medical + a.others + a.additional), 2) "
+            + "FROM (SELECT em.employee_code, em.base_salary AS base, "
+            + "ROUND(em.base_salary * r.housing, 2) AS house, "
+            + "ROUND(em.base_salary * r.transport, 2) AS transport, "
+            + "ROUND(em.base_salary * r.tax, 2) AS tax, "
+            + "ROUND(em.base_salary * r.pension, 2) AS pension, "
+            + "ROUND(em.base_salary * r.medical, 2) AS medical, "
+            + "ROUND(em.base_salary * r.others, 2) AS others, "
+            + "(SELECT COALESCE(SUM(ROUND(em.base_salary * d.percentage, 2)), 0) FROM deductions d "
+            + "WHERE d.deduction_name NOT IN ('" + DeductionPlan.HOUSING + "', '" + DeductionPlan.TRANSPORT + "', '"
+            + DeductionPlan.EMPLOYEE_TAX + "', '" + DeductionPlan.PENSION + "', '" + DeductionPlan.MEDICAL_INSURANCE + "', '"
+            + DeductionPlan.OTHERS + "')) AS additional "
+            + "FROM employments em "
+            + "JOIN employees e ON e.code = em.employee_code "
+            + "CROSS JOIN (SELECT "
+            + "COALESCE(MAX(percentage) FILTER (WHERE deduction_name = '" + DeductionPlan.HOUSING + "'), 0) AS housing, "
+            + "COALESCE(MAX(percentage) FILTER (WHERE deduction_name = '" + DeductionPlan.TRANSPORT + "'), 0) AS transport, "
+            + "COALESCE(MAX(percentage) FILTER (WHERE deduction_name = '" + DeductionPlan.EMPLOYEE_TAX + "'), 0) AS tax, "
+            + "COALESCE(MAX(percentage) FILTER (WHERE deduction_name = '" + DeductionPlan.PENSION + "'), 0) AS pension, "
+            + "COALESCE(MAX(percentage) FILTER (WHERE deduction_name = '" + DeductionPlan.MEDICAL_INSURANCE + "'), 0) AS medical, "
+            + "COALESCE(MAX(percentage) FILTER (WHERE deduction_name = '" + DeductionPlan.OTHERS + "'), 0) AS others "
+            + "FROM deductions) r "
+            + "WHERE e.status = 'ACTIVE' AND em.status = 'ACTIVE' AND em.base_salary IS NOT NULL) a "
+            + "ON CONFLICT (employee_code, month, year) DO NOTHING")
+    int insertPendingPayslipsForActiveEmployees(@Param("month") int month, @Param("year") int year);
+
+    // Just what an incremental run compares, so the payslips of the period are not loaded as entities
+    @Query("SELECT p.id AS id, p.employee.code AS employeeCode, p.status AS status, p.inputFingerprint AS inputFingerprint "
+            + "FROM PaySlip p WHERE p.month = :month AND p.year = :year")
+    List<PayslipFingerprintView> findFingerprintsByMonthAndYear(@Param("month") int month, @Param("year") int year);
+
+    interface PayslipFingerprintView {
+        Long getId();
+        String getEmployeeCode();
+        PayslipStatus getStatus();
+        Long getInputFingerprint();
+    }
 }
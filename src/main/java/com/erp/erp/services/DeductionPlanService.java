@@ -0,0 +1,18 @@
+package com.erp.erp.services;
+
+import com.erp.erp.utils.DeductionPlan;
+
+public interface DeductionPlanService {
+
+    /**
+     * Returns the compiled plan for the current deductions, compiling and caching it on first use.
+     *
+     * @return the current deduction plan
+     */
+    DeductionPlan getCurrentPlan();
+
+    /**
+     * Drops the cached plan once the current transaction commits, or immediately outside a transaction.
+     */
+    void invalidate();
+}
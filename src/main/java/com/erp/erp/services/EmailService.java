@@ -5,13 +5,33 @@ import com.erp.erp.entity.Employment;
 import com.erp.erp.entity.PaySlip;
 import org.springframework.core.io.InputStreamSource;
 
+import java.util.List;
 import java.util.Map;
 
 public interface EmailService {
+
+    /**
+     * A prepared email for {@link #sendBatch(List)}; the attachment fields are null for an email without attachment.
+     */
+    record OutgoingEmail(String to, String subject, String htmlBody,
+                         String attachmentName, InputStreamSource attachmentSource, String contentType) {
+    }
+
     void sendSimpleMailMessage(String to, String subject, String text);
     void sendHtmlEmail(String to, String subject, String htmlBody);
     void sendEmailWithAttachment(String to, String subject, String text, String attachmentName, InputStreamSource attachmentSource, String contentType);
 
+    /**
+     * Send HTML emails over as few SMTP connections as possible: a connection (connect, STARTTLS and
+     * authentication) stays open between batches and carries up to app.mail.messagesPerConnection messages
+     * before it is recycled, and a connection lost mid-batch is reopened for the remaining messages.
+     * Concurrent batches each send over their own connection.
+     *
+     * @param emails the emails to send
+     * @return the failure of every email that was not sent, keyed by its index in {@code emails}; empty if all were sent
+     */
+    Map<Integer, Exception> sendBatch(List<OutgoingEmail> emails);
+
     /**
      * Process a Thymeleaf template and return the processed HTML
      * 
@@ -0,0 +1,38 @@
+package com.erp.erp.services.Impl;
+
+import com.erp.erp.repository.PayslipRepository;
+import com.erp.erp.utils.PayrollProgress;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Generates a month's payslips inside PostgreSQL with a single INSERT ... SELECT, so no employment or payslip
+ * row travels to the JVM. The statement is atomic and idempotent through ON CONFLICT DO NOTHING, so it needs
+ * no checkpoints: a failed run leaves nothing behind and a repeated run only adds missing employees.
+ * It produces no per-payslip output; list the month afterwards to read the rows.
+ */
+@Component
+public class DatabasePayrollEngine {
+
+    private static final Logger logger = LoggerFactory.getLogger(DatabasePayrollEngine.class);
+
+    @Autowired
+    private PayslipRepository payslipRepository;
+
+    /**
+     * @return the number of payslips inserted
+     */
+    public int generate(int month, int year, PayrollProgress progress) {
+        long startedAt = System.nanoTime();
+        int inserted = payslipRepository.insertPendingPayslipsForActiveEmployees(month, year);
+        progress.setTotal(inserted);
+        progress.addProcessed(inserted);
+        logger.info("Inserted {} payslips for {}-{} in the database in {} ms",
+                inserted, month, year, TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - startedAt));
+        return inserted;
+    }
+}
@@ -0,0 +1,65 @@
+package com.erp.erp.services.Impl;
+
+import com.erp.erp.repository.DeductionRepository;
+import com.erp.erp.services.DeductionPlanService;
+import com.erp.erp.utils.DeductionPlan;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+@Service
+public class DeductionPlanServiceImpl implements DeductionPlanService {
+
+    private static final Logger logger = LoggerFactory.getLogger(DeductionPlanServiceImpl.class);
+
+    @Autowired
+    private DeductionRepository deductionRepository;
+
+    private volatile DeductionPlan cachedPlan;
+
+    // Bumped on every invalidation so a compile that raced with a change is not cached
+    private long generation;
+
+    @Override
+    public DeductionPlan getCurrentPlan() {
+        DeductionPlan plan = cachedPlan;
+        if (plan != null) {
+            return plan;
+        }
+
+        long compiledGeneration;
+        synchronized (this) {
+            compiledGeneration = generation;
+        }
+        plan = DeductionPlan.compile(deductionRepository.findAll());
+        synchronized (this) {
+            if (generation == compiledGeneration) {
+                cachedPlan = plan;
+            }
+        }
+        logger.info("Compiled deduction plan version {} with {} deduction slots", Long.toHexString(plan.getVersion()), plan.getDeductionSlotCount());
+        return plan;
+    }
+
+    @Override
+    public void invalidate() {
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    clear();
+                }
+            });
+        }
+        // Also clear right away so this transaction's own reads do not reuse the old plan
+        clear();
+    }
+
+    private synchronized void clear() {
+        generation++;
+        cachedPlan = null;
+    }
+}
@@ -4,6 +4,7 @@ import com.erp.erp.dto.request.DeductionDTO;
 import com.erp.erp.entity.Deduction;
 import com.erp.erp.exceptions.ResourceNotFoundException;
 import com.erp.erp.repository.DeductionRepository;
+import com.erp.erp.services.DeductionPlanService;
 import com.erp.erp.services.DeductionService;
 import org.springframework.beans.BeanUtils;
 import org.springframework.beans.factory.annotation.Autowired;
@@ -19,6 +20,9 @@ public class DeductionServiceImpl implements DeductionService {
     @Autowired
     private DeductionRepository deductionRepository;
 
+    @Autowired
+    private DeductionPlanService deductionPlanService;
+
     @Override
     @Transactional
     public Deduction createDeduction(DeductionDTO deductionDTO) {
@@ -37,7 +41,9 @@ public class DeductionServiceImpl implements DeductionService {
         }
 
 
-        return deductionRepository.save(deduction);
+        Deduction savedDeduction = deductionRepository.save(deduction);
+        deductionPlanService.invalidate();
+        return savedDeduction;
     }
 
     @Override
@@ -71,7 +77,9 @@ public class DeductionServiceImpl implements DeductionService {
 
         deduction.setDeductionName(deductionDTO.getDeductionName());
         deduction.setPercentage(deductionDTO.getPercentage());
-        return deductionRepository.save(deduction);
+        Deduction updatedDeduction = deductionRepository.save(deduction);
+        deductionPlanService.invalidate();
+        return updatedDeduction;
     }
 
     @Override
@@ -81,5 +89,6 @@ public class DeductionServiceImpl implements DeductionService {
             throw new ResourceNotFoundException("Deduction not found with code: " + code);
         }
         deductionRepository.deleteById(code);
+        deductionPlanService.invalidate();
     }
 }
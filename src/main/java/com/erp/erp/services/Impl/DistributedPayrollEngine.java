@@ -0,0 +1,262 @@
+package com.erp.erp.services.Impl;
+
+import com.erp.erp.dto.response.PayslipResponseDTO;
+import com.erp.erp.entity.Employment;
+import com.erp.erp.entity.PayrollRun;
+import com.erp.erp.entity.PayrollRunPartition;
+import com.erp.erp.enums.EmployeeStatus;
+import com.erp.erp.enums.EmploymentStatus;
+import com.erp.erp.enums.PayrollEngine;
+import com.erp.erp.enums.PayrollRunStatus;
+import com.erp.erp.exceptions.PayrollException;
+import com.erp.erp.repository.EmploymentRepository;
+import com.erp.erp.repository.PayrollRunPartitionRepository;
+import com.erp.erp.repository.PayrollRunRepository;
+import com.erp.erp.repository.PayslipRepository;
+import com.erp.erp.services.DeductionPlanService;
+import com.erp.erp.utils.DeductionPlan;
+import com.erp.erp.utils.PayrollProgress;
+import jakarta.annotation.PostConstruct;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+
+/**
+ * Spreads a payroll run over every app node sharing the database. The run is cut into small partitions in
+ * payroll_run_partitions; any node claims the next free one with SELECT ... FOR UPDATE SKIP LOCKED, so nodes never
+ * wait on each other, and holds it under a lease. Each partition commits in one transaction fenced by its lease,
+ * and a partition whose node died is claimed again once the lease expires.
+ * The node that received the request coordinates: it works on the run like any other node, then waits for the
+ * partitions held elsewhere and closes the run. Every node also polls for running distributed runs on a schedule
+ * (see {@link com.erp.erp.config.SchedulerConfig}), so throughput grows with the number of nodes.
+ */
+@Component
+public class DistributedPayrollEngine {
+
+    private static final Logger logger = LoggerFactory.getLogger(DistributedPayrollEngine.class);
+
+    // Keeps IN lists well below PostgreSQL's bind parameter limit
+    private static final int IN_CLAUSE_CHUNK_SIZE = 1000;
+
+    // Partitions of a run per status, and the employees their checkpoints count as processed
+    private record PartitionSummary(int unfinished, int failed, long processed) {
+    }
+
+    @Autowired
+    private PayrollRunManager payrollRunManager;
+
+    @Autowired
+    private PayrollRunRepository payrollRunRepository;
+
+    @Autowired
+    private PayrollRunPartitionRepository partitionRepository;
+
+    @Autowired
+    private PayrollPartitionProcessor partitionProcessor;
+
+    @Autowired
+    private EmploymentRepository employmentRepository;
+
+    @Autowired
+    private PayslipRepository payslipRepository;
+
+    @Autowired
+    private DeductionPlanService deductionPlanService;
+
+    @Value("${app.payroll.distributed.chunkSize:1000}")
+    private int chunkSize;
+
+    @Value("${app.payroll.distributed.leaseSeconds:120}")
+    private int leaseSeconds;
+
+    @Value("${app.payroll.distributed.pollMillis:2000}")
+    private long pollMillis;
+
+    @Value("${app.payroll.distributed.worker:true}")
+    private boolean workerEnabled;
+
+    // Lease owner of this node; unique per process so a restarted node does not inherit its old leases
+    private String nodeId;
+
+    @PostConstruct
+    public void init() {
+        nodeId = payrollRunManager.getNodeId();
+        logger.info("Distributed payroll node id: {} (worker {})", nodeId, workerEnabled ? "enabled" : "disabled");
+    }
+
+    /**
+     * @return how many partitions to cut a roster of the given size into
+     */
+    public int partitionsFor(int rosterSize) {
+        return Math.max(1, (rosterSize + chunkSize - 1) / chunkSize);
+    }
+
+    /**
+     * Works on the run from this node, then waits until no partition is left on any node and closes the run.
+     *
+     * @param run the started or resumed run
+     * @param progress the progress of the run: processed is the employees committed by all nodes, read from the
+     *                 partition checkpoints after every partition of this node and every poll; failed counts this node's
+     *                 failed partitions
+     * @param sink receives the payslips generated on this node only
+     * @throws PayrollException if partitions failed; committed partitions stay committed
+     * @throws CancellationException if the run was cancelled; other nodes stop claiming, partitions in flight finish
+     */
+    public void generate(PayrollRun run, PayrollProgress progress, Consumer<PayslipResponseDTO> sink) {
+        logger.info("Coordinating distributed payroll run {} for {}-{} ({} partitions)",
+                run.getId(), run.getMonth(), run.getYear(), run.getPartitions().size());
+        long startedAt = System.nanoTime();
+        // This node's own work; its live count includes uncommitted rows, so the run's progress is read from the checkpoints
+        PayrollProgress localProgress = new PayrollProgress(progress);
+        try {
+            while (true) {
+                progress.checkCancelled();
+                // Also picks up partitions whose node died once their lease expired
+                drain(run, localProgress, sink, () -> summarize(run, progress));
+
+                PartitionSummary summary = summarize(run, progress);
+                long processed = summary.processed();
+                if (summary.unfinished() == 0) {
+                    if (summary.failed() > 0) {
+                        payrollRunManager.finish(run, PayrollRunStatus.FAILED);
+                        throw new PayrollException("Payroll generation failed for " + summary.failed() + " of " + run.getPartitions().size()
+                                + " partitions; committed partitions were kept, re-run to resume");
+                    }
+                    payrollRunManager.completeIfDone(run.getId());
+                    run.setStatus(PayrollRunStatus.COMPLETED);
+                    long elapsedNanos = System.nanoTime() - startedAt;
+                    logger.info("Distributed payroll run {} for {}-{} completed: {} employees in {} ms ({} rows/sec)",
+                            run.getId(), run.getMonth(), run.getYear(), processed, TimeUnit.NANOSECONDS.toMillis(elapsedNanos),
+                            String.format("%.1f", elapsedNanos > 0 ? processed * 1_000_000_000.0 / elapsedNanos : 0));
+                    return;
+                }
+                Thread.sleep(pollMillis);
+            }
+        } catch (CancellationException e) {
+            payrollRunManager.finish(run, PayrollRunStatus.CANCELLED);
+            throw e;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new PayrollException("Interrupted while waiting for distributed payroll partitions", e);
+        }
+    }
+
+    /**
+     * Claims and generates partitions of every running distributed run until none is left to claim.
+     * Called on a schedule on every node.
+     */
+    public void pollForWork() {
+        if (!workerEnabled) {
+            return;
+        }
+        for (PayrollRun run : payrollRunRepository.findByStatusAndEngine(PayrollRunStatus.RUNNING, PayrollEngine.DISTRIBUTED)) {
+            try {
+                drain(run, new PayrollProgress(), payslip -> {}, () -> {});
+            } catch (RuntimeException e) {
+                logger.error("Distributed payroll worker failed on run {}: {}", run.getId(), e.getMessage());
+            }
+        }
+    }
+
+    /**
+     * Sets the run's processed count to what the partition checkpoints of every node add up to.
+     */
+    private PartitionSummary summarize(PayrollRun run, PayrollProgress progress) {
+        int unfinished = 0;
+        int failed = 0;
+        long processed = 0;
+        for (Object[] row : partitionRepository.summarizeByStatus(run.getId())) {
+            PayrollRunStatus status = (PayrollRunStatus) row[0];
+            int count = ((Number) row[1]).intValue();
+            processed += ((Number) row[2]).longValue();
+            if (status == PayrollRunStatus.PENDING || status == PayrollRunStatus.RUNNING) {
+                unfinished += count;
+            } else if (status != PayrollRunStatus.COMPLETED) {
+                failed += count;
+            }
+        }
+        progress.setProcessed((int) processed);
+        return new PartitionSummary(unfinished, failed, processed);
+    }
+
+    /**
+     * @param afterPartition called after every partition this node completed or failed
+     */
+    private void drain(PayrollRun run, PayrollProgress progress, Consumer<PayslipResponseDTO> sink, Runnable afterPartition) {
+        DeductionPlan plan = deductionPlanService.getCurrentPlan();
+        if (plan.getVersion() != run.getDeductionPlanVersion()) {
+            logger.warn("Deductions changed since payroll run {} started; this node uses the current plan", run.getId());
+        }
+        Long partitionId;
+        while ((partitionId = payrollRunManager.claimPartition(run.getId(), nodeId, leaseSeconds)) != null) {
+            processPartition(run, partitionId, plan, progress, sink);
+            afterPartition.run();
+        }
+    }
+
+    private void processPartition(PayrollRun run, Long partitionId, DeductionPlan plan, PayrollProgress progress,
+                                  Consumer<PayslipResponseDTO> sink) {
+        // Employees of the partition this node attempts; counted as failed if the partition fails here
+        int attempted = 0;
+        try {
+            PayrollRunPartition partition = partitionRepository.findById(partitionId)
+                    .orElseThrow(() -> new PayrollException("Payroll run partition " + partitionId + " no longer exists"));
+            // Resumes after the checkpoint if an earlier attempt committed part of the range
+            String afterCode = partition.getLastCommittedEmployeeCode() != null ? partition.getLastCommittedEmployeeCode()
+                    : partition.getFromEmployeeCode() != null ? partition.getFromEmployeeCode() : "";
+            List<Employment> employments = partition.getToEmployeeCode() != null
+                    ? employmentRepository.findActiveEmploymentsForPayrollInRange(EmployeeStatus.ACTIVE, EmploymentStatus.ACTIVE,
+                            afterCode, partition.getToEmployeeCode())
+                    : employmentRepository.findActiveEmploymentsForPayrollAfter(EmployeeStatus.ACTIVE, EmploymentStatus.ACTIVE, afterCode);
+            // Employees already paid this period are left out here rather than by the processor, which expects the whole month's codes;
+            // the partition's checkpoint still counts them as processed
+            Set<String> existingEmployeeCodes = findExistingEmployeeCodes(employments, run.getMonth(), run.getYear());
+            if (!existingEmployeeCodes.isEmpty()) {
+                employments = employments.stream()
+                        .filter(employment -> !existingEmployeeCodes.contains(employment.getEmployee().getCode()))
+                        .toList();
+                progress.addProcessed(existingEmployeeCodes.size());
+            }
+
+            attempted = employments.size();
+            boolean committed = partitionProcessor.generateLeased(employments, Set.of(), plan, run.getMonth(), run.getYear(),
+                    progress, sink, partitionId, nodeId, leaseSeconds, existingEmployeeCodes.size());
+            if (!committed) {
+                logger.warn("Lease on payroll run partition {} was lost to another node; its work was discarded", partitionId);
+                return;
+            }
+            logger.debug("Node {} completed partition {} of payroll run {} ({} employees)", nodeId, partitionId, run.getId(), employments.size());
+            payrollRunManager.completeIfDone(run.getId());
+        } catch (CancellationException e) {
+            payrollRunManager.releasePartition(partitionId, nodeId, PayrollRunStatus.CANCELLED);
+            throw e;
+        } catch (RuntimeException e) {
+            logger.error("Payroll run partition {} failed on node {}: {}", partitionId, nodeId, e.getMessage());
+            progress.addFailed(attempted);
+            payrollRunManager.releasePartition(partitionId, nodeId, PayrollRunStatus.FAILED);
+        }
+    }
+
+    private Set<String> findExistingEmployeeCodes(List<Employment> employments, int month, int year) {
+        List<String> codes = new ArrayList<>(employments.size());
+        for (Employment employment : employments) {
+            codes.add(employment.getEmployee().getCode());
+        }
+        Set<String> existingEmployeeCodes = new HashSet<>();
+        for (int from = 0; from < codes.size(); from += IN_CLAUSE_CHUNK_SIZE) {
+            List<String> chunk = codes.subList(from, Math.min(codes.size(), from + IN_CLAUSE_CHUNK_SIZE));
+            existingEmployeeCodes.addAll(payslipRepository.findEmployeeCodesByMonthAndYearAndEmployeeCodeIn(month, year, chunk));
+        }
+        return existingEmployeeCodes;
+    }
+}
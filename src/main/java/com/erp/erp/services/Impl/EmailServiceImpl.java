@@ -6,16 +6,24 @@ import com.erp.erp.entity.PaySlip;
 import com.erp.erp.exceptions.EmailException;
 import com.erp.erp.exceptions.ValidationException;
 import com.erp.erp.services.EmailService;
+import jakarta.annotation.PreDestroy;
+import jakarta.mail.Address;
+import jakarta.mail.AuthenticationFailedException;
 import jakarta.mail.MessagingException;
+import jakarta.mail.Session;
+import jakarta.mail.Transport;
 import jakarta.mail.internet.MimeMessage;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.core.io.InputStreamSource;
+import org.springframework.mail.MailAuthenticationException;
 import org.springframework.mail.MailException;
+import org.springframework.mail.MailSendException;
 import org.springframework.mail.SimpleMailMessage;
 import org.springframework.mail.javamail.JavaMailSender;
+import org.springframework.mail.javamail.JavaMailSenderImpl;
 import org.springframework.mail.javamail.MimeMessageHelper;
 import org.springframework.stereotype.Service;
 import org.springframework.util.StringUtils;
@@ -26,8 +34,14 @@ import java.time.LocalDate;
 import java.time.Month;
 import java.time.YearMonth;
 import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.Date;
 import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.List;
 import java.util.Map;
+import java.util.concurrent.BlockingDeque;
+import java.util.concurrent.LinkedBlockingDeque;
 import com.erp.erp.utils.CurrencyFormatter;
 
 @Service
@@ -44,6 +58,33 @@ public class EmailServiceImpl implements EmailService {
     @Value("${spring.mail.username}")
     private String fromEmail;
 
+    @Value("${app.mail.messagesPerConnection:100}")
+    private int messagesPerConnection;
+
+    // Connected SMTP transports between batches; each concurrent sendBatch takes one, so there are at most as many
+    // as batches were ever sent at once
+    private final BlockingDeque<PooledTransport> idleTransports = new LinkedBlockingDeque<>();
+
+    /**
+     * An SMTP connection with the number of messages it has carried so far.
+     */
+    private static final class PooledTransport {
+        private final Transport transport;
+        private int messageCount;
+
+        private PooledTransport(Transport transport) {
+            this.transport = transport;
+        }
+    }
+
+    @PreDestroy
+    public void closeTransports() {
+        PooledTransport connection;
+        while ((connection = idleTransports.pollFirst()) != null) {
+            close(connection);
+        }
+    }
+
     @Override
     public void sendSimpleMailMessage(String to, String subject, String text) {
         validateEmailParameters(to, subject, text);
@@ -131,6 +172,149 @@ public class EmailServiceImpl implements EmailService {
         }
     }
 
+    @Override
+    public Map<Integer, Exception> sendBatch(List<OutgoingEmail> emails) {
+        Map<Integer, Exception> failures = new HashMap<>();
+        List<MimeMessage> messages = new ArrayList<>(emails.size());
+        List<Integer> indexes = new ArrayList<>(emails.size());
+        for (int i = 0; i < emails.size(); i++) {
+            try {
+                messages.add(createMimeMessage(emails.get(i)));
+                indexes.add(i);
+            } catch (ValidationException | MessagingException e) {
+                failures.put(i, e);
+            }
+        }
+
+        if (mailSender instanceof JavaMailSenderImpl sender) {
+            sendOverPooledTransport(sender, messages, indexes, failures);
+        } else {
+            sendOverMailSender(messages, indexes, failures);
+        }
+        logger.info("Batch of {} emails sent, {} failed", emails.size() - failures.size(), failures.size());
+        return failures;
+    }
+
+    /**
+     * Sends the messages over a connection left open by an earlier batch, or a new one, and leaves it open for the
+     * next batch. A connection is replaced once it has carried messagesPerConnection messages, or when it dropped,
+     * whether while idle or after a failed message.
+     */
+    private void sendOverPooledTransport(JavaMailSenderImpl sender, List<MimeMessage> messages, List<Integer> indexes,
+                                         Map<Integer, Exception> failures) {
+        PooledTransport connection = idleTransports.pollFirst();
+        if (connection != null && !connection.transport.isConnected()) {
+            // Dropped by the server while idle
+            close(connection);
+            connection = null;
+        }
+        try {
+            for (int i = 0; i < messages.size(); i++) {
+                if (connection != null && connection.messageCount >= messagesPerConnection) {
+                    close(connection);
+                    connection = null;
+                }
+                if (connection == null) {
+                    try {
+                        connection = new PooledTransport(connectTransport(sender));
+                    } catch (MessagingException e) {
+                        // None of the remaining messages can go out without a connection
+                        MailException failure = e instanceof AuthenticationFailedException
+                                ? new MailAuthenticationException(e)
+                                : new MailSendException("Mail server connection failed", e);
+                        for (int j = i; j < messages.size(); j++) {
+                            failures.put(indexes.get(j), failure);
+                        }
+                        return;
+                    }
+                }
+                MimeMessage message = messages.get(i);
+                connection.messageCount++;
+                try {
+                    if (message.getSentDate() == null) {
+                        message.setSentDate(new Date());
+                    }
+                    message.saveChanges();
+                    Address[] recipients = message.getAllRecipients();
+                    connection.transport.sendMessage(message, recipients != null ? recipients : new Address[0]);
+                } catch (MessagingException e) {
+                    failures.put(indexes.get(i), e);
+                    if (!connection.transport.isConnected()) {
+                        close(connection);
+                        connection = null;
+                    }
+                }
+            }
+        } finally {
+            if (connection != null) {
+                idleTransports.offerFirst(connection);
+            }
+        }
+    }
+
+    // Opens a connection the way JavaMailSenderImpl does for each send call
+    private Transport connectTransport(JavaMailSenderImpl sender) throws MessagingException {
+        Session session = sender.getSession();
+        String protocol = sender.getProtocol();
+        if (protocol == null) {
+            protocol = session.getProperty("mail.transport.protocol");
+        }
+        Transport transport = session.getTransport(protocol != null ? protocol : JavaMailSenderImpl.DEFAULT_PROTOCOL);
+        String username = sender.getUsername();
+        String password = sender.getPassword();
+        if ("".equals(username)) {
+            username = null;
+            if ("".equals(password)) {
+                password = null;
+            }
+        }
+        transport.connect(sender.getHost(), sender.getPort(), username, password);
+        return transport;
+    }
+
+    private void close(PooledTransport connection) {
+        try {
+            connection.transport.close();
+        } catch (MessagingException e) {
+            logger.debug("Error closing SMTP connection: {}", e.getMessage());
+        }
+    }
+
+    // Any other JavaMailSender opens one connection for the whole batch
+    private void sendOverMailSender(List<MimeMessage> messages, List<Integer> indexes, Map<Integer, Exception> failures) {
+        try {
+            mailSender.send(messages.toArray(new MimeMessage[0]));
+        } catch (MailSendException e) {
+            Map<Object, Integer> indexByMessage = new IdentityHashMap<>();
+            for (int i = 0; i < messages.size(); i++) {
+                indexByMessage.put(messages.get(i), indexes.get(i));
+            }
+            if (e.getFailedMessages().isEmpty()) {
+                indexByMessage.values().forEach(index -> failures.put(index, e));
+            } else {
+                e.getFailedMessages().forEach((message, failure) -> failures.put(indexByMessage.get(message), failure));
+            }
+        } catch (MailException e) {
+            // Authentication or other failure before any message went out
+            indexes.forEach(index -> failures.put(index, e));
+        }
+    }
+
+    private MimeMessage createMimeMessage(OutgoingEmail email) throws MessagingException {
+        validateEmailParameters(email.to(), email.subject(), email.htmlBody());
+        MimeMessage mimeMessage = mailSender.createMimeMessage();
+        boolean multipart = email.attachmentSource() != null;
+        MimeMessageHelper helper = new MimeMessageHelper(mimeMessage, multipart, "utf-8");
+        helper.setFrom(fromEmail);
+        helper.setTo(email.to());
+        helper.setSubject(email.subject());
+        helper.setText(email.htmlBody(), true); // true indicates HTML content
+        if (multipart) {
+            helper.addAttachment(email.attachmentName(), email.attachmentSource(), email.contentType());
+        }
+        return mimeMessage;
+    }
+
     @Override
     public String processTemplate(String templateName, Map<String, Object> variables) {
         try {
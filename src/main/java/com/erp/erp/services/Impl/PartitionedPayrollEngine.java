@@ -0,0 +1,216 @@
+package com.erp.erp.services.Impl;
+
+import com.erp.erp.dto.response.PayslipResponseDTO;
+import com.erp.erp.entity.Employment;
+import com.erp.erp.entity.PayrollRun;
+import com.erp.erp.entity.PayrollRunPartition;
+import com.erp.erp.enums.PayrollRunStatus;
+import com.erp.erp.exceptions.PayrollException;
+import com.erp.erp.utils.DeductionPlan;
+import com.erp.erp.utils.PayrollProgress;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
+
+/**
+ * Generates the partitions of a {@link PayrollRun}, each a contiguous employee-code range, either one
+ * after the other on the calling thread (SERIAL) or on their own virtual threads (PARTITIONED).
+ * A partition is committed by {@link PayrollPartitionProcessor} in chunks, each in its own short transaction
+ * that also advances the partition's checkpoint, so a crash or failure only loses the chunk in flight;
+ * generating the month again resumes every partition right after its checkpoint.
+ */
+@Component
+public class PartitionedPayrollEngine {
+
+    private static final Logger logger = LoggerFactory.getLogger(PartitionedPayrollEngine.class);
+
+    @Autowired
+    private PayrollPartitionProcessor partitionProcessor;
+
+    @Autowired
+    private PayrollRunManager payrollRunManager;
+
+    @Value("${app.payroll.parallelism:4}")
+    private int parallelism;
+
+    @Value("${app.payroll.chunkSize:5000}")
+    private int chunkSize;
+
+    /**
+     * Generates the payslips of the run's unfinished partitions.
+     *
+     * @param run the started or resumed run
+     * @param sortedRoster the active roster sorted by employee code
+     * @param existingEmployeeCodes codes of the employees that already have a payslip for the period
+     * @param plan the compiled deduction plan of the run
+     * @param progress the progress of the run, shared by all partitions
+     * @param sink receives every payslip as soon as its partition produces it; partitions interleave, and rows of a
+     *             chunk that fails afterwards are rolled back
+     * @param parallel true to run the partitions concurrently, false to run them in order on the calling thread
+     * @throws PayrollException if one or more partitions failed; committed chunks stay committed
+     * @throws CancellationException if the run was cancelled; committed chunks stay committed
+     */
+    public void generate(PayrollRun run, List<Employment> sortedRoster, Set<String> existingEmployeeCodes, DeductionPlan plan,
+                         PayrollProgress progress, Consumer<PayslipResponseDTO> sink, boolean parallel) {
+        int month = run.getMonth();
+        int year = run.getYear();
+        long startedAt = System.nanoTime();
+        List<PayrollRunPartition> pendingPartitions = new ArrayList<>();
+        List<List<Employment>> pendingEmployments = new ArrayList<>();
+        int checkpointed = assignToPartitions(run, sortedRoster, pendingPartitions, pendingEmployments);
+        progress.addProcessed(checkpointed);
+        logger.info("Generating payroll run {} for {}-{}: {} of {} partitions to do, {} employees already checkpointed",
+                run.getId(), month, year, pendingPartitions.size(), run.getPartitions().size(), checkpointed);
+
+        // Partitions hand their payslips to the caller's sink one at a time
+        Object sinkLock = new Object();
+        Consumer<PayslipResponseDTO> sharedSink = payslip -> {
+            synchronized (sinkLock) {
+                sink.accept(payslip);
+            }
+        };
+
+        AtomicInteger persisted = new AtomicInteger();
+        List<String> failedRanges = new ArrayList<>();
+        int cancelledPartitions = 0;
+        if (parallel && pendingPartitions.size() > 1) {
+            logger.info("Running {} partitions with parallelism {}", pendingPartitions.size(), parallelism);
+            List<Future<?>> futures = new ArrayList<>();
+            try (ExecutorService executor = Executors.newFixedThreadPool(parallelism, Thread.ofVirtual().name("payroll-partition-", 0).factory())) {
+                for (int i = 0; i < pendingPartitions.size(); i++) {
+                    PayrollRunPartition partition = pendingPartitions.get(i);
+                    List<Employment> employments = pendingEmployments.get(i);
+                    futures.add(executor.submit(() -> runPartition(partition, employments, existingEmployeeCodes, plan, month, year, progress, sharedSink, persisted)));
+                }
+                for (int i = 0; i < futures.size(); i++) {
+                    PayrollRunPartition partition = pendingPartitions.get(i);
+                    try {
+                        futures.get(i).get();
+                    } catch (ExecutionException e) {
+                        if (e.getCause() instanceof CancellationException) {
+                            cancelledPartitions++;
+                            continue;
+                        }
+                        logger.error("Payroll partition {} ({}) failed for {}-{}: {}", partition.getPartitionIndex(),
+                                describeRange(partition), month, year, e.getCause().getMessage());
+                        failedRanges.add(describeRange(partition));
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                        throw new PayrollException("Interrupted while waiting for payroll partitions", e);
+                    }
+                }
+            }
+        } else {
+            for (int i = 0; i < pendingPartitions.size(); i++) {
+                PayrollRunPartition partition = pendingPartitions.get(i);
+                try {
+                    runPartition(partition, pendingEmployments.get(i), existingEmployeeCodes, plan, month, year, progress, sharedSink, persisted);
+                } catch (CancellationException e) {
+                    cancelledPartitions = pendingPartitions.size() - i;
+                    break;
+                } catch (RuntimeException e) {
+                    logger.error("Payroll partition {} ({}) failed for {}-{}: {}", partition.getPartitionIndex(),
+                            describeRange(partition), month, year, e.getMessage());
+                    failedRanges.add(describeRange(partition));
+                }
+            }
+        }
+
+        logThroughput(run, persisted.get(), System.nanoTime() - startedAt, pendingPartitions.size());
+
+        if (cancelledPartitions > 0) {
+            payrollRunManager.finish(run, PayrollRunStatus.CANCELLED);
+            logger.info("Payroll run {} for {}-{} cancelled; {} partitions stopped at their last checkpoint",
+                    run.getId(), month, year, cancelledPartitions);
+            throw new CancellationException("Payroll run was cancelled");
+        }
+        if (!failedRanges.isEmpty()) {
+            payrollRunManager.finish(run, PayrollRunStatus.FAILED);
+            throw new PayrollException("Payroll generation failed for " + failedRanges.size() + " of " + run.getPartitions().size()
+                    + " partitions " + failedRanges + "; committed chunks were kept, re-run to resume from the checkpoints");
+        }
+        payrollRunManager.finish(run, PayrollRunStatus.COMPLETED);
+    }
+
+    /**
+     * Generates one partition chunk by chunk; every chunk commits together with the partition's checkpoint.
+     * If a chunk fails, its employees and those of the chunks after it are counted as failed.
+     *
+     * @param persisted incremented by the payslips of every committed chunk
+     */
+    private void runPartition(PayrollRunPartition partition, List<Employment> employments, Set<String> existingEmployeeCodes,
+                              DeductionPlan plan, int month, int year, PayrollProgress progress, Consumer<PayslipResponseDTO> sink,
+                              AtomicInteger persisted) {
+        payrollRunManager.updatePartitionStatus(partition, PayrollRunStatus.RUNNING);
+        int from = 0;
+        try {
+            for (; from < employments.size(); from += chunkSize) {
+                List<Employment> chunk = employments.subList(from, Math.min(employments.size(), from + chunkSize));
+                persisted.addAndGet(partitionProcessor.generate(chunk, existingEmployeeCodes, plan, month, year, progress, sink, partition.getId()));
+            }
+            payrollRunManager.updatePartitionStatus(partition, PayrollRunStatus.COMPLETED);
+        } catch (CancellationException e) {
+            payrollRunManager.updatePartitionStatus(partition, PayrollRunStatus.CANCELLED);
+            throw e;
+        } catch (RuntimeException e) {
+            progress.addFailed(employments.size() - from);
+            payrollRunManager.updatePartitionStatus(partition, PayrollRunStatus.FAILED);
+            throw e;
+        }
+    }
+
+    /**
+     * Splits the sorted roster by the run's partition ranges, leaving out completed partitions and the employees
+     * before each partition's checkpoint.
+     *
+     * @return how many employees were left out because they are already committed
+     */
+    private int assignToPartitions(PayrollRun run, List<Employment> sortedRoster,
+                                   List<PayrollRunPartition> pendingPartitions, List<List<Employment>> pendingEmployments) {
+        int checkpointed = 0;
+        int next = 0;
+        for (PayrollRunPartition partition : run.getPartitions()) {
+            List<Employment> employments = new ArrayList<>();
+            while (next < sortedRoster.size() && partition.covers(sortedRoster.get(next).getEmployee().getCode())) {
+                Employment employment = sortedRoster.get(next++);
+                if (partition.getStatus() == PayrollRunStatus.COMPLETED || partition.isCheckpointed(employment.getEmployee().getCode())) {
+                    checkpointed++;
+                } else {
+                    employments.add(employment);
+                }
+            }
+            if (partition.getStatus() != PayrollRunStatus.COMPLETED) {
+                pendingPartitions.add(partition);
+                pendingEmployments.add(employments);
+            }
+        }
+        return checkpointed;
+    }
+
+    private void logThroughput(PayrollRun run, int persistedCount, long elapsedNanos, int partitions) {
+        long elapsedMillis = TimeUnit.NANOSECONDS.toMillis(elapsedNanos);
+        double rowsPerSecond = elapsedNanos > 0 ? persistedCount * 1_000_000_000.0 / elapsedNanos : 0;
+        logger.info("Payroll run {} for {}-{}: persisted {} payslips in {} ms ({} rows/sec, {} partitions, chunk size {})",
+                run.getId(), run.getMonth(), run.getYear(), persistedCount, elapsedMillis,
+                String.format("%.1f", rowsPerSecond), partitions, chunkSize);
+    }
+
+    private String describeRange(PayrollRunPartition partition) {
+        return (partition.getFromEmployeeCode() != null ? partition.getFromEmployeeCode() : "")
+                + ".." + (partition.getToEmployeeCode() != null ? partition.getToEmployeeCode() : "");
+    }
+}
@@ -1,51 +1,65 @@
     package com.erp.erp.services.Impl;
 
+    import com.erp.erp.dto.response.EmailDispatcherStatsDTO;
+    import com.erp.erp.dto.response.PayrollBackfillSummaryDTO;
+    import com.erp.erp.dto.response.PayrollRunSummaryDTO;
     import com.erp.erp.dto.response.PayslipResponseDTO;
     import com.erp.erp.entity.*;
-    import com.erp.erp.enums.MessageSentStatus;
+    import com.erp.erp.enums.PayrollEngine;
+    import com.erp.erp.enums.PayrollRunStatus;
     import com.erp.erp.enums.PayslipStatus;
-    import com.erp.erp.exceptions.EmailException;
     import com.erp.erp.exceptions.ResourceNotFoundException;
     import com.erp.erp.exceptions.ValidationException;
     import com.erp.erp.repository.*;
-    import com.erp.erp.services.EmailService;
+    import com.erp.erp.services.DeductionPlanService;
     import com.erp.erp.services.EmploymentService;
     import com.erp.erp.services.PayRollService;
-    import com.erp.erp.services.PayslipPdfService;
+    import com.erp.erp.utils.DeductionPlan;
+    import com.erp.erp.utils.PayrollProgress;
+    import com.erp.erp.utils.PayslipMapper;
+    import jakarta.persistence.EntityManager;
+    import jakarta.persistence.PersistenceContext;
     import org.slf4j.Logger;
     import org.slf4j.LoggerFactory;
-    import org.springframework.beans.BeanUtils;
     import org.springframework.beans.factory.annotation.Autowired;
-    import org.springframework.core.io.InputStreamResource;
-    import org.springframework.core.io.InputStreamSource;
+    import org.springframework.beans.factory.annotation.Value;
     import org.springframework.stereotype.Service;
     import org.springframework.transaction.annotation.Transactional;
+    import org.springframework.transaction.support.TransactionSynchronization;
+    import org.springframework.transaction.support.TransactionSynchronizationManager;
     import org.springframework.util.StringUtils;
-    import com.erp.erp.repository.EmploymentRepository;
-    import com.erp.erp.entity.PaySlip;
-    import com.erp.erp.entity.Message;
-    import java.io.ByteArrayInputStream;
-    import java.io.IOException;
-    import java.io.InputStream;
     import java.math.BigDecimal;
-    import java.math.RoundingMode;
     import java.time.LocalDate;
+    import java.time.YearMonth;
     import java.util.ArrayList;
-    import java.util.Arrays;
+    import java.util.Comparator;
+    import java.util.HashMap;
+    import java.util.HashSet;
+    import java.util.Iterator;
     import java.util.List;
     import java.util.Map;
+    import java.util.Objects;
+    import java.util.Set;
+    import java.util.concurrent.ConcurrentHashMap;
+    import java.util.function.Consumer;
     import java.util.stream.Collectors;
+    import java.util.stream.Stream;
 
     @Service
     public class PayRollServiceImpl implements PayRollService {
 
         private static final Logger logger = LoggerFactory.getLogger(PayRollServiceImpl.class);
 
+        private static final int MAX_BACKFILL_MONTHS = 36;
+
+        // Keeps IN lists well below PostgreSQL's bind parameter limit
+        private static final int IN_CLAUSE_CHUNK_SIZE = 1000;
+
         @Autowired
         private EmploymentService employmentService;
 
         @Autowired
-        private DeductionRepository deductionRepository;
+        private DeductionPlanService deductionPlanService;
 
         @Autowired
         private PayslipRepository payslipRepository;
@@ -54,270 +68,318 @@
         private EmployeeRepository employeeRepository;
 
         @Autowired
-        private EmploymentRepository employmentRepository;
+        private PayrollPartitionProcessor partitionProcessor;
+
+        @Autowired
+        private PartitionedPayrollEngine partitionedPayrollEngine;
+
+        @Value("${app.payroll.engine:SERIAL}")
+        private PayrollEngine defaultEngine;
+
+        @Value("${app.payroll.batchSize:500}")
+        private int batchSize;
+
+        @Value("${app.payroll.partitions:8}")
+        private int partitionCount;
+
+        @Autowired
+        private PayrollRunManager payrollRunManager;
+
+        @Autowired
+        private DatabasePayrollEngine databasePayrollEngine;
 
         @Autowired
-        private MessageRepository messageRepository;
+        private PayrollBackfillPipeline payrollBackfillPipeline;
 
         @Autowired
-        private EmailService emailService;
+        private DistributedPayrollEngine distributedPayrollEngine;
 
-        private static final String HOUSING = "Housing";
-        private static final String TRANSPORT = "Transport";
-        private static final String EMPLOYEE_TAX = "Employee Tax";
-        private static final String PENSION = "Pension";
-        private static final String MEDICAL_INSURANCE = "Medical Insurance";
-        private static final String OTHERS = "Others";
+        // Months being generated by this instance
+        private final Set<String> activeRuns = ConcurrentHashMap.newKeySet();
+
+        @PersistenceContext
+        private EntityManager entityManager;
 
 
         @Override
-        @Transactional
         public List<PayslipResponseDTO> generatePayroll(int month, int year) {
+            return generatePayroll(month, year, defaultEngine);
+        }
+
+        @Override
+        public List<PayslipResponseDTO> generatePayroll(int month, int year, PayrollEngine engine) {
+            List<PayslipResponseDTO> generatedPayslips = new ArrayList<>();
+            generatePayroll(month, year, engine, new PayrollProgress(), generatedPayslips::add);
+            if (engine == PayrollEngine.PARTITIONED) {
+                // Partitions interleave their output
+                generatedPayslips.sort(Comparator.comparing(PayslipResponseDTO::getEmployeeCode));
+            }
+            return generatedPayslips;
+        }
+
+        @Override
+        public void generatePayroll(int month, int year, PayrollEngine engine, PayrollProgress progress, Consumer<PayslipResponseDTO> sink) {
             validateMonthAndYear(month, year);
+            PayrollEngine resolvedEngine = engine != null ? engine : defaultEngine;
 
-            List<Employment> activeEmployments = employmentService.getActiveEmploymentsForPayroll();
-            List<Deduction> allDeductionsList = deductionRepository.findAll();
-            Map<String, BigDecimal> deductionsMap = allDeductionsList.stream()
-                    .collect(Collectors.toMap(Deduction::getDeductionName, Deduction::getPercentage));
+            String runKey = month + "-" + year;
+            if (!activeRuns.add(runKey)) {
+                throw new ValidationException("Payroll for " + month + "/" + year + " is already being generated");
+            }
+            try {
+                if (resolvedEngine == PayrollEngine.DATABASE) {
+                    // Runs entirely in PostgreSQL; there are no DTOs to hand to the sink
+                    databasePayrollEngine.generate(month, year, progress);
+                    return;
+                }
 
-            List<PayslipResponseDTO> generatedPayslips = new ArrayList<>();
+                List<Employment> activeEmployments = new ArrayList<>(employmentService.getActiveEmploymentsForPayroll());
+                activeEmployments.sort(Comparator.comparing(employment -> employment.getEmployee().getCode()));
+                DeductionPlan plan = deductionPlanService.getCurrentPlan();
+                progress.setTotal(activeEmployments.size());
+
+                // Resumes the unfinished run of the month from its checkpoints, or starts a new one
+                int runPartitions = switch (resolvedEngine) {
+                    case PARTITIONED -> partitionCount;
+                    case DISTRIBUTED -> distributedPayrollEngine.partitionsFor(activeEmployments.size());
+                    default -> 1;
+                };
+                PayrollRun run = payrollRunManager.startOrResume(month, year, activeEmployments, runPartitions, resolvedEngine, plan.getVersion());
+                try {
+                    if (resolvedEngine == PayrollEngine.DISTRIBUTED) {
+                        // Every node claims partitions of the run; this one also waits for the others and closes it
+                        distributedPayrollEngine.generate(run, progress, sink);
+                        return;
+                    }
 
-            for (Employment employment : activeEmployments) {
-                Employee employee = employment.getEmployee();
-                if (payslipRepository.existsByEmployeeAndMonthAndYear(employee, month, year)) {
-                    logger.warn("Payslip already exists for employee {} for {}-{}. Skipping.", employee.getCode(), month, year);
-                    // Optionally, you could fetch and return existing DTO or throw an error
-                    PaySlip existingPayslip = payslipRepository.findByEmployeeAndMonthAndYear(employee, month, year)
-                            .orElseThrow(() -> new IllegalStateException("Payslip reported as existing but not found."));
-                    generatedPayslips.add(convertToPayslipResponseDTO(existingPayslip, employee.getFirstName() + " " + employee.getLastName(), employment.getBaseSalary()));
-                    continue;
+                    // One query for every employee already paid this period instead of an existence check per employee
+                    Set<String> existingEmployeeCodes = new HashSet<>(payslipRepository.findEmployeeCodesByMonthAndYear(month, year));
+                    partitionedPayrollEngine.generate(run, activeEmployments, existingEmployeeCodes, plan, progress, sink,
+                            resolvedEngine == PayrollEngine.PARTITIONED);
+                } finally {
+                    payrollRunManager.release(run);
                 }
+            } finally {
+                activeRuns.remove(runKey);
+            }
+        }
+
+        @Override
+        public PayrollRunSummaryDTO regeneratePayroll(int month, int year) {
+            validateMonthAndYear(month, year);
+            long startedAt = System.currentTimeMillis();
+
+            // Shares the run key of generatePayroll, so a full and an incremental run of the same month never overlap
+            String runKey = month + "-" + year;
+            if (!activeRuns.add(runKey)) {
+                throw new ValidationException("Payroll for " + month + "/" + year + " is already being generated");
+            }
+            try {
+                List<Employment> activeEmployments = employmentService.getActiveEmploymentsForPayroll();
+                DeductionPlan plan = deductionPlanService.getCurrentPlan();
 
-                BigDecimal baseSalary = employment.getBaseSalary();
-                PaySlip payslip = new PaySlip();
-                payslip.setEmployee(employee);
-                payslip.setMonth(month);
-                payslip.setYear(year);
-                payslip.setStatus(PayslipStatus.PENDING);
-
-                // Calculate amounts
-                BigDecimal housingPercentage = deductionsMap.getOrDefault(HOUSING, BigDecimal.ZERO);
-                BigDecimal transportPercentage = deductionsMap.getOrDefault(TRANSPORT, BigDecimal.ZERO);
-
-                payslip.setHouseAmount(baseSalary.multiply(housingPercentage).setScale(2, RoundingMode.HALF_UP));
-                payslip.setTransportAmount(baseSalary.multiply(transportPercentage).setScale(2, RoundingMode.HALF_UP));
-
-                BigDecimal grossSalary = baseSalary.add(payslip.getHouseAmount()).add(payslip.getTransportAmount());
-                payslip.setGrossSalary(grossSalary.setScale(2, RoundingMode.HALF_UP));
-
-                payslip.setEmployeeTaxedAmount(baseSalary.multiply(deductionsMap.getOrDefault(EMPLOYEE_TAX, BigDecimal.ZERO)).setScale(2, RoundingMode.HALF_UP));
-                payslip.setPensionAmount(baseSalary.multiply(deductionsMap.getOrDefault(PENSION, BigDecimal.ZERO)).setScale(2, RoundingMode.HALF_UP));
-                payslip.setMedicalInsuranceAmount(baseSalary.multiply(deductionsMap.getOrDefault(MEDICAL_INSURANCE, BigDecimal.ZERO)).setScale(2, RoundingMode.HALF_UP));
-                payslip.setOtherTaxedAmount(baseSalary.multiply(deductionsMap.getOrDefault(OTHERS, BigDecimal.ZERO)).setScale(2, RoundingMode.HALF_UP));
-
-                BigDecimal totalDeductions = payslip.getEmployeeTaxedAmount()
-                        .add(payslip.getPensionAmount())
-                        .add(payslip.getMedicalInsuranceAmount())
-                        .add(payslip.getOtherTaxedAmount());
-
-                // Ensure deductions do not exceed gross salary (though typically based on base salary)
-                if (totalDeductions.compareTo(grossSalary) > 0) {
-                    logger.warn("Total deductions ({}) exceed gross salary ({}) for employee {}. Capping deductions.",
-                            totalDeductions, grossSalary, employee.getCode());
-                    // This scenario needs careful handling based on business rules.
-                    // For now, we proceed, but a real system might require adjustment logic.
+                Map<String, PayslipRepository.PayslipFingerprintView> existingPayslips = new HashMap<>();
+                for (PayslipRepository.PayslipFingerprintView view : payslipRepository.findFingerprintsByMonthAndYear(month, year)) {
+                    existingPayslips.put(view.getEmployeeCode(), view);
                 }
 
-                BigDecimal netSalary = grossSalary.subtract(totalDeductions);
-                payslip.setNetSalary(netSalary.setScale(2, RoundingMode.HALF_UP));
+                // Compare fingerprints in memory; only new and changed employees reach the calculation
+                List<Employment> addedEmployments = new ArrayList<>();
+                Map<Long, Employment> changedEmployments = new HashMap<>();
+                int unchanged = 0;
+                int skipped = 0;
+                for (Employment employment : activeEmployments) {
+                    Employee employee = employment.getEmployee();
+                    PayslipRepository.PayslipFingerprintView existing = existingPayslips.remove(employee.getCode());
+                    if (existing == null) {
+                        addedEmployments.add(employment);
+                    } else if (existing.getStatus() != PayslipStatus.PENDING) {
+                        skipped++;
+                    } else if (Objects.equals(existing.getInputFingerprint(), plan.inputFingerprint(employment.getBaseSalary(), employee.getStatus()))) {
+                        unchanged++;
+                    } else {
+                        changedEmployments.put(existing.getId(), employment);
+                    }
+                }
+                if (!existingPayslips.isEmpty()) {
+                    logger.warn("{} payslips for {}-{} belong to employees no longer on the active roster and were left as is",
+                            existingPayslips.size(), month, year);
+                }
 
-                PaySlip savedPayslip = payslipRepository.save(payslip);
-                generatedPayslips.add(convertToPayslipResponseDTO(savedPayslip, employee.getFirstName() + " " + employee.getLastName(), baseSalary));
+                int changed = changedEmployments.isEmpty() ? 0 : partitionProcessor.recalculate(changedEmployments, plan);
+                skipped += changedEmployments.size() - changed;
+                int added = 0;
+                if (!addedEmployments.isEmpty()) {
+                    // Read again: a run on another node may have paid some of them since the fingerprints were read
+                    Set<String> existingEmployeeCodes = new HashSet<>(payslipRepository.findEmployeeCodesByMonthAndYear(month, year));
+                    added = partitionProcessor.generate(addedEmployments, existingEmployeeCodes, plan, month, year, new PayrollProgress(), payslip -> {}, null);
+                    skipped += addedEmployments.size() - added;
+                }
+
+                PayrollRunSummaryDTO summary = new PayrollRunSummaryDTO();
+                summary.setMonth(month);
+                summary.setYear(year);
+                summary.setDeductionPlanVersion(plan.getVersion());
+                summary.setAdded(added);
+                summary.setChanged(changed);
+                summary.setUnchanged(unchanged);
+                summary.setSkipped(skipped);
+                summary.setDurationMillis(System.currentTimeMillis() - startedAt);
+                logger.info("Incremental payroll for {}-{}: {} added, {} changed, {} unchanged, {} skipped in {} ms",
+                        month, year, summary.getAdded(), changed, unchanged, skipped, summary.getDurationMillis());
+                return summary;
+            } finally {
+                activeRuns.remove(runKey);
             }
-            return generatedPayslips;
+        }
+
+        @Override
+        public PayrollBackfillSummaryDTO backfillPayroll(int fromMonth, int fromYear, int toMonth, int toYear) {
+            validateMonthAndYear(fromMonth, fromYear);
+            validateMonthAndYear(toMonth, toYear);
+            YearMonth from = YearMonth.of(fromYear, fromMonth);
+            YearMonth to = YearMonth.of(toYear, toMonth);
+            if (from.isAfter(to)) {
+                throw new ValidationException("Backfill start " + from + " is after its end " + to);
+            }
+            List<YearMonth> periods = new ArrayList<>();
+            for (YearMonth period = from; !period.isAfter(to); period = period.plusMonths(1)) {
+                periods.add(period);
+            }
+            if (periods.size() > MAX_BACKFILL_MONTHS) {
+                throw new ValidationException("A backfill covers at most " + MAX_BACKFILL_MONTHS + " months, got: " + periods.size());
+            }
+
+            List<String> runKeys = new ArrayList<>();
+            try {
+                for (YearMonth period : periods) {
+                    String runKey = period.getMonthValue() + "-" + period.getYear();
+                    if (!activeRuns.add(runKey)) {
+                        throw new ValidationException("Payroll for " + period.getMonthValue() + "/" + period.getYear() + " is already being generated");
+                    }
+                    runKeys.add(runKey);
+                }
+
+                // Read once for the whole range instead of once per month
+                List<Employment> activeEmployments = new ArrayList<>(employmentService.getActiveEmploymentsForPayroll());
+                activeEmployments.sort(Comparator.comparing(employment -> employment.getEmployee().getCode()));
+                DeductionPlan plan = deductionPlanService.getCurrentPlan();
+
+                PayrollBackfillSummaryDTO summary = backfillAsRuns(periods, activeEmployments, plan);
+                summary.setFromMonth(fromMonth);
+                summary.setFromYear(fromYear);
+                summary.setToMonth(toMonth);
+                summary.setToYear(toYear);
+                logger.info("Backfilled {} payslips for {} to {} in {} ms ({} already existed)",
+                        summary.getTotalGenerated(), from, to, summary.getDurationMillis(), summary.getTotalSkipped());
+                return summary;
+            } finally {
+                runKeys.forEach(activeRuns::remove);
+            }
+        }
+
+        /**
+         * Runs the backfill pipeline with every month registered as a payroll run of this node, like generatePayroll
+         * does, so no other node generates one of the months meanwhile. Each run ends with the status of its month;
+         * months the backfill did not reach are left CANCELLED, so the next run of the month resumes them.
+         *
+         * @throws ValidationException if one of the months is being generated by another node; nothing was generated
+         */
+        private PayrollBackfillSummaryDTO backfillAsRuns(List<YearMonth> periods, List<Employment> activeEmployments, DeductionPlan plan) {
+            List<PayrollRun> runs = new ArrayList<>();
+            boolean finished = false;
+            try {
+                for (YearMonth period : periods) {
+                    runs.add(payrollRunManager.startOrResume(period.getMonthValue(), period.getYear(), activeEmployments, 1,
+                            PayrollEngine.SERIAL, plan.getVersion()));
+                }
+                PayrollBackfillSummaryDTO summary = payrollBackfillPipeline.run(periods, activeEmployments, plan);
+                for (int i = 0; i < runs.size(); i++) {
+                    PayrollRunStatus status = summary.getMonths().get(i).getStatus();
+                    finishBackfillRun(runs.get(i), status == PayrollRunStatus.PENDING ? PayrollRunStatus.CANCELLED : status);
+                }
+                finished = true;
+                return summary;
+            } finally {
+                for (PayrollRun run : runs) {
+                    if (!finished) {
+                        finishBackfillRun(run, PayrollRunStatus.CANCELLED);
+                    }
+                    payrollRunManager.release(run);
+                }
+            }
+        }
+
+        private void finishBackfillRun(PayrollRun run, PayrollRunStatus status) {
+            run.getPartitions().forEach(partition -> payrollRunManager.updatePartitionStatus(partition, status));
+            payrollRunManager.finish(run, status);
         }
 
         @Autowired
-        private PayslipPdfService payslipPdfService;
+        private PayslipEmailDispatcher payslipEmailDispatcher;
 
         @Override
         @Transactional
         public List<PayslipResponseDTO> approvePayroll(int month, int year) {
+            return approvePayroll(month, year, new PayrollProgress());
+        }
+
+        @Override
+        @Transactional // Cancelling rolls the whole approval back
+        public List<PayslipResponseDTO> approvePayroll(int month, int year, PayrollProgress progress) {
             validateMonthAndYear(month, year);
 
-            List<PaySlip> pendingPayslips = payslipRepository.findByMonthAndYearAndStatus(month, year, PayslipStatus.PENDING);
-            if (pendingPayslips.isEmpty()) {
+            progress.checkCancelled();
+            // One UPDATE for the whole period instead of a load and save per payslip
+            List<Long> approvedIds = payslipRepository.approvePendingByMonthAndYear(month, year);
+            // Bulk UPDATE behind Hibernate's back: drop any payslip loaded before it, as @Modifying(clearAutomatically) would
+            entityManager.clear();
+            progress.setTotal(approvedIds.size());
+            progress.addProcessed(approvedIds.size());
+            // The approval commits or rolls back as a whole; if it fails, none of its payslips were approved
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCompletion(int status) {
+                    if (status != STATUS_COMMITTED) {
+                        progress.addProcessed(-approvedIds.size());
+                        if (!progress.isCancelled()) {
+                            progress.addFailed(approvedIds.size());
+                        }
+                    }
+                }
+            });
+            if (approvedIds.isEmpty()) {
                 logger.info("No pending payslips found for approval for {}-{}", month, year);
                 return new ArrayList<>();
             }
 
-            List<PayslipResponseDTO> approvedPayslipsDTOs = new ArrayList<>();
-            for (PaySlip payslip : pendingPayslips) {
-                payslip.setStatus(PayslipStatus.PAID);
-                PaySlip savedPayslip = payslipRepository.save(payslip); // This save triggers the DB trigger
-
-                // Retrieve employment for base salary (optional, could be stored in payslip if needed)
-                Employment employment = employmentRepository.findByEmployeeCode(payslip.getEmployee().getCode())
-                        .orElse(null); // Handle if employment is not found, though unlikely for an existing payslip
-                BigDecimal baseSalary = employment != null ? employment.getBaseSalary() : BigDecimal.ZERO;
-
-                approvedPayslipsDTOs.add(convertToPayslipResponseDTO(savedPayslip,
-                        payslip.getEmployee().getFirstName() + " " + payslip.getEmployee().getLastName(),
-                        baseSalary));
-
-                // Send email with PDF attachment immediately
-                try {
-                    // Wait a moment for the trigger to create the message
-                    Thread.sleep(100);
-
-                    // Get the employee
-                    Employee employee = payslip.getEmployee();
-
-                    // Check if employee has a valid email
-                    if (employee != null && StringUtils.hasText(employee.getEmail()) && 
-                        employee.getEmail().matches("^[\\w-\\.]+@([\\w-]+\\.)+[\\w-]{2,4}$")) {
-
-                        // Generate PDF payslip
-                        InputStream pdfPayslip = payslipPdfService.generatePayslipPdf(employee.getCode(), month, year);
-
-                        // Get the message content from the database (created by the trigger)
-                        List<Message> messages = messageRepository.findByEmployeeCodeAndMonthAndYearAndEmailSentStatus(
-                                employee.getCode(), month, year, MessageSentStatus.UNSENT);
-
-                        if (!messages.isEmpty()) {
-                            Message message = messages.get(0);
-                            message.setEmailSentStatus(MessageSentStatus.PROCESSING);
-                            messageRepository.save(message);
-
-                            // Read the PDF content into a byte array
-                            byte[] pdfBytes;
-                            try {
-                                pdfBytes = pdfPayslip.readAllBytes();
-                            } catch (IOException e) {
-                                logger.error("Error reading PDF content for employee {}", employee.getCode());
-                                throw new RuntimeException("Failed to read PDF content", e);
-                            }
-                            // Create a wrapper that returns a new ByteArrayInputStream each time
-                            InputStreamSource attachmentSource = new InputStreamSource() {
-                                @Override
-                                public InputStream getInputStream() {
-                                    return new ByteArrayInputStream(pdfBytes);
-                                }
-                            };
-
-                            // Process the payslip template to generate HTML content
-                            String htmlContent = emailService.processPayslipTemplate(
-                                    employee, 
-                                    payslip, 
-                                    employment, 
-                                    month, 
-                                    year
-                            );
-
-                            // Send email with PDF attachment
-                            emailService.sendEmailWithAttachment(
-                                    employee.getEmail(),
-                                    "Salary Credited - " + month + "/" + year,
-                                    htmlContent,
-                                    "payslip_" + employee.getCode() + "_" + month + "_" + year + ".pdf",
-                                    attachmentSource,
-                                    "application/pdf"
-                            );
-
-                            message.setEmailSentStatus(MessageSentStatus.SENT);
-                            messageRepository.save(message);
-                            logger.info("Salary notification email with PDF payslip sent to {} for employee {}", 
-                                    employee.getEmail(), employee.getCode());
-                        } else {
-                            logger.warn("No message found for employee {} for {}/{}", employee.getCode(), month, year);
-                        }
-                    }
-                } catch (Exception e) {
-                    logger.error("Error sending immediate email notification to employee {}: {}", 
-                            payslip.getEmployee().getCode(), e.getMessage());
-                    // Continue processing other payslips even if one email fails
+            List<PayslipResponseDTO> approvedPayslipsDTOs = new ArrayList<>(approvedIds.size());
+            for (int from = 0; from < approvedIds.size(); from += IN_CLAUSE_CHUNK_SIZE) {
+                progress.checkCancelled();
+                List<Long> chunk = approvedIds.subList(from, Math.min(approvedIds.size(), from + IN_CLAUSE_CHUNK_SIZE));
+                for (Object[] row : payslipRepository.findWithEmployeeByIdIn(chunk)) {
+                    approvedPayslipsDTOs.add(PayslipMapper.fromRow(row));
                 }
+                entityManager.clear();
             }
+            approvedPayslipsDTOs.sort(Comparator.comparing(PayslipResponseDTO::getEmployeeCode));
 
-            // Process any remaining unsent or failed emails
-            processUnsentAndFailedEmails();
+            // The trigger wrote one outbox message per approved payslip in this statement;
+            // they are mailed by the dispatcher once it commits, not while the approval holds its connection
+            payslipEmailDispatcher.wakeUpAfterCommit();
+            logger.info("Approved {} payslips for {}-{}", approvedPayslipsDTOs.size(), month, year);
 
             return approvedPayslipsDTOs;
         }
 
         @Override
-        @Transactional // Ensure atomicity of email sending attempts and status updates
         public void processAndSendSalaryNotifications(int month, int year) {
             validateMonthAndYear(month, year);
-
-            List<Message> unsentMessages = messageRepository.findByMonthAndYearAndEmailSentStatus(month, year, MessageSentStatus.UNSENT);
-            logger.info("Found {} unsent messages for {}-{}", unsentMessages.size(), month, year);
-
-            for (Message message : unsentMessages) {
-                Employee employee = employeeRepository.findByCode(message.getEmployee().getCode())
-                        .orElse(null); // Message entity should have employee relation
-
-                if (employee != null && StringUtils.hasText(employee.getEmail())) {
-                    try {
-                        message.setEmailSentStatus(MessageSentStatus.PROCESSING);
-                        messageRepository.save(message); // Mark as processing
-
-                        // Validate email format before sending
-                        if (!employee.getEmail().matches("^[\\w-\\.]+@([\\w-]+\\.)+[\\w-]{2,4}$")) {
-                            logger.warn("Invalid email format for employee {}: {}. Marking as FAILED.", employee.getCode(), employee.getEmail());
-                            message.setEmailSentStatus(MessageSentStatus.FAILED);
-                        } else {
-                            // Get the payslip for this employee
-                            PaySlip payslip = payslipRepository.findByEmployeeAndMonthAndYear(employee, month, year)
-                                    .orElse(null);
-
-                            // Get the employment for this employee
-                            Employment employment = employmentRepository.findByEmployeeCode(employee.getCode())
-                                    .orElse(null);
-
-                            if (payslip != null) {
-                                // Process the payslip template to generate HTML content
-                                String htmlContent = emailService.processPayslipTemplate(
-                                        employee, 
-                                        payslip, 
-                                        employment, 
-                                        month, 
-                                        year
-                                );
-
-                                // Send HTML email with the processed template
-                                emailService.sendHtmlEmail(
-                                        employee.getEmail(),
-                                        "Salary Credited - " + month + "/" + year,
-                                        htmlContent
-                                );
-                            } else {
-                                // Fallback to the original message content if payslip not found
-                                emailService.sendHtmlEmail(
-                                        employee.getEmail(),
-                                        "Salary Credited - " + month + "/" + year,
-                                        message.getMessageContent()
-                                );
-                            }
-                            message.setEmailSentStatus(MessageSentStatus.SENT);
-                            logger.info("Salary notification email sent to {} for employee {}", employee.getEmail(), employee.getCode());
-                        }
-                    } catch (ValidationException e) {
-                        logger.warn("Validation error when sending email to {}: {}", employee.getEmail(), e.getMessage());
-                        message.setEmailSentStatus(MessageSentStatus.FAILED);
-                    } catch (EmailException e) {
-                        logger.error("Email service error when sending to {}: {}", employee.getEmail(), e.getMessage());
-                        message.setEmailSentStatus(MessageSentStatus.FAILED);
-                    } catch (Exception e) {
-                        logger.error("Unexpected error sending salary notification email to {}: {}", employee.getEmail(), e.getMessage());
-                        message.setEmailSentStatus(MessageSentStatus.FAILED);
-                    }
-                } else {
-                    logger.warn("Employee or email not found for message ID {}. Marking as FAILED.", message.getId());
-                    message.setEmailSentStatus(MessageSentStatus.FAILED);
-                }
-                messageRepository.save(message); // Save final status
-            }
+            // Sends the UNSENT messages, as before, by draining the outbox with the dispatcher instead of one by one in
+            // a transaction. FAILED messages keep waiting for their backoff (processUnsentAndFailedEmails retries them
+            // now). The drain is not scoped to the period: it sends everything due in the outbox, this period included
+            int sent = payslipEmailDispatcher.drain();
+            logger.info("Drained the email outbox, requested for {}-{}: {} salary notification emails sent", month, year, sent);
         }
 
 
@@ -329,37 +391,45 @@
                 throw new ValidationException("Employee code cannot be null or empty");
             }
 
-            Employee employee = employeeRepository.findByCode(employeeCode)
-                    .orElseThrow(() -> new ResourceNotFoundException("Employee not found with code: " + employeeCode));
-            PaySlip payslip = payslipRepository.findByEmployeeAndMonthAndYear(employee, month, year)
-                    .orElseThrow(() -> new ResourceNotFoundException("Payslip not found for employee " + employeeCode + " for " + month + "/" + year));
-
-            Employment employment = employmentRepository.findByEmployeeCode(employeeCode).orElse(null);
-            BigDecimal baseSalary = employment != null ? employment.getBaseSalary() : BigDecimal.ZERO;
-
-            return convertToPayslipResponseDTO(payslip, employee.getFirstName() + " " + employee.getLastName(), baseSalary);
+            // Payslip, employee name and base salary in one query
+            List<Object[]> rows = payslipRepository.findWithEmployeeByEmployeeCodeAndMonthAndYear(employeeCode, month, year);
+            if (rows.isEmpty()) {
+                if (!employeeRepository.existsByCode(employeeCode)) {
+                    throw new ResourceNotFoundException("Employee not found with code: " + employeeCode);
+                }
+                throw new ResourceNotFoundException("Payslip not found for employee " + employeeCode + " for " + month + "/" + year);
+            }
+            return PayslipMapper.fromRow(rows.get(0));
         }
 
         @Override
         public List<PayslipResponseDTO> getAllPayslipsForMonthYear(int month, int year) {
             validateMonthAndYear(month, year);
 
-            List<PaySlip> payslips = payslipRepository.findByMonthAndYear(month, year);
-            return payslips.stream().map(p -> {
-                Employee emp = p.getEmployee(); // Assumes Employee is fetched (Lazy might require transaction or fetch join)
-                Employment employment = employmentRepository.findByEmployeeCode(emp.getCode()).orElse(null);
-                BigDecimal baseSalary = employment != null ? employment.getBaseSalary() : BigDecimal.ZERO;
-                return convertToPayslipResponseDTO(p, emp.getFirstName() + " " + emp.getLastName(), baseSalary);
-            }).collect(Collectors.toList());
+            // Payslips, employee names and base salaries in one query regardless of headcount
+            return payslipRepository.findWithEmployeeByMonthAndYear(month, year).stream()
+                    .map(PayslipMapper::fromRow)
+                    .collect(Collectors.toList());
         }
 
-        private PayslipResponseDTO convertToPayslipResponseDTO(PaySlip payslip, String employeeName, BigDecimal baseSalary) {
-            PayslipResponseDTO dto = new PayslipResponseDTO();
-            BeanUtils.copyProperties(payslip, dto);
-            dto.setEmployeeCode(payslip.getEmployee().getCode());
-            dto.setEmployeeName(employeeName);
-            dto.setBaseSalary(baseSalary.setScale(2, RoundingMode.HALF_UP)); // Add base salary to DTO
-            return dto;
+        @Override
+        @Transactional(readOnly = true) // The cursor behind the stream needs an open transaction
+        public void streamPayslipsForMonthYear(int month, int year, Consumer<PayslipResponseDTO> sink) {
+            validateMonthAndYear(month, year);
+
+            int rowCount = 0;
+            try (Stream<Object[]> rows = payslipRepository.streamWithEmployeeByMonthAndYear(month, year)) {
+                Iterator<Object[]> iterator = rows.iterator();
+                while (iterator.hasNext()) {
+                    sink.accept(PayslipMapper.fromRow(iterator.next()));
+
+                    // Detach what was written so the persistence context stays the size of one chunk
+                    if (++rowCount % batchSize == 0) {
+                        entityManager.clear();
+                    }
+                }
+            }
+            logger.info("Streamed {} payslips for {}-{}", rowCount, month, year);
         }
 
         /**
@@ -381,95 +451,14 @@
         }
 
         @Override
-        @Transactional
-        public void processUnsentAndFailedEmails() {
-
-            // Find all messages with status UNSENT or FAILED
-            List<MessageSentStatus> statuses = Arrays.asList(MessageSentStatus.UNSENT, MessageSentStatus.FAILED);
-            List<Message> unprocessedMessages = new ArrayList<>();
-
-            // For each status, find messages and add them to the list
-            for (MessageSentStatus status : statuses) {
-
-                for (int month = 1; month <= 12; month++) {
-                    int currentYear = LocalDate.now().getYear();
-                    for (int year = currentYear - 1; year <= currentYear; year++) {
-                        List<Message> messages = messageRepository.findByMonthAndYearAndEmailSentStatus(month, year, status);
-                        unprocessedMessages.addAll(messages);
-                    }
-                }
-            }
-
-            logger.info("Found {} unsent or failed messages to process", unprocessedMessages.size());
-
-            // Process each message
-            for (Message message : unprocessedMessages) {
-                Employee employee = employeeRepository.findByCode(message.getEmployee().getCode())
-                        .orElse(null);
-
-                if (employee != null && StringUtils.hasText(employee.getEmail())) {
-                    try {
-                        message.setEmailSentStatus(MessageSentStatus.PROCESSING);
-                        messageRepository.save(message); // Mark as processing
-
-                        // Validate email format before sending
-                        if (!employee.getEmail().matches("^[\\w-\\.]+@([\\w-]+\\.)+[\\w-]{2,4}$")) {
-                            logger.warn("Invalid email format for employee {}: {}. Marking as FAILED.", employee.getCode(), employee.getEmail());
-                            message.setEmailSentStatus(MessageSentStatus.FAILED);
-                        } else {
-                            // Get the payslip for this employee
-                            PaySlip payslip = payslipRepository.findByEmployeeAndMonthAndYear(
-                                    employee, message.getMonth(), message.getYear())
-                                    .orElse(null);
-
-                            // Get the employment for this employee
-                            Employment employment = employmentRepository.findByEmployeeCode(employee.getCode())
-                                    .orElse(null);
-
-                            if (payslip != null) {
-                                // Process the payslip template to generate HTML content
-                                String htmlContent = emailService.processPayslipTemplate(
-                                        employee, 
-                                        payslip, 
-                                        employment, 
-                                        message.getMonth(), 
-                                        message.getYear()
-                                );
-
-                                // Send HTML email with the processed template
-                                emailService.sendHtmlEmail(
-                                        employee.getEmail(),
-                                        "Salary Credited - " + message.getMonth() + "/" + message.getYear(),
-                                        htmlContent
-                                );
-                            } else {
-                                // Fallback to the original message content if payslip not found
-                                emailService.sendHtmlEmail(
-                                        employee.getEmail(),
-                                        "Salary Credited - " + message.getMonth() + "/" + message.getYear(),
-                                        message.getMessageContent()
-                                );
-                            }
-                            message.setEmailSentStatus(MessageSentStatus.SENT);
-                            logger.info("Salary notification email sent to {} for employee {}", employee.getEmail(), employee.getCode());
-                        }
-                    } catch (ValidationException e) {
-                        logger.warn("Validation error when sending email to {}: {}", employee.getEmail(), e.getMessage());
-                        message.setEmailSentStatus(MessageSentStatus.FAILED);
-                    } catch (EmailException e) {
-                        logger.error("Email service error when sending to {}: {}", employee.getEmail(), e.getMessage());
-                        message.setEmailSentStatus(MessageSentStatus.FAILED);
-                    } catch (Exception e) {
-                        logger.error("Unexpected error sending salary notification email to {}: {}", employee.getEmail(), e.getMessage());
-                        message.setEmailSentStatus(MessageSentStatus.FAILED);
-                    }
-                } else {
-                    logger.warn("Employee or email not found for message ID {}. Marking as FAILED.", message.getId());
-                    message.setEmailSentStatus(MessageSentStatus.FAILED);
-                }
-                messageRepository.save(message); // Save final status
-            }
+        public EmailDispatcherStatsDTO getEmailDispatcherStats() {
+            return payslipEmailDispatcher.getStats();
+        }
 
-            logger.info("Finished processing unsent and failed emails");
+        @Override
+        public void processUnsentAndFailedEmails() {
+            // Sent by the outbox dispatcher with adaptive concurrency instead of one by one in a transaction
+            int sent = payslipEmailDispatcher.retryFailed();
+            logger.info("Finished processing unsent and failed emails: {} sent", sent);
         }
     }
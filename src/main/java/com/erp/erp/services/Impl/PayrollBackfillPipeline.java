@@ -0,0 +1,158 @@
+package com.erp.erp.services.Impl;
+
+import com.erp.erp.dto.response.PayrollBackfillSummaryDTO;
+import com.erp.erp.entity.Employment;
+import com.erp.erp.entity.PaySlip;
+import com.erp.erp.enums.PayrollRunStatus;
+import com.erp.erp.exceptions.PayrollException;
+import com.erp.erp.repository.PayslipRepository;
+import com.erp.erp.utils.DeductionPlan;
+import com.erp.erp.utils.PayrollCalculator;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.time.YearMonth;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Generates a range of months from one roster and deduction plan as a two-stage pipeline:
+ * a calculator thread computes one month at a time into a bounded queue while the calling thread
+ * persists the previous month in its own transaction. The queue bound keeps at most a few months
+ * of calculated payslips in memory. The backfill stops at the first month that fails to commit;
+ * earlier months stay committed and running the range again skips them.
+ */
+@Component
+public class PayrollBackfillPipeline {
+
+    private static final Logger logger = LoggerFactory.getLogger(PayrollBackfillPipeline.class);
+
+    @Autowired
+    private PayrollPartitionProcessor partitionProcessor;
+
+    @Autowired
+    private PayslipRepository payslipRepository;
+
+    @Value("${app.payroll.backfillQueueSize:2}")
+    private int queueSize;
+
+    private record MonthBatch(YearMonth period, List<String> employeeCodes, List<PaySlip> payslips, int skipped) {
+    }
+
+    // Marks the end of the calculated months
+    private static final MonthBatch END = new MonthBatch(null, List.of(), List.of(), 0);
+
+    /**
+     * @param periods the months to generate, in order
+     * @param roster the active roster, loaded once for every month
+     * @param plan the deduction plan, compiled once for every month
+     * @return the per-month outcome
+     */
+    public PayrollBackfillSummaryDTO run(List<YearMonth> periods, List<Employment> roster, DeductionPlan plan) {
+        long startedAt = System.currentTimeMillis();
+        Map<YearMonth, PayrollBackfillSummaryDTO.MonthSummary> summaries = new LinkedHashMap<>();
+        for (YearMonth period : periods) {
+            PayrollBackfillSummaryDTO.MonthSummary summary = new PayrollBackfillSummaryDTO.MonthSummary();
+            summary.setMonth(period.getMonthValue());
+            summary.setYear(period.getYear());
+            summary.setStatus(PayrollRunStatus.PENDING);
+            summaries.put(period, summary);
+        }
+
+        BlockingQueue<MonthBatch> queue = new ArrayBlockingQueue<>(Math.max(1, queueSize));
+        AtomicReference<RuntimeException> calculationFailure = new AtomicReference<>();
+        Thread calculator = Thread.ofVirtual().name("payroll-backfill-calculator").start(() -> {
+            try {
+                for (YearMonth period : periods) {
+                    queue.put(calculateMonth(period, roster, plan));
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            } catch (RuntimeException e) {
+                calculationFailure.set(e);
+            } finally {
+                try {
+                    queue.put(END);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            }
+        });
+
+        try {
+            MonthBatch batch;
+            while ((batch = queue.take()) != END) {
+                PayrollBackfillSummaryDTO.MonthSummary summary = summaries.get(batch.period());
+                summary.setSkipped(batch.skipped());
+                try {
+                    summary.setGenerated(partitionProcessor.persistCalculated(batch.employeeCodes(), batch.payslips()));
+                    summary.setStatus(PayrollRunStatus.COMPLETED);
+                    logger.info("Backfill committed {} payslips for {}", summary.getGenerated(), batch.period());
+                } catch (RuntimeException e) {
+                    logger.error("Backfill failed to commit {}: {}", batch.period(), e.getMessage());
+                    summary.setStatus(PayrollRunStatus.FAILED);
+                    summary.setErrorMessage(e.getMessage());
+                    calculator.interrupt();
+                    break;
+                }
+            }
+            calculator.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            calculator.interrupt();
+            throw new PayrollException("Interrupted during payroll backfill", e);
+        }
+
+        if (calculationFailure.get() != null) {
+            summaries.values().stream()
+                    .filter(summary -> summary.getStatus() == PayrollRunStatus.PENDING)
+                    .findFirst()
+                    .ifPresent(summary -> {
+                        summary.setStatus(PayrollRunStatus.FAILED);
+                        summary.setErrorMessage(calculationFailure.get().getMessage());
+                    });
+            logger.error("Backfill calculation failed: {}", calculationFailure.get().getMessage());
+        }
+
+        PayrollBackfillSummaryDTO result = new PayrollBackfillSummaryDTO();
+        result.setEmployeeCount(roster.size());
+        for (PayrollBackfillSummaryDTO.MonthSummary summary : summaries.values()) {
+            result.getMonths().add(summary);
+            result.setTotalGenerated(result.getTotalGenerated() + summary.getGenerated());
+            result.setTotalSkipped(result.getTotalSkipped() + summary.getSkipped());
+        }
+        result.setDurationMillis(System.currentTimeMillis() - startedAt);
+        return result;
+    }
+
+    private MonthBatch calculateMonth(YearMonth period, List<Employment> roster, DeductionPlan plan) {
+        int month = period.getMonthValue();
+        int year = period.getYear();
+        Set<String> existingEmployeeCodes = new HashSet<>(payslipRepository.findEmployeeCodesByMonthAndYear(month, year));
+
+        PayrollCalculator.Result result = plan.newResult();
+        List<String> employeeCodes = new ArrayList<>(roster.size());
+        List<PaySlip> payslips = new ArrayList<>(roster.size());
+        int skipped = 0;
+        for (Employment employment : roster) {
+            String employeeCode = employment.getEmployee().getCode();
+            if (existingEmployeeCodes.contains(employeeCode)) {
+                skipped++;
+                continue;
+            }
+            employeeCodes.add(employeeCode);
+            payslips.add(partitionProcessor.calculateDetached(employment, plan, result, month, year));
+        }
+        return new MonthBatch(period, employeeCodes, payslips, skipped);
+    }
+}
@@ -0,0 +1,239 @@
+package com.erp.erp.services.Impl;
+
+import com.erp.erp.dto.response.PayrollJobResponseDTO;
+import com.erp.erp.entity.PayrollJob;
+import com.erp.erp.enums.PayrollEngine;
+import com.erp.erp.enums.PayrollJobStatus;
+import com.erp.erp.enums.PayrollJobType;
+import com.erp.erp.exceptions.ResourceNotFoundException;
+import com.erp.erp.exceptions.ValidationException;
+import com.erp.erp.repository.PayrollJobRepository;
+import com.erp.erp.services.PayRollService;
+import com.erp.erp.services.PayrollJobService;
+import com.erp.erp.utils.PayrollProgress;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.BeanUtils;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.time.LocalDateTime;
+import java.util.EnumSet;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.function.Consumer;
+import java.util.stream.Collectors;
+
+/**
+ * Runs payroll generation and approval as background jobs on a dedicated executor.
+ * Submitting persists a QUEUED job and returns at once; the job row is updated when the run starts and
+ * again with the final counts when it ends, while live progress is served from memory.
+ * The node renews a heartbeat on the rows of its unfinished jobs, so a job left QUEUED or RUNNING by a node
+ * that stopped is marked FAILED by the next node that starts or renews its own heartbeats.
+ * Only the node running a job records its outcome: a cancel sets a flag on the row, which that node polls
+ * with its heartbeat, and every status write is conditional on the job still being unfinished.
+ */
+@Service
+public class PayrollJobServiceImpl implements PayrollJobService {
+
+    private static final Logger logger = LoggerFactory.getLogger(PayrollJobServiceImpl.class);
+
+    private static final EnumSet<PayrollJobStatus> UNFINISHED = EnumSet.of(PayrollJobStatus.QUEUED, PayrollJobStatus.RUNNING);
+
+    @Autowired
+    private PayrollJobRepository payrollJobRepository;
+
+    @Autowired
+    private PayRollService payRollService;
+
+    @Value("${app.payroll.engine:SERIAL}")
+    private PayrollEngine defaultEngine;
+
+    @Value("${app.payroll.jobConcurrency:2}")
+    private int jobConcurrency;
+
+    @Value("${app.payroll.jobStaleSeconds:120}")
+    private int jobStaleSeconds;
+
+    private ExecutorService executor;
+
+    // Progress of the jobs queued or running on this node
+    private final Map<Long, PayrollProgress> activeJobs = new ConcurrentHashMap<>();
+
+    @PostConstruct
+    public void init() {
+        executor = Executors.newFixedThreadPool(jobConcurrency, Thread.ofPlatform().name("payroll-job-", 0).factory());
+        failAbandonedJobs();
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        activeJobs.values().forEach(PayrollProgress::cancel);
+        executor.shutdown();
+    }
+
+    @Override
+    public PayrollJobResponseDTO submitGenerate(int month, int year, PayrollEngine engine, String requestedBy) {
+        PayrollEngine resolvedEngine = engine != null ? engine : defaultEngine;
+        PayrollJob job = createJob(PayrollJobType.GENERATE, month, year, resolvedEngine, requestedBy);
+        return submit(job, progress -> payRollService.generatePayroll(month, year, resolvedEngine, progress, payslip -> {}));
+    }
+
+    @Override
+    public PayrollJobResponseDTO submitApprove(int month, int year, String requestedBy) {
+        PayrollJob job = createJob(PayrollJobType.APPROVE, month, year, null, requestedBy);
+        return submit(job, progress -> payRollService.approvePayroll(month, year, progress));
+    }
+
+    @Override
+    public PayrollJobResponseDTO getJob(Long jobId) {
+        return toResponseDTO(findJob(jobId));
+    }
+
+    @Override
+    public List<PayrollJobResponseDTO> getRecentJobs() {
+        return payrollJobRepository.findTop50ByOrderByCreatedAtDesc().stream()
+                .map(this::toResponseDTO)
+                .collect(Collectors.toList());
+    }
+
+    @Override
+    public PayrollJobResponseDTO cancelJob(Long jobId) {
+        PayrollJob job = findJob(jobId);
+        if (isFinished(job.getStatus())) {
+            throw new ValidationException("Payroll job " + jobId + " has already finished with status " + job.getStatus());
+        }
+        if (payrollJobRepository.requestCancel(jobId, UNFINISHED) == 0) {
+            throw new ValidationException("Payroll job " + jobId + " has already finished");
+        }
+        job.setCancelRequested(true);
+
+        PayrollProgress progress = activeJobs.get(jobId);
+        if (progress != null) {
+            // The worker stops at its next chunk boundary and records the CANCELLED status itself
+            progress.cancel();
+            logger.info("Cancellation requested for payroll job {}", jobId);
+        } else {
+            // Running on another node, which picks the flag up with its next heartbeat; a job whose node stopped
+            // is marked CANCELLED once its heartbeat goes stale
+            logger.info("Cancellation requested for payroll job {}, which is not running on this node", jobId);
+        }
+        return toResponseDTO(job);
+    }
+
+    @Override
+    public void renewHeartbeats() {
+        List<Long> jobIds = List.copyOf(activeJobs.keySet());
+        if (!jobIds.isEmpty()) {
+            payrollJobRepository.renewHeartbeats(jobIds);
+            // Cancels requested through other nodes only reach this one through the job rows
+            for (Long jobId : payrollJobRepository.findCancelRequestedIds(jobIds)) {
+                PayrollProgress progress = activeJobs.get(jobId);
+                if (progress != null && !progress.isCancelled()) {
+                    progress.cancel();
+                    logger.info("Cancelling payroll job {} as requested through another node", jobId);
+                }
+            }
+        }
+        failAbandonedJobs();
+    }
+
+    private void failAbandonedJobs() {
+        int failed = payrollJobRepository.failAbandoned(jobStaleSeconds, "Abandoned: the node running the job stopped before it finished");
+        if (failed > 0) {
+            logger.warn("Marked {} payroll jobs abandoned by a stopped node as FAILED, or CANCELLED if a cancel was requested", failed);
+        }
+    }
+
+    private PayrollJob createJob(PayrollJobType type, int month, int year, PayrollEngine engine, String requestedBy) {
+        PayrollJob job = new PayrollJob();
+        job.setType(type);
+        job.setStatus(PayrollJobStatus.QUEUED);
+        job.setMonth(month);
+        job.setYear(year);
+        job.setEngine(engine);
+        job.setRequestedBy(requestedBy);
+        job.setCreatedAt(LocalDateTime.now());
+        job = payrollJobRepository.save(job);
+        payrollJobRepository.renewHeartbeats(List.of(job.getId()));
+        return job;
+    }
+
+    private PayrollJobResponseDTO submit(PayrollJob job, Consumer<PayrollProgress> work) {
+        PayrollProgress progress = new PayrollProgress();
+        activeJobs.put(job.getId(), progress);
+        executor.execute(() -> run(job.getId(), progress, work));
+        logger.info("Submitted payroll job {} ({} {}-{})", job.getId(), job.getType(), job.getMonth(), job.getYear());
+        return toResponseDTO(job);
+    }
+
+    private void run(Long jobId, PayrollProgress progress, Consumer<PayrollProgress> work) {
+        try {
+            if (progress.isCancelled() || findJob(jobId).isCancelRequested()) {
+                finish(jobId, PayrollJobStatus.CANCELLED, progress, null);
+                return;
+            }
+            if (payrollJobRepository.markRunning(jobId, PayrollJobStatus.QUEUED, PayrollJobStatus.RUNNING, LocalDateTime.now()) == 0) {
+                logger.warn("Payroll job {} was ended by another node before it started; not running it", jobId);
+                return;
+            }
+
+            try {
+                work.accept(progress);
+                finish(jobId, PayrollJobStatus.COMPLETED, progress, null);
+            } catch (CancellationException e) {
+                finish(jobId, PayrollJobStatus.CANCELLED, progress, null);
+            } catch (RuntimeException e) {
+                logger.error("Payroll job {} failed: {}", jobId, e.getMessage(), e);
+                finish(jobId, PayrollJobStatus.FAILED, progress, e.getMessage());
+            }
+        } catch (RuntimeException e) {
+            logger.error("Could not record the outcome of payroll job {}: {}", jobId, e.getMessage(), e);
+        } finally {
+            activeJobs.remove(jobId);
+        }
+    }
+
+    private void finish(Long jobId, PayrollJobStatus status, PayrollProgress progress, String errorMessage) {
+        if (errorMessage != null && errorMessage.length() > 2000) {
+            errorMessage = errorMessage.substring(0, 2000);
+        }
+        if (payrollJobRepository.finish(jobId, UNFINISHED, status, progress.getTotal(), progress.getProcessed(), progress.getFailed(),
+                errorMessage, LocalDateTime.now()) == 0) {
+            // Another node ended it as abandoned, e.g. after this node missed its heartbeats
+            logger.warn("Payroll job {} was already ended by another node; its {} outcome is not recorded", jobId, status);
+            return;
+        }
+        logger.info("Payroll job {} finished with status {} ({} of {} processed, {} failed)",
+                jobId, status, progress.getProcessed(), progress.getTotal(), progress.getFailed());
+    }
+
+    private PayrollJob findJob(Long jobId) {
+        return payrollJobRepository.findById(jobId)
+                .orElseThrow(() -> new ResourceNotFoundException("Payroll job not found with id: " + jobId));
+    }
+
+    private boolean isFinished(PayrollJobStatus status) {
+        return status == PayrollJobStatus.COMPLETED || status == PayrollJobStatus.FAILED || status == PayrollJobStatus.CANCELLED;
+    }
+
+    private PayrollJobResponseDTO toResponseDTO(PayrollJob job) {
+        PayrollJobResponseDTO dto = new PayrollJobResponseDTO();
+        BeanUtils.copyProperties(job, dto);
+        PayrollProgress progress = activeJobs.get(job.getId());
+        if (progress != null && !isFinished(job.getStatus())) {
+            dto.setTotal(progress.getTotal());
+            dto.setProcessed(progress.getProcessed());
+            dto.setFailed(progress.getFailed());
+            dto.setCancelRequested(job.isCancelRequested() || progress.isCancelled());
+        }
+        return dto;
+    }
+}
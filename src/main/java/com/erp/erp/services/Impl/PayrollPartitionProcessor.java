@@ -0,0 +1,356 @@
+package com.erp.erp.services.Impl;
+
+import com.erp.erp.dto.response.PayslipResponseDTO;
+import com.erp.erp.entity.Employee;
+import com.erp.erp.entity.Employment;
+import com.erp.erp.entity.PaySlip;
+import com.erp.erp.enums.PayrollRunStatus;
+import com.erp.erp.enums.PayslipStatus;
+import com.erp.erp.repository.PayrollRunPartitionRepository;
+import com.erp.erp.repository.PayslipRepository;
+import com.erp.erp.utils.DeductionPlan;
+import com.erp.erp.utils.PayrollCalculator;
+import com.erp.erp.utils.PayrollProgress;
+import com.erp.erp.utils.PayslipMapper;
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.PersistenceContext;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.Consumer;
+
+/**
+ * Computes and persists the payslips for one slice of the active roster inside a single transaction.
+ * {@link PartitionedPayrollEngine} calls it once per chunk of a run partition, so every chunk commits
+ * independently together with the partition's checkpoint.
+ */
+@Component
+public class PayrollPartitionProcessor {
+
+    private static final Logger logger = LoggerFactory.getLogger(PayrollPartitionProcessor.class);
+
+    // Keeps IN lists well below PostgreSQL's bind parameter limit
+    private static final int IN_CLAUSE_CHUNK_SIZE = 1000;
+
+    @Autowired
+    private PayslipRepository payslipRepository;
+
+    @Autowired
+    private PayrollRunPartitionRepository partitionRepository;
+
+    @PersistenceContext
+    private EntityManager entityManager;
+
+    @Value("${app.payroll.batchSize:500}")
+    private int batchSize;
+
+    /**
+     * Generates the PENDING payslips for the given employments, skipping employees that already have one.
+     *
+     * @param employments the employments to process
+     * @param existingEmployeeCodes codes of the employees that already have a payslip for the period
+     * @param plan the compiled deduction plan of the run
+     * @param month the month (1-12)
+     * @param year the year
+     * @param progress the progress of the run, updated per employee and checked for cancellation per chunk; the employees
+     *                 counted are taken back out if the slice rolls back
+     * @param sink receives the generated or already existing payslip of every employee, in roster order, as soon as it is produced
+     * @param partitionId the run partition whose checkpoint advances to the last employee of the slice on commit,
+     *                    or null when the slice is not part of a checkpointed run
+     * @return the number of payslips persisted; employees that already had one are not counted
+     * @throws java.util.concurrent.CancellationException if the run is cancelled; the slice is rolled back
+     */
+    @Transactional
+    public int generate(List<Employment> employments, Set<String> existingEmployeeCodes, DeductionPlan plan, int month, int year,
+                         PayrollProgress progress, Consumer<PayslipResponseDTO> sink, Long partitionId) {
+        Map<String, PaySlip> existingPayslips = findExistingPayslips(employments, existingEmployeeCodes, month, year);
+
+        PayrollCalculator.Result result = plan.newResult();
+
+        // A slice that rolls back, including on commit, processed nobody; the caller counts its employees as failed
+        int[] counted = new int[1];
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCompletion(int status) {
+                    if (status != STATUS_COMMITTED) {
+                        progress.addProcessed(-counted[0]);
+                    }
+                }
+            });
+        }
+
+        int persistedCount = 0;
+        for (int i = 0; i < employments.size(); i++) {
+            if (i % batchSize == 0) {
+                progress.checkCancelled();
+            }
+            Employment employment = employments.get(i);
+            Employee employee = employment.getEmployee();
+            String employeeName = employee.getFirstName() + " " + employee.getLastName();
+            progress.addProcessed(1);
+            counted[0]++;
+
+            PaySlip existingPayslip = existingPayslips.get(employee.getCode());
+            if (existingPayslip != null) {
+                logger.debug("Payslip already exists for employee {} for {}-{}. Skipping.", employee.getCode(), month, year);
+                sink.accept(PayslipMapper.toResponseDTO(existingPayslip, employeeName, employment.getBaseSalary()));
+                continue;
+            }
+
+            // The roster entities are detached after each chunk clear, so link the payslip through a reference
+            Employee employeeReference = entityManager.getReference(Employee.class, employee.getCode());
+            PaySlip payslip = calculatePayslip(employeeReference, employment.getBaseSalary(), plan, result, month, year);
+            payslip.setInputFingerprint(plan.inputFingerprint(employment.getBaseSalary(), employee.getStatus()));
+
+            PaySlip savedPayslip = payslipRepository.save(payslip);
+            sink.accept(PayslipMapper.toResponseDTO(savedPayslip, employeeName, employment.getBaseSalary()));
+
+            if (++persistedCount % batchSize == 0) {
+                flushAndClear();
+            }
+        }
+        flushAndClear();
+
+        if (partitionId != null && !employments.isEmpty()) {
+            String lastEmployeeCode = employments.get(employments.size() - 1).getEmployee().getCode();
+            partitionRepository.recordCheckpoint(partitionId, lastEmployeeCode, employments.size(), LocalDateTime.now());
+        }
+        if (!existingPayslips.isEmpty()) {
+            logger.warn("{} employees already had a payslip for {}-{} and were skipped", existingPayslips.size(), month, year);
+        }
+        return persistedCount;
+    }
+
+    /**
+     * Generates a claimed partition of a DISTRIBUTED run in one transaction, fenced by the partition's lease:
+     * the lease is renewed first, which fails if another node reclaimed the partition and otherwise locks the
+     * partition row until commit, and the partition is marked COMPLETED in the same transaction as its payslips.
+     *
+     * @param leaseOwner the node that claimed the partition
+     * @param alreadyPaid employees of the partition that were left out because they already had a payslip; they
+     *                    count as processed in the partition's checkpoint like the generated ones
+     * @return false if the node no longer holds the lease; nothing was written
+     */
+    @Transactional
+    public boolean generateLeased(List<Employment> employments, Set<String> existingEmployeeCodes, DeductionPlan plan, int month, int year,
+                                  PayrollProgress progress, Consumer<PayslipResponseDTO> sink, Long partitionId,
+                                  String leaseOwner, int leaseSeconds, int alreadyPaid) {
+        if (partitionRepository.renewLease(partitionId, leaseOwner, leaseSeconds) == 0) {
+            return false;
+        }
+        generate(employments, existingEmployeeCodes, plan, month, year, progress, sink, partitionId);
+        if (alreadyPaid > 0) {
+            partitionRepository.addProcessedCount(partitionId, alreadyPaid, LocalDateTime.now());
+        }
+        partitionRepository.releaseLease(partitionId, leaseOwner, PayrollRunStatus.COMPLETED, LocalDateTime.now());
+        return true;
+    }
+
+    /**
+     * Recomputes PENDING payslips whose inputs changed since they were generated and updates them in place.
+     * Payslips that were approved after the caller compared fingerprints are left untouched.
+     *
+     * @param employmentsByPayslipId the current employment of every payslip to recompute, keyed by payslip id
+     * @param plan the compiled deduction plan of the run
+     * @return the number of payslips updated
+     */
+    @Transactional
+    public int recalculate(Map<Long, Employment> employmentsByPayslipId, DeductionPlan plan) {
+        PayrollCalculator.Result result = plan.newResult();
+        List<Long> payslipIds = new ArrayList<>(employmentsByPayslipId.keySet());
+
+        int updatedCount = 0;
+        for (int from = 0; from < payslipIds.size(); from += IN_CLAUSE_CHUNK_SIZE) {
+            List<Long> chunk = payslipIds.subList(from, Math.min(payslipIds.size(), from + IN_CLAUSE_CHUNK_SIZE));
+            for (PaySlip payslip : payslipRepository.findAllById(chunk)) {
+                if (payslip.getStatus() != PayslipStatus.PENDING) {
+                    logger.info("Payslip {} was approved meanwhile and is not recalculated", payslip.getId());
+                    continue;
+                }
+                Employment employment = employmentsByPayslipId.get(payslip.getId());
+                Employee employee = employment.getEmployee();
+                calculateAmounts(payslip, employee.getCode(), employment.getBaseSalary(), plan, result);
+                payslip.setInputFingerprint(plan.inputFingerprint(employment.getBaseSalary(), employee.getStatus()));
+                updatedCount++;
+            }
+            // Dirty checking turns the changes into one batch of updates per chunk
+            flushAndClear();
+        }
+        return updatedCount;
+    }
+
+    /**
+     * Computes a PENDING payslip without linking the employee or persisting it, for callers that calculate
+     * ahead of a later {@link #persistCalculated} call.
+     */
+    PaySlip calculateDetached(Employment employment, DeductionPlan plan, PayrollCalculator.Result result, int month, int year) {
+        Employee employee = employment.getEmployee();
+        PaySlip payslip = new PaySlip();
+        payslip.setMonth(month);
+        payslip.setYear(year);
+        payslip.setStatus(PayslipStatus.PENDING);
+        calculateAmounts(payslip, employee.getCode(), employment.getBaseSalary(), plan, result);
+        payslip.setInputFingerprint(plan.inputFingerprint(employment.getBaseSalary(), employee.getStatus()));
+        return payslip;
+    }
+
+    /**
+     * Persists payslips from {@link #calculateDetached} in one transaction, in JDBC batches.
+     *
+     * @param employeeCodes the employee of each payslip, by position
+     * @param payslips the calculated payslips
+     * @return the number of payslips persisted
+     */
+    @Transactional
+    public int persistCalculated(List<String> employeeCodes, List<PaySlip> payslips) {
+        for (int i = 0; i < payslips.size(); i++) {
+            PaySlip payslip = payslips.get(i);
+            payslip.setEmployee(entityManager.getReference(Employee.class, employeeCodes.get(i)));
+            entityManager.persist(payslip);
+            if ((i + 1) % batchSize == 0) {
+                flushAndClear();
+            }
+        }
+        flushAndClear();
+        return payslips.size();
+    }
+
+    /**
+     * Bulk-loads the existing payslips of the employees in this slice, in IN-list chunks,
+     * instead of checking and fetching them one employee at a time.
+     */
+    private Map<String, PaySlip> findExistingPayslips(List<Employment> employments, Set<String> existingEmployeeCodes, int month, int year) {
+        if (existingEmployeeCodes.isEmpty()) {
+            return Map.of();
+        }
+        List<String> codes = new ArrayList<>();
+        for (Employment employment : employments) {
+            String code = employment.getEmployee().getCode();
+            if (existingEmployeeCodes.contains(code)) {
+                codes.add(code);
+            }
+        }
+
+        Map<String, PaySlip> existingPayslips = new HashMap<>(codes.size() * 2);
+        if (codes.size() == existingEmployeeCodes.size()) {
+            // Every payslip of the period belongs to this slice (e.g. a serial re-run), so one query fetches them all
+            for (PaySlip payslip : payslipRepository.findByMonthAndYear(month, year)) {
+                existingPayslips.put(payslip.getEmployee().getCode(), payslip);
+            }
+            return existingPayslips;
+        }
+        for (int from = 0; from < codes.size(); from += IN_CLAUSE_CHUNK_SIZE) {
+            List<String> chunk = codes.subList(from, Math.min(codes.size(), from + IN_CLAUSE_CHUNK_SIZE));
+            for (PaySlip payslip : payslipRepository.findByMonthAndYearAndEmployeeCodeIn(month, year, chunk)) {
+                existingPayslips.put(payslip.getEmployee().getCode(), payslip);
+            }
+        }
+        return existingPayslips;
+    }
+
+    /**
+     * Builds an unsaved PENDING payslip from the base salary and the deduction plan.
+     * Uses the fixed-point kernel when the salary and rates fit in cents and basis points, which is the
+     * case for everything loaded from the database, and the equivalent BigDecimal arithmetic otherwise.
+     */
+    private PaySlip calculatePayslip(Employee employee, BigDecimal baseSalary, DeductionPlan plan,
+                                     PayrollCalculator.Result result, int month, int year) {
+        PaySlip payslip = new PaySlip();
+        payslip.setEmployee(employee);
+        payslip.setMonth(month);
+        payslip.setYear(year);
+        payslip.setStatus(PayslipStatus.PENDING);
+        calculateAmounts(payslip, employee.getCode(), baseSalary, plan, result);
+        return payslip;
+    }
+
+    /**
+     * Computes every amount of the payslip in place, for new payslips and for incremental recalculation.
+     */
+    private void calculateAmounts(PaySlip payslip, String employeeCode, BigDecimal baseSalary, DeductionPlan plan,
+                                  PayrollCalculator.Result result) {
+        if (plan.isFixedPoint() && PayrollCalculator.isCents(baseSalary)) {
+            try {
+                plan.calculate(PayrollCalculator.toCents(baseSalary), result);
+                long additionalDeductions = 0;
+                for (int slot = DeductionPlan.FIXED_DEDUCTION_SLOTS; slot < plan.getDeductionSlotCount(); slot++) {
+                    additionalDeductions += result.getDeduction(slot);
+                }
+                payslip.setHouseAmount(PayrollCalculator.fromCents(result.getEarning(DeductionPlan.HOUSING_SLOT)));
+                payslip.setTransportAmount(PayrollCalculator.fromCents(result.getEarning(DeductionPlan.TRANSPORT_SLOT)));
+                payslip.setGrossSalary(PayrollCalculator.fromCents(result.getGrossCents()));
+                payslip.setEmployeeTaxedAmount(PayrollCalculator.fromCents(result.getDeduction(DeductionPlan.EMPLOYEE_TAX_SLOT)));
+                payslip.setPensionAmount(PayrollCalculator.fromCents(result.getDeduction(DeductionPlan.PENSION_SLOT)));
+                payslip.setMedicalInsuranceAmount(PayrollCalculator.fromCents(result.getDeduction(DeductionPlan.MEDICAL_INSURANCE_SLOT)));
+                payslip.setOtherTaxedAmount(PayrollCalculator.fromCents(result.getDeduction(DeductionPlan.OTHERS_SLOT)));
+                payslip.setAdditionalDeductionsAmount(PayrollCalculator.fromCents(additionalDeductions));
+                payslip.setNetSalary(PayrollCalculator.fromCents(result.getNetCents()));
+
+                if (result.getTotalDeductionsCents() > result.getGrossCents()) {
+                    logger.warn("Total deductions ({}) exceed gross salary ({}) for employee {}.",
+                            PayrollCalculator.fromCents(result.getTotalDeductionsCents()), payslip.getGrossSalary(), employeeCode);
+                }
+                return;
+            } catch (ArithmeticException e) {
+                logger.debug("Salary of employee {} overflows the fixed-point kernel, using BigDecimal", employeeCode);
+            }
+        }
+
+        // Calculate amounts
+        payslip.setHouseAmount(DeductionPlan.applyPercentage(baseSalary, plan.getEarningPercentage(DeductionPlan.HOUSING_SLOT)));
+        payslip.setTransportAmount(DeductionPlan.applyPercentage(baseSalary, plan.getEarningPercentage(DeductionPlan.TRANSPORT_SLOT)));
+
+        BigDecimal grossSalary = baseSalary.add(payslip.getHouseAmount()).add(payslip.getTransportAmount());
+        payslip.setGrossSalary(grossSalary.setScale(2, RoundingMode.HALF_UP));
+
+        payslip.setEmployeeTaxedAmount(DeductionPlan.applyPercentage(baseSalary, plan.getDeductionPercentage(DeductionPlan.EMPLOYEE_TAX_SLOT)));
+        payslip.setPensionAmount(DeductionPlan.applyPercentage(baseSalary, plan.getDeductionPercentage(DeductionPlan.PENSION_SLOT)));
+        payslip.setMedicalInsuranceAmount(DeductionPlan.applyPercentage(baseSalary, plan.getDeductionPercentage(DeductionPlan.MEDICAL_INSURANCE_SLOT)));
+        payslip.setOtherTaxedAmount(DeductionPlan.applyPercentage(baseSalary, plan.getDeductionPercentage(DeductionPlan.OTHERS_SLOT)));
+
+        BigDecimal additionalDeductions = BigDecimal.ZERO.setScale(2);
+        for (int slot = DeductionPlan.FIXED_DEDUCTION_SLOTS; slot < plan.getDeductionSlotCount(); slot++) {
+            additionalDeductions = additionalDeductions.add(DeductionPlan.applyPercentage(baseSalary, plan.getDeductionPercentage(slot)));
+        }
+        payslip.setAdditionalDeductionsAmount(additionalDeductions);
+
+        BigDecimal totalDeductions = payslip.getEmployeeTaxedAmount()
+                .add(payslip.getPensionAmount())
+                .add(payslip.getMedicalInsuranceAmount())
+                .add(payslip.getOtherTaxedAmount())
+                .add(additionalDeductions);
+
+        // Ensure deductions do not exceed gross salary (though typically based on base salary)
+        if (totalDeductions.compareTo(grossSalary) > 0) {
+            logger.warn("Total deductions ({}) exceed gross salary ({}) for employee {}.",
+                    totalDeductions, grossSalary, employeeCode);
+        }
+
+        BigDecimal netSalary = grossSalary.subtract(totalDeductions);
+        payslip.setNetSalary(netSalary.setScale(2, RoundingMode.HALF_UP));
+    }
+
+    /**
+     * Sends the pending inserts as one JDBC batch and detaches everything so the
+     * persistence context does not grow with the size of the run.
+     */
+    private void flushAndClear() {
+        entityManager.flush();
+        entityManager.clear();
+    }
+}
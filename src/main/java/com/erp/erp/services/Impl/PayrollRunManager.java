@@ -0,0 +1,210 @@
+package com.erp.erp.services.Impl;
+
+import com.erp.erp.entity.Employment;
+import com.erp.erp.entity.PayrollRun;
+import com.erp.erp.entity.PayrollRunPartition;
+import com.erp.erp.enums.PayrollEngine;
+import com.erp.erp.enums.PayrollRunStatus;
+import com.erp.erp.exceptions.ValidationException;
+import com.erp.erp.repository.PayrollRunPartitionRepository;
+import com.erp.erp.repository.PayrollRunRepository;
+import jakarta.annotation.PostConstruct;
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.PersistenceContext;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.lang.management.ManagementFactory;
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Creates, resumes and closes the durable {@link PayrollRun} checkpoints of payroll generation.
+ * A run is owned by the node that started or resumed it, which renews the run's heartbeat until it finishes;
+ * other nodes only resume it once that heartbeat is stale.
+ */
+@Component
+public class PayrollRunManager {
+
+    private static final Logger logger = LoggerFactory.getLogger(PayrollRunManager.class);
+
+    @Autowired
+    private PayrollRunRepository payrollRunRepository;
+
+    @Autowired
+    private PayrollRunPartitionRepository partitionRepository;
+
+    @PersistenceContext
+    private EntityManager entityManager;
+
+    @Value("${app.payroll.distributed.nodeId:}")
+    private String configuredNodeId;
+
+    @Value("${app.payroll.runStaleSeconds:120}")
+    private int runStaleSeconds;
+
+    // Owner of the runs and partition leases of this node; unique per process so a restarted node does not inherit them
+    private String nodeId;
+
+    // Runs this node started or resumed and has not finished yet
+    private final Set<Long> ownedRuns = ConcurrentHashMap.newKeySet();
+
+    @PostConstruct
+    public void init() {
+        nodeId = configuredNodeId.isBlank()
+                ? ManagementFactory.getRuntimeMXBean().getName() + "-" + UUID.randomUUID().toString().substring(0, 8)
+                : configuredNodeId;
+    }
+
+    public String getNodeId() {
+        return nodeId;
+    }
+
+    /**
+     * Returns the unfinished run of the month to resume it, or creates a new run whose partitions cut the
+     * roster into {@code partitionCount} contiguous employee-code ranges. This node owns the run until
+     * {@link #release(PayrollRun)}. Nodes starting the same month are serialized on a transaction-scoped advisory
+     * lock, so the second one finds the first one's run instead of creating another.
+     *
+     * @param sortedRoster the active roster sorted by employee code
+     * @return the run, marked RUNNING, with its partitions loaded
+     * @throws ValidationException if the unfinished run is RUNNING on another node that is still alive
+     */
+    @Transactional
+    public PayrollRun startOrResume(int month, int year, List<Employment> sortedRoster, int partitionCount,
+                                    PayrollEngine engine, long deductionPlanVersion) {
+        payrollRunRepository.lockMonth(month, year);
+        LocalDateTime now = LocalDateTime.now();
+        PayrollRun run = payrollRunRepository.findFirstByMonthAndYearAndStatusNotOrderByIdDesc(month, year, PayrollRunStatus.COMPLETED)
+                .orElse(null);
+        if (run != null) {
+            if (payrollRunRepository.lockResumable(run.getId(), nodeId, runStaleSeconds).isEmpty()) {
+                throw new ValidationException("Payroll for " + month + "/" + year + " is already being generated by node "
+                        + run.getOwner() + " (run " + run.getId() + ")");
+            }
+            // Read again under the lock; the row may have changed since it was first loaded
+            entityManager.refresh(run);
+            if (run.getStatus() == PayrollRunStatus.RUNNING && !nodeId.equals(run.getOwner())) {
+                logger.warn("Taking over payroll run {} from node {}, which stopped renewing its heartbeat", run.getId(), run.getOwner());
+            }
+            partitionRepository.resetUnfinished(run.getId(), PayrollRunStatus.PENDING,
+                    List.of(PayrollRunStatus.FAILED, PayrollRunStatus.CANCELLED), PayrollRunStatus.RUNNING, now);
+            run.setEngine(engine);
+            logger.info("Resuming payroll run {} for {}-{} (status {}, {} partitions)",
+                    run.getId(), month, year, run.getStatus(), run.getPartitions().size());
+            if (run.getDeductionPlanVersion() != deductionPlanVersion) {
+                logger.warn("Deductions changed since payroll run {} started; the remaining payslips use the current plan, "
+                        + "run the incremental re-run to align the committed ones", run.getId());
+            }
+        } else {
+            run = new PayrollRun();
+            run.setMonth(month);
+            run.setYear(year);
+            run.setEngine(engine);
+            run.setDeductionPlanVersion(deductionPlanVersion);
+            run.setRosterSize(sortedRoster.size());
+            run.setCreatedAt(now);
+            addPartitions(run, sortedRoster, partitionCount, now);
+            logger.info("Starting payroll run for {}-{} with {} partitions", month, year, run.getPartitions().size());
+        }
+        run.setStatus(PayrollRunStatus.RUNNING);
+        run.setUpdatedAt(now);
+        run.setOwner(nodeId);
+        run = payrollRunRepository.save(run);
+        payrollRunRepository.renewHeartbeats(List.of(run.getId()), nodeId);
+        ownedRuns.add(run.getId());
+        run.getPartitions().size(); // Load the partitions while the session is open
+        return run;
+    }
+
+    /**
+     * Stops renewing the heartbeat of a run this node started or resumed, once it returns, whatever its outcome.
+     */
+    public void release(PayrollRun run) {
+        ownedRuns.remove(run.getId());
+    }
+
+    /**
+     * Renews the heartbeat of the runs this node owns, so other nodes do not take them over. Called on a schedule.
+     */
+    public void renewHeartbeats() {
+        if (!ownedRuns.isEmpty()) {
+            payrollRunRepository.renewHeartbeats(ownedRuns, nodeId);
+        }
+    }
+
+    public void updatePartitionStatus(PayrollRunPartition partition, PayrollRunStatus status) {
+        partitionRepository.updateStatus(partition.getId(), status, LocalDateTime.now());
+        partition.setStatus(status);
+    }
+
+    /**
+     * Claims the next partition of a DISTRIBUTED run that no node holds, skipping rows other nodes are claiming.
+     *
+     * @param leaseSeconds how long the partition stays reserved for this node without a renewal
+     * @return the claimed partition's id, or null if none is left to claim
+     */
+    @Transactional
+    public Long claimPartition(Long runId, String owner, int leaseSeconds) {
+        Long partitionId = partitionRepository.findClaimablePartitionIdForUpdate(runId).orElse(null);
+        if (partitionId != null) {
+            partitionRepository.claim(partitionId, owner, leaseSeconds);
+        }
+        return partitionId;
+    }
+
+    public void releasePartition(Long partitionId, String owner, PayrollRunStatus status) {
+        partitionRepository.releaseLease(partitionId, owner, status, LocalDateTime.now());
+    }
+
+    /**
+     * Completes a DISTRIBUTED run once all of its partitions completed, whichever node finished the last one.
+     *
+     * @return true if this call completed the run
+     */
+    public boolean completeIfDone(Long runId) {
+        boolean completed = payrollRunRepository.completeIfAllPartitionsCompleted(runId, PayrollRunStatus.COMPLETED,
+                PayrollRunStatus.RUNNING, LocalDateTime.now()) > 0;
+        if (completed) {
+            logger.info("Payroll run {} completed", runId);
+        }
+        return completed;
+    }
+
+    @Transactional
+    public void finish(PayrollRun run, PayrollRunStatus status) {
+        payrollRunRepository.findById(run.getId()).ifPresent(persistedRun -> {
+            persistedRun.setStatus(status);
+            persistedRun.setUpdatedAt(LocalDateTime.now());
+        });
+        run.setStatus(status);
+        logger.info("Payroll run {} for {}-{} finished with status {}", run.getId(), run.getMonth(), run.getYear(), status);
+    }
+
+    private void addPartitions(PayrollRun run, List<Employment> sortedRoster, int partitionCount, LocalDateTime now) {
+        int partitions = Math.max(1, Math.min(partitionCount, sortedRoster.size()));
+        String fromEmployeeCode = null;
+        for (int i = 0; i < partitions; i++) {
+            int to = (int) ((long) sortedRoster.size() * (i + 1) / partitions);
+            // The first and last ranges are open so employees hired mid-run still fall in a partition
+            String toEmployeeCode = i == partitions - 1 ? null : sortedRoster.get(to - 1).getEmployee().getCode();
+
+            PayrollRunPartition partition = new PayrollRunPartition();
+            partition.setRun(run);
+            partition.setPartitionIndex(i);
+            partition.setFromEmployeeCode(fromEmployeeCode);
+            partition.setToEmployeeCode(toEmployeeCode);
+            partition.setStatus(PayrollRunStatus.PENDING);
+            partition.setUpdatedAt(now);
+            run.getPartitions().add(partition);
+            fromEmployeeCode = toEmployeeCode;
+        }
+    }
+}
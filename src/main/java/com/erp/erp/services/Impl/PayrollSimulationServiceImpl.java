@@ -0,0 +1,335 @@
+package com.erp.erp.services.Impl;
+
+import com.erp.erp.dto.request.PayrollSimulationRequestDTO;
+import com.erp.erp.dto.response.PayrollSimulationResponseDTO;
+import com.erp.erp.dto.response.PayrollTotalsDTO;
+import com.erp.erp.enums.EmployeeStatus;
+import com.erp.erp.enums.EmploymentStatus;
+import com.erp.erp.exceptions.ValidationException;
+import com.erp.erp.repository.EmploymentRepository;
+import com.erp.erp.services.DeductionPlanService;
+import com.erp.erp.services.PayrollSimulationService;
+import com.erp.erp.utils.DeductionPlan;
+import com.erp.erp.utils.PayrollCalculator;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Service;
+
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.IntStream;
+
+/**
+ * What-if payroll simulation. The active roster is loaded once per request into primitive columns
+ * (base salary in cents, department index) and every employee is computed twice with the fixed-point
+ * kernel, once with the current deductions and once with the scenario, in parallel chunks that each
+ * sum into their own per-department accumulator. Nothing is written to the payslips table.
+ */
+@Service
+public class PayrollSimulationServiceImpl implements PayrollSimulationService {
+
+    private static final Logger logger = LoggerFactory.getLogger(PayrollSimulationServiceImpl.class);
+
+    private static final int CHUNK_SIZE = 4096;
+    private static final String NO_DEPARTMENT = "Unassigned";
+    private static final int ONE_IN_BASIS_POINTS = 10_000;
+
+    @Autowired
+    private EmploymentRepository employmentRepository;
+
+    @Autowired
+    private DeductionPlanService deductionPlanService;
+
+    /**
+     * Columnar snapshot of the active roster.
+     */
+    private static final class RosterColumns {
+        final long[] baseCents;
+        final int[] departmentIndex;
+        final List<String> departments;
+        final int[] departmentCounts;
+
+        RosterColumns(long[] baseCents, int[] departmentIndex, List<String> departments) {
+            this.baseCents = baseCents;
+            this.departmentIndex = departmentIndex;
+            this.departments = departments;
+            this.departmentCounts = new int[departments.size()];
+            for (int department : departmentIndex) {
+                departmentCounts[department]++;
+            }
+        }
+
+        int size() {
+            return baseCents.length;
+        }
+    }
+
+    /**
+     * Rates and raises of one side of the comparison, in basis points.
+     */
+    private record Rates(int[] earningRates, int[] deductionRates, int globalRaise, int[] departmentRaises) {
+    }
+
+    @Override
+    public PayrollSimulationResponseDTO simulate(PayrollSimulationRequestDTO request) {
+        long startedAt = System.nanoTime();
+        DeductionPlan plan = deductionPlanService.getCurrentPlan();
+        RosterColumns roster = loadRoster();
+
+        List<String> earningNames = new ArrayList<>();
+        for (int slot = 0; slot < plan.getEarningSlotCount(); slot++) {
+            earningNames.add(plan.getEarningName(slot));
+        }
+        List<String> deductionNames = new ArrayList<>();
+        for (int slot = 0; slot < plan.getDeductionSlotCount(); slot++) {
+            deductionNames.add(plan.getDeductionName(slot));
+        }
+        // Overrides of unknown names simulate a new deduction
+        for (String name : nullSafe(request.getRateOverrides()).keySet()) {
+            if (!earningNames.contains(name) && !deductionNames.contains(name)) {
+                deductionNames.add(name);
+            }
+        }
+
+        Rates baseline = baselineRates(plan, deductionNames.size(), roster.departments.size());
+        Rates scenario = scenarioRates(plan, request, earningNames, deductionNames, roster.departments);
+
+        int width = accumulatorWidth(earningNames.size(), deductionNames.size());
+        long[] sums = IntStream.range(0, (roster.size() + CHUNK_SIZE - 1) / CHUNK_SIZE)
+                .parallel()
+                .mapToObj(chunk -> accumulate(roster, chunk * CHUNK_SIZE, Math.min(roster.size(), (chunk + 1) * CHUNK_SIZE),
+                        baseline, scenario, earningNames.size(), deductionNames.size()))
+                .reduce(PayrollSimulationServiceImpl::merge)
+                .orElseGet(() -> new long[roster.departments.size() * 2 * width]);
+
+        PayrollSimulationResponseDTO response = new PayrollSimulationResponseDTO();
+        response.setDeductionPlanVersion(plan.getVersion());
+        response.setEmployeeCount(roster.size());
+        long[] overall = new long[2 * width];
+        for (int department = 0; department < roster.departments.size(); department++) {
+            int offset = department * 2 * width;
+            for (int i = 0; i < 2 * width; i++) {
+                overall[i] += sums[offset + i];
+            }
+            PayrollSimulationResponseDTO.DepartmentSimulationDTO departmentDTO = new PayrollSimulationResponseDTO.DepartmentSimulationDTO();
+            departmentDTO.setDepartment(roster.departments.get(department));
+            departmentDTO.setEmployeeCount(roster.departmentCounts[department]);
+            departmentDTO.setBaseline(toTotals(sums, offset, earningNames, deductionNames));
+            departmentDTO.setScenario(toTotals(sums, offset + width, earningNames, deductionNames));
+            response.getDepartments().add(departmentDTO);
+        }
+        response.setBaseline(toTotals(overall, 0, earningNames, deductionNames));
+        response.setScenario(toTotals(overall, width, earningNames, deductionNames));
+        response.setDurationMillis(TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - startedAt));
+
+        logger.info("Simulated payroll for {} employees in {} departments in {} ms",
+                roster.size(), roster.departments.size(), response.getDurationMillis());
+        return response;
+    }
+
+    private RosterColumns loadRoster() {
+        List<Object[]> rows = employmentRepository.findActiveSalariesForSimulation(EmployeeStatus.ACTIVE, EmploymentStatus.ACTIVE);
+        long[] baseCents = new long[rows.size()];
+        int[] departmentIndex = new int[rows.size()];
+        Map<String, Integer> departmentIndexes = new HashMap<>();
+        List<String> departments = new ArrayList<>();
+
+        int size = 0;
+        for (Object[] row : rows) {
+            // Row layout: department, base salary
+            BigDecimal baseSalary = (BigDecimal) row[1];
+            if (baseSalary == null) {
+                continue;
+            }
+            String department = row[0] != null ? (String) row[0] : NO_DEPARTMENT;
+            Integer index = departmentIndexes.get(department);
+            if (index == null) {
+                index = departments.size();
+                departmentIndexes.put(department, index);
+                departments.add(department);
+            }
+            baseCents[size] = PayrollCalculator.toCents(baseSalary.setScale(PayrollCalculator.CENTS_SCALE, RoundingMode.HALF_UP));
+            departmentIndex[size] = index;
+            size++;
+        }
+        if (size < rows.size()) {
+            baseCents = Arrays.copyOf(baseCents, size);
+            departmentIndex = Arrays.copyOf(departmentIndex, size);
+        }
+        return new RosterColumns(baseCents, departmentIndex, departments);
+    }
+
+    private Rates baselineRates(DeductionPlan plan, int deductionSlots, int departmentCount) {
+        int[] earningRates = new int[plan.getEarningSlotCount()];
+        for (int slot = 0; slot < earningRates.length; slot++) {
+            earningRates[slot] = toBasisPoints("Rate of " + plan.getEarningName(slot), plan.getEarningPercentage(slot));
+        }
+        int[] deductionRates = new int[deductionSlots]; // Simulated new deductions stay at 0
+        for (int slot = 0; slot < plan.getDeductionSlotCount(); slot++) {
+            deductionRates[slot] = toBasisPoints("Rate of " + plan.getDeductionName(slot), plan.getDeductionPercentage(slot));
+        }
+        return new Rates(earningRates, deductionRates, 0, new int[departmentCount]);
+    }
+
+    private Rates scenarioRates(DeductionPlan plan, PayrollSimulationRequestDTO request, List<String> earningNames,
+                                List<String> deductionNames, List<String> departments) {
+        BigDecimal[] earningPercentages = new BigDecimal[earningNames.size()];
+        for (int slot = 0; slot < earningPercentages.length; slot++) {
+            earningPercentages[slot] = plan.getEarningPercentage(slot);
+        }
+        BigDecimal[] deductionPercentages = new BigDecimal[deductionNames.size()];
+        for (int slot = 0; slot < deductionPercentages.length; slot++) {
+            deductionPercentages[slot] = slot < plan.getDeductionSlotCount() ? plan.getDeductionPercentage(slot) : BigDecimal.ZERO;
+        }
+
+        nullSafe(request.getRateOverrides()).forEach((name, rate) -> {
+            requireNonNull(name, rate);
+            setRate(name, rate, earningNames, earningPercentages, deductionNames, deductionPercentages);
+        });
+        nullSafe(request.getRateDeltas()).forEach((name, delta) -> {
+            requireNonNull(name, delta);
+            int earningSlot = earningNames.indexOf(name);
+            int deductionSlot = deductionNames.indexOf(name);
+            if (earningSlot < 0 && deductionSlot < 0) {
+                throw new ValidationException("Unknown deduction for rate delta: " + name);
+            }
+            BigDecimal current = earningSlot >= 0 ? earningPercentages[earningSlot] : deductionPercentages[deductionSlot];
+            setRate(name, current.add(delta), earningNames, earningPercentages, deductionNames, deductionPercentages);
+        });
+
+        int[] earningRates = new int[earningPercentages.length];
+        for (int slot = 0; slot < earningRates.length; slot++) {
+            earningRates[slot] = toBasisPoints("Rate of " + earningNames.get(slot), earningPercentages[slot]);
+        }
+        int[] deductionRates = new int[deductionPercentages.length];
+        for (int slot = 0; slot < deductionRates.length; slot++) {
+            deductionRates[slot] = toBasisPoints("Rate of " + deductionNames.get(slot), deductionPercentages[slot]);
+        }
+
+        int globalRaise = request.getRaise() != null ? toRaiseBasisPoints("Raise", request.getRaise()) : 0;
+        int[] departmentRaises = new int[departments.size()];
+        nullSafe(request.getDepartmentRaises()).forEach((department, raise) -> {
+            requireNonNull(department, raise);
+            int index = departments.indexOf(department);
+            if (index < 0) {
+                throw new ValidationException("No active employees in department: " + department);
+            }
+            departmentRaises[index] = toRaiseBasisPoints("Raise of " + department, raise);
+        });
+        return new Rates(earningRates, deductionRates, globalRaise, departmentRaises);
+    }
+
+    /**
+     * Computes the employees in [from, to) under both rate sets and sums them per department.
+     * Layout per department: baseline block then scenario block, each
+     * [base, earnings..., gross, deductions..., total deductions, net].
+     */
+    private static long[] accumulate(RosterColumns roster, int from, int to, Rates baseline, Rates scenario,
+                                     int earningSlots, int deductionSlots) {
+        int width = accumulatorWidth(earningSlots, deductionSlots);
+        long[] sums = new long[roster.departments.size() * 2 * width];
+        PayrollCalculator.Result result = new PayrollCalculator.Result(earningSlots, deductionSlots);
+
+        for (int i = from; i < to; i++) {
+            int department = roster.departmentIndex[i];
+            int offset = department * 2 * width;
+
+            long baseCents = roster.baseCents[i];
+            PayrollCalculator.calculate(baseCents, baseline.earningRates(), baseline.deductionRates(), result);
+            add(sums, offset, baseCents, result, earningSlots, deductionSlots);
+
+            // Raises compound: global first, then the department's, each rounded to the cent
+            long raisedCents = PayrollCalculator.applyRate(baseCents, ONE_IN_BASIS_POINTS + scenario.globalRaise());
+            raisedCents = PayrollCalculator.applyRate(raisedCents, ONE_IN_BASIS_POINTS + scenario.departmentRaises()[department]);
+            PayrollCalculator.calculate(raisedCents, scenario.earningRates(), scenario.deductionRates(), result);
+            add(sums, offset + width, raisedCents, result, earningSlots, deductionSlots);
+        }
+        return sums;
+    }
+
+    private static void add(long[] sums, int offset, long baseCents, PayrollCalculator.Result result,
+                            int earningSlots, int deductionSlots) {
+        int index = offset;
+        sums[index++] += baseCents;
+        for (int slot = 0; slot < earningSlots; slot++) {
+            sums[index++] += result.getEarning(slot);
+        }
+        sums[index++] += result.getGrossCents();
+        for (int slot = 0; slot < deductionSlots; slot++) {
+            sums[index++] += result.getDeduction(slot);
+        }
+        sums[index++] += result.getTotalDeductionsCents();
+        sums[index] += result.getNetCents();
+    }
+
+    private static long[] merge(long[] left, long[] right) {
+        for (int i = 0; i < left.length; i++) {
+            left[i] += right[i];
+        }
+        return left;
+    }
+
+    private static int accumulatorWidth(int earningSlots, int deductionSlots) {
+        return earningSlots + deductionSlots + 4;
+    }
+
+    private PayrollTotalsDTO toTotals(long[] sums, int offset, List<String> earningNames, List<String> deductionNames) {
+        PayrollTotalsDTO totals = new PayrollTotalsDTO();
+        int index = offset;
+        totals.setBaseSalary(PayrollCalculator.fromCents(sums[index++]));
+        for (String name : earningNames) {
+            totals.getEarnings().put(name, PayrollCalculator.fromCents(sums[index++]));
+        }
+        totals.setGrossSalary(PayrollCalculator.fromCents(sums[index++]));
+        for (String name : deductionNames) {
+            totals.getDeductions().put(name, PayrollCalculator.fromCents(sums[index++]));
+        }
+        totals.setTotalDeductions(PayrollCalculator.fromCents(sums[index++]));
+        totals.setNetSalary(PayrollCalculator.fromCents(sums[index]));
+        return totals;
+    }
+
+    private void setRate(String name, BigDecimal rate, List<String> earningNames, BigDecimal[] earningPercentages,
+                         List<String> deductionNames, BigDecimal[] deductionPercentages) {
+        if (rate.signum() < 0 || rate.compareTo(BigDecimal.ONE) > 0) {
+            throw new ValidationException("Rate of " + name + " must be between 0 and 1, got: " + rate.toPlainString());
+        }
+        int earningSlot = earningNames.indexOf(name);
+        if (earningSlot >= 0) {
+            earningPercentages[earningSlot] = rate;
+        } else {
+            deductionPercentages[deductionNames.indexOf(name)] = rate;
+        }
+    }
+
+    private int toBasisPoints(String label, BigDecimal rate) {
+        if (!PayrollCalculator.isBasisPoints(rate)) {
+            throw new ValidationException(label + " must have at most " + PayrollCalculator.BASIS_POINTS_SCALE + " decimals");
+        }
+        return PayrollCalculator.toBasisPoints(rate);
+    }
+
+    private int toRaiseBasisPoints(String label, BigDecimal raise) {
+        if (raise.compareTo(BigDecimal.ONE.negate()) <= 0) {
+            throw new ValidationException(label + " must be greater than -1, got: " + raise.toPlainString());
+        }
+        return toBasisPoints(label, raise);
+    }
+
+    private void requireNonNull(String name, BigDecimal value) {
+        if (name == null || value == null) {
+            throw new ValidationException("Simulation names and values cannot be null");
+        }
+    }
+
+    private static <K, V> Map<K, V> nullSafe(Map<K, V> map) {
+        return map != null ? map : Map.of();
+    }
+}
@@ -0,0 +1,465 @@
+package com.erp.erp.services.Impl;
+
+import com.erp.erp.dto.response.EmailDispatcherStatsDTO;
+import com.erp.erp.entity.Employee;
+import com.erp.erp.entity.Employment;
+import com.erp.erp.entity.Message;
+import com.erp.erp.entity.PaySlip;
+import com.erp.erp.enums.MessageSentStatus;
+import com.erp.erp.exceptions.ValidationException;
+import com.erp.erp.repository.EmploymentRepository;
+import com.erp.erp.repository.MessageRepository;
+import com.erp.erp.repository.PayslipRepository;
+import com.erp.erp.services.EmailService;
+import com.erp.erp.services.PayslipPdfService;
+import com.erp.erp.utils.AimdConcurrencyLimiter;
+import com.erp.erp.utils.ThroughputMeter;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import jakarta.mail.SendFailedException;
+import jakarta.mail.internet.AddressException;
+import org.eclipse.angus.mail.smtp.SMTPAddressFailedException;
+import org.eclipse.angus.mail.smtp.SMTPSendFailedException;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.io.ByteArrayResource;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.util.StringUtils;
+
+import java.time.YearMonth;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Drains the payslip email outbox (see {@link PayslipEmailOutbox}). Each message is claimed in a short
+ * transaction, rendered and mailed with no transaction or connection held, and then marked SENT or FAILED in
+ * its own transaction, so mail delivery never holds up an approval. Drains are started on a dedicated thread,
+ * woken after an approval commits and polled from {@link com.erp.erp.config.SchedulerConfig};
+ * several nodes can drain together because claiming skips rows another node holds. A failed message is retried
+ * by a later drain once its backoff is due, and dead-lettered after its last attempt, or at once when the relay
+ * rejects it permanently (see {@link #isPermanent}).
+ * Each drain is a pipeline: the drain thread claims a batch and loads its employees, payslips and employments in
+ * three queries; app.payroll.email.renderThreads render the emails and PDFs from that snapshot in parallel into a
+ * queue of at most app.payroll.email.renderQueueSize; a send stage takes them from the queue in groups. Rendering
+ * the next batch overlaps sending the previous one, and a full queue holds back rendering and claiming.
+ * Messages are sent in groups of app.payroll.email.sendBatchSize, each over one reused SMTP connection
+ * (see {@link EmailService#sendBatch}), on virtual threads, as many groups at once as an
+ * {@link AimdConcurrencyLimiter} allows: the limit
+ * grows while the mail relay answers quickly and is cut when sends slow down or fail, so the dispatcher settles
+ * near the highest rate the relay accepts without throttling.
+ */
+@Component
+public class PayslipEmailDispatcher {
+
+    private static final Logger logger = LoggerFactory.getLogger(PayslipEmailDispatcher.class);
+
+    private static final String EMAIL_PATTERN = "^[\\w-\\.]+@([\\w-]+\\.)+[\\w-]{2,4}$";
+
+    @Autowired
+    private PayslipEmailOutbox outbox;
+
+    @Autowired
+    private MessageRepository messageRepository;
+
+    @Autowired
+    private PayslipRepository payslipRepository;
+
+    @Autowired
+    private EmploymentRepository employmentRepository;
+
+    @Autowired
+    private EmailService emailService;
+
+    @Autowired
+    private PayslipPdfService payslipPdfService;
+
+    @Value("${app.payroll.email.batchSize:50}")
+    private int batchSize;
+
+    @Value("${app.payroll.email.sendBatchSize:10}")
+    private int sendBatchSize;
+
+    @Value("${app.payroll.email.renderThreads:4}")
+    private int renderThreads;
+
+    @Value("${app.payroll.email.renderQueueSize:40}")
+    private int renderQueueSize;
+
+    @Value("${app.payroll.email.initialConcurrency:2}")
+    private int initialConcurrency;
+
+    @Value("${app.payroll.email.minConcurrency:1}")
+    private int minConcurrency;
+
+    @Value("${app.payroll.email.maxConcurrency:16}")
+    private int maxConcurrency;
+
+    @Value("${app.payroll.email.latencyThresholdMillis:2000}")
+    private long latencyThresholdMillis;
+
+    @Value("${app.payroll.email.decreaseFactor:0.5}")
+    private double decreaseFactor;
+
+    private ExecutorService executor;
+
+    // Renders emails and PDFs; CPU-bound, so platform threads
+    private ExecutorService renderer;
+
+    // Shared by every drain on this node, so the in-flight limit is global
+    private AimdConcurrencyLimiter limiter;
+
+    private final ThroughputMeter sentMeter = new ThroughputMeter(60);
+    private final AtomicLong sentCount = new AtomicLong();
+    private final AtomicLong failedCount = new AtomicLong();
+    private final AtomicLong sendNanos = new AtomicLong();
+    private final AtomicInteger claimedWaiting = new AtomicInteger();
+
+    // Set while a drain is queued but not started, so wake-ups arriving meanwhile share it
+    private final AtomicBoolean drainQueued = new AtomicBoolean();
+
+    // What the render stage needs for one message, loaded by the drain thread
+    private record RenderInput(Message message, PaySlip payslip, Employment employment) {
+    }
+
+    private record RenderedEmail(Long messageId, EmailService.OutgoingEmail email) {
+    }
+
+    // Marks the end of the rendered emails
+    private static final RenderedEmail END = new RenderedEmail(null, null);
+
+    @PostConstruct
+    public void init() {
+        executor = Executors.newSingleThreadExecutor(Thread.ofVirtual().name("payslip-email-dispatcher").factory());
+        renderer = Executors.newFixedThreadPool(Math.max(1, renderThreads), Thread.ofPlatform().name("payslip-email-renderer-", 0).factory());
+        limiter = new AimdConcurrencyLimiter(initialConcurrency, minConcurrency, maxConcurrency, latencyThresholdMillis, decreaseFactor);
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        executor.shutdownNow();
+        renderer.shutdownNow();
+    }
+
+    /**
+     * Starts a drain in the background unless one is already queued.
+     */
+    public void wakeUp() {
+        if (!drainQueued.compareAndSet(false, true)) {
+            return;
+        }
+        try {
+            executor.execute(() -> {
+                drainQueued.set(false);
+                drain();
+            });
+        } catch (RejectedExecutionException e) {
+            drainQueued.set(false);
+            logger.debug("Email dispatcher is shutting down; the outbox is drained on the next start");
+        }
+    }
+
+    /**
+     * Wakes the dispatcher once the current transaction commits, so it sees the messages the transaction wrote;
+     * wakes it at once when there is no transaction.
+     */
+    public void wakeUpAfterCommit() {
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    wakeUp();
+                }
+            });
+        } else {
+            wakeUp();
+        }
+    }
+
+    /**
+     * Claims, renders and sends messages until the outbox has none left to dispatch, then waits for the sends in flight.
+     *
+     * @return the number of messages sent
+     */
+    public int drain() {
+        long sentBefore = sentCount.get();
+        long failedBefore = failedCount.get();
+        BlockingQueue<RenderedEmail> rendered = new ArrayBlockingQueue<>(Math.max(1, renderQueueSize));
+        try (ExecutorService senders = Executors.newVirtualThreadPerTaskExecutor()) {
+            Thread sendStage = Thread.ofVirtual().name("payslip-email-send-stage").start(() -> sendRendered(rendered, senders));
+            try {
+                List<Long> messageIds;
+                while (!(messageIds = outbox.claim(batchSize)).isEmpty()) {
+                    claimedWaiting.addAndGet(messageIds.size());
+                    render(messageIds, rendered);
+                }
+                rendered.put(END);
+                sendStage.join();
+            } catch (InterruptedException e) {
+                sendStage.interrupt();
+                throw e;
+            }
+        } catch (InterruptedException e) {
+            // Claimed messages that were not started go back to the outbox after the claim timeout
+            Thread.currentThread().interrupt();
+            claimedWaiting.set(0);
+            logger.warn("Email dispatcher interrupted; unsent claimed messages are retried after the claim timeout");
+        }
+        long sent = sentCount.get() - sentBefore;
+        long failed = failedCount.get() - failedBefore;
+        if (sent > 0 || failed > 0) {
+            logger.info("Email outbox drained: {} sent, {} failed, concurrency limit {}", sent, failed, limiter.getLimit());
+        }
+        return (int) sent;
+    }
+
+    /**
+     * Puts every failed message back in the outbox and drains it on the calling thread.
+     *
+     * @return the number of messages sent
+     */
+    public int retryFailed() {
+        int requeued = outbox.requeueFailed();
+        logger.info("Requeued {} failed payslip emails", requeued);
+        return drain();
+    }
+
+    public EmailDispatcherStatsDTO getStats() {
+        EmailDispatcherStatsDTO stats = new EmailDispatcherStatsDTO();
+        stats.setConcurrencyLimit(limiter.getLimit());
+        stats.setInFlight(limiter.getInFlight());
+        stats.setQueueDepth(outbox.countByStatus(MessageSentStatus.UNSENT));
+        stats.setRetryWaiting(outbox.countByStatus(MessageSentStatus.FAILED));
+        stats.setDeadLetters(outbox.countByStatus(MessageSentStatus.DEAD));
+        stats.setClaimedWaiting(claimedWaiting.get());
+        stats.setMessagesPerSecond(sentMeter.getRatePerSecond());
+        stats.setSent(sentCount.get());
+        stats.setFailed(failedCount.get());
+        long attempts = sentCount.get() + failedCount.get();
+        stats.setAverageLatencyMillis(attempts > 0 ? TimeUnit.NANOSECONDS.toMillis(sendNanos.get() / attempts) : 0);
+        return stats;
+    }
+
+    /**
+     * Render stage: loads what a batch of claimed messages needs in three queries, then renders them on the render
+     * threads into the queue, blocking while it is full.
+     */
+    private void render(List<Long> messageIds, BlockingQueue<RenderedEmail> rendered) throws InterruptedException {
+        List<RenderInput> inputs = loadRenderInputs(messageIds);
+        // Messages deleted since they were claimed have nothing left to send
+        claimedWaiting.addAndGet(inputs.size() - messageIds.size());
+
+        List<Callable<Void>> renders = new ArrayList<>(inputs.size());
+        for (RenderInput input : inputs) {
+            renders.add(() -> {
+                EmailService.OutgoingEmail email = prepare(input);
+                if (email != null) {
+                    rendered.put(new RenderedEmail(input.message().getId(), email));
+                } else {
+                    claimedWaiting.decrementAndGet();
+                }
+                return null;
+            });
+        }
+        renderer.invokeAll(renders);
+    }
+
+    private List<RenderInput> loadRenderInputs(List<Long> messageIds) {
+        List<Message> messages = messageRepository.findWithEmployeeByIdIn(messageIds);
+        Set<String> employeeCodes = new HashSet<>();
+        Map<YearMonth, Set<String>> employeeCodesByPeriod = new HashMap<>();
+        for (Message message : messages) {
+            employeeCodes.add(message.getEmployee().getCode());
+            employeeCodesByPeriod.computeIfAbsent(YearMonth.of(message.getYear(), message.getMonth()), period -> new HashSet<>())
+                    .add(message.getEmployee().getCode());
+        }
+
+        Map<YearMonth, Map<String, PaySlip>> payslipsByPeriod = new HashMap<>();
+        employeeCodesByPeriod.forEach((period, codes) -> {
+            Map<String, PaySlip> payslips = new HashMap<>();
+            for (PaySlip payslip : payslipRepository.findByMonthAndYearAndEmployeeCodeIn(period.getMonthValue(), period.getYear(), codes)) {
+                payslips.put(payslip.getEmployee().getCode(), payslip);
+            }
+            payslipsByPeriod.put(period, payslips);
+        });
+        Map<String, Employment> employments = new HashMap<>();
+        if (!employeeCodes.isEmpty()) {
+            for (Employment employment : employmentRepository.findWithEmployeeByEmployeeCodeIn(employeeCodes)) {
+                employments.putIfAbsent(employment.getEmployee().getCode(), employment);
+            }
+        }
+
+        List<RenderInput> inputs = new ArrayList<>(messages.size());
+        for (Message message : messages) {
+            String employeeCode = message.getEmployee().getCode();
+            PaySlip payslip = payslipsByPeriod.get(YearMonth.of(message.getYear(), message.getMonth())).get(employeeCode);
+            inputs.add(new RenderInput(message, payslip, employments.get(employeeCode)));
+        }
+        inputs.sort(Comparator.comparing(input -> input.message().getId()));
+        return inputs;
+    }
+
+    /**
+     * Send stage: takes rendered emails off the queue as they arrive, up to sendBatchSize at a time, and sends each
+     * group on a virtual thread once the limiter has a slot for it.
+     */
+    private void sendRendered(BlockingQueue<RenderedEmail> rendered, ExecutorService senders) {
+        try {
+            List<RenderedEmail> group = new ArrayList<>(sendBatchSize);
+            RenderedEmail next;
+            while ((next = rendered.take()) != END) {
+                group.add(next);
+                rendered.drainTo(group, sendBatchSize - 1);
+                boolean ended = group.get(group.size() - 1) == END;
+                if (ended) {
+                    group.remove(group.size() - 1);
+                }
+                List<RenderedEmail> batch = List.copyOf(group);
+                group.clear();
+                limiter.acquire();
+                claimedWaiting.addAndGet(-batch.size());
+                senders.execute(() -> send(batch));
+                if (ended) {
+                    return;
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * Sends a group of rendered messages as one batch and releases its limiter slot. Only the relay's answer adapts
+     * the limit, using the batch latency per message.
+     */
+    private void send(List<RenderedEmail> group) {
+        boolean released = false;
+        List<EmailService.OutgoingEmail> emails = group.stream().map(RenderedEmail::email).toList();
+        try {
+            long startedAt = System.nanoTime();
+            Map<Integer, Exception> failures;
+            try {
+                failures = emailService.sendBatch(emails);
+            } catch (RuntimeException e) {
+                failures = new HashMap<>();
+                for (int i = 0; i < emails.size(); i++) {
+                    failures.put(i, e);
+                }
+            }
+            long latency = System.nanoTime() - startedAt;
+            sendNanos.addAndGet(latency);
+            // A permanent rejection is a quick, definite answer from the relay, not a sign that it is overloaded
+            boolean relayFailed = failures.values().stream().anyMatch(failure -> !isPermanent(failure));
+            limiter.release(latency / emails.size(), !relayFailed);
+            released = true;
+
+            for (int i = 0; i < group.size(); i++) {
+                Long messageId = group.get(i).messageId();
+                Exception failure = failures.get(i);
+                if (failure != null) {
+                    logger.error("Error sending salary notification to {} for message {}: {}", emails.get(i).to(), messageId, failure.getMessage());
+                    // A rejected address or content does not get better by retrying
+                    markFailed(messageId, failure, !isPermanent(failure));
+                } else {
+                    outbox.markSent(messageId);
+                    sentCount.incrementAndGet();
+                    sentMeter.record();
+                }
+            }
+        } finally {
+            if (!released) {
+                limiter.releaseIgnored();
+            }
+        }
+    }
+
+    /**
+     * Renders the email of one message from its snapshot, with the payslip PDF attached when the payslip exists.
+     *
+     * @return the email, or null if it could not be rendered or its address is invalid, in which case the message is
+     * marked FAILED or dead-lettered
+     */
+    private EmailService.OutgoingEmail prepare(RenderInput input) {
+        Message message = input.message();
+        Employee employee = message.getEmployee();
+        if (!StringUtils.hasText(employee.getEmail()) || !employee.getEmail().matches(EMAIL_PATTERN)) {
+            logger.warn("Invalid email for employee {}: {}. Marking message {} as DEAD.", employee.getCode(), employee.getEmail(), message.getId());
+            outbox.markFailed(message.getId(), "Invalid email address: " + employee.getEmail(), false);
+            failedCount.incrementAndGet();
+            return null;
+        }
+
+        int month = message.getMonth();
+        int year = message.getYear();
+        String subject = "Salary Credited - " + month + "/" + year;
+        PaySlip payslip = input.payslip();
+        if (payslip == null) {
+            // Fallback to the message content written by the trigger if the payslip is gone
+            return new EmailService.OutgoingEmail(employee.getEmail(), subject, message.getMessageContent(), null, null, null);
+        }
+        try {
+            String htmlContent = emailService.processPayslipTemplate(employee, payslip, input.employment(), month, year);
+            byte[] pdfBytes = payslipPdfService.renderPayslipPdf(employee, payslip, input.employment(), month, year);
+            return new EmailService.OutgoingEmail(employee.getEmail(), subject, htmlContent,
+                    "payslip_" + employee.getCode() + "_" + month + "_" + year + ".pdf",
+                    new ByteArrayResource(pdfBytes), "application/pdf");
+        } catch (RuntimeException e) {
+            logger.error("Error preparing salary notification for message {}: {}", message.getId(), e.getMessage());
+            markFailed(message.getId(), e, true);
+            return null;
+        }
+    }
+
+    /**
+     * Whether a failed send cannot succeed on a retry: the message failed validation, an address is malformed or was
+     * rejected by the relay, or the relay answered with a permanent (5xx) SMTP reply. The causes of the failure are
+     * searched too, since the mail sender wraps the relay's answer.
+     */
+    static boolean isPermanent(Throwable failure) {
+        Set<Throwable> seen = new HashSet<>();
+        for (Throwable cause = failure; cause != null && seen.add(cause); cause = cause.getCause()) {
+            if (cause instanceof ValidationException || cause instanceof AddressException) {
+                return true;
+            }
+            if (cause instanceof SMTPAddressFailedException rejected && isPermanentReply(rejected.getReturnCode())) {
+                return true;
+            }
+            if (cause instanceof SMTPSendFailedException rejected && isPermanentReply(rejected.getReturnCode())) {
+                return true;
+            }
+            // Every message has one recipient, so an invalid address means it reached no one
+            if (cause instanceof SendFailedException sendFailed && sendFailed.getInvalidAddresses() != null
+                    && sendFailed.getInvalidAddresses().length > 0) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static boolean isPermanentReply(int returnCode) {
+        return returnCode >= 500 && returnCode < 600;
+    }
+
+    private void markFailed(Long messageId, Exception failure, boolean retryable) {
+        outbox.markFailed(messageId, failure.getClass().getSimpleName() + ": " + failure.getMessage(), retryable);
+        failedCount.incrementAndGet();
+    }
+}
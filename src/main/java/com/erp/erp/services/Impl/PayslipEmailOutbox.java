@@ -0,0 +1,98 @@
+package com.erp.erp.services.Impl;
+
+import com.erp.erp.enums.MessageSentStatus;
+import com.erp.erp.repository.MessageRepository;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+/**
+ * Short transactions over the messages table, which is the outbox of payslip emails: the approval trigger
+ * inserts an UNSENT row per approved payslip in the approving transaction, and {@link PayslipEmailDispatcher}
+ * claims rows here, mails them outside any transaction and records the outcome one message at a time.
+ * Failed messages are claimed again once their backoff expires, until they run out of attempts.
+ */
+@Component
+public class PayslipEmailOutbox {
+
+    private static final int MAX_ERROR_LENGTH = 1000;
+
+    @Autowired
+    private MessageRepository messageRepository;
+
+    @Value("${app.payroll.email.claimTimeoutSeconds:600}")
+    private int claimTimeoutSeconds;
+
+    @Value("${app.payroll.email.backlogPageSize:1000}")
+    private int backlogPageSize;
+
+    @Value("${app.payroll.email.maxAttempts:5}")
+    private int maxAttempts;
+
+    @Value("${app.payroll.email.baseBackoffSeconds:60}")
+    private int baseBackoffSeconds;
+
+    @Value("${app.payroll.email.maxBackoffSeconds:3600}")
+    private int maxBackoffSeconds;
+
+    /**
+     * Marks up to {@code limit} dispatchable messages PROCESSING for this dispatcher.
+     *
+     * @return the claimed message ids, oldest first
+     */
+    @Transactional
+    public List<Long> claim(int limit) {
+        List<Long> messageIds = messageRepository.findDispatchableIdsForUpdate(limit, claimTimeoutSeconds);
+        if (!messageIds.isEmpty()) {
+            messageRepository.markClaimed(messageIds, MessageSentStatus.PROCESSING, LocalDateTime.now());
+        }
+        return messageIds;
+    }
+
+    public void markSent(Long messageId) {
+        messageRepository.markSent(messageId, MessageSentStatus.SENT, LocalDateTime.now());
+    }
+
+    /**
+     * Records a failed delivery attempt. A retryable failure leaves the message FAILED until its backoff of
+     * baseBackoffSeconds * 2^(attempts - 1), capped at maxBackoffSeconds and jittered down by up to half so retries
+     * from one failed batch spread out; after maxAttempts, or on a permanent failure, the message moves to DEAD.
+     *
+     * @param error the failure, stored as the message's last error
+     * @param retryable false for failures that retrying cannot fix, like an invalid address
+     */
+    public void markFailed(Long messageId, String error, boolean retryable) {
+        String lastError = error != null && error.length() > MAX_ERROR_LENGTH ? error.substring(0, MAX_ERROR_LENGTH) : error;
+        messageRepository.recordFailure(messageId, lastError, retryable, maxAttempts, baseBackoffSeconds, maxBackoffSeconds);
+    }
+
+    public long countByStatus(MessageSentStatus status) {
+        return messageRepository.countByEmailSentStatus(status);
+    }
+
+    /**
+     * Puts every FAILED message back in the outbox. The backlog is walked in keyset pages on (email_sent_status, id),
+     * each requeued in its own short transaction, so memory and transaction size stay the same however large the
+     * backlog is.
+     * <p>
+     * This is the manual retry: requeued messages are sent on the next claim instead of after their backoff, but
+     * keep their attempt count, so a message that keeps failing still moves to DEAD after maxAttempts. DEAD
+     * messages are never requeued.
+     *
+     * @return the number of messages requeued
+     */
+    public int requeueFailed() {
+        int requeued = 0;
+        long afterId = 0;
+        List<Long> page;
+        while (!(page = messageRepository.findFailedIdsAfter(afterId, backlogPageSize)).isEmpty()) {
+            requeued += messageRepository.requeueByIdIn(page, MessageSentStatus.FAILED, MessageSentStatus.UNSENT);
+            afterId = page.get(page.size() - 1);
+        }
+        return requeued;
+    }
+}
@@ -1,13 +1,26 @@
 package com.erp.erp.services;
 
+import com.erp.erp.dto.response.EmailDispatcherStatsDTO;
+import com.erp.erp.dto.response.PayrollBackfillSummaryDTO;
+import com.erp.erp.dto.response.PayrollRunSummaryDTO;
 import com.erp.erp.dto.response.PayslipResponseDTO;
+import com.erp.erp.enums.PayrollEngine;
+import com.erp.erp.utils.PayrollProgress;
 import java.util.List;
+import java.util.function.Consumer;
 
 public interface PayRollService {
     List<PayslipResponseDTO> generatePayroll(int month, int year);
+    List<PayslipResponseDTO> generatePayroll(int month, int year, PayrollEngine engine);
+    void generatePayroll(int month, int year, PayrollEngine engine, PayrollProgress progress, Consumer<PayslipResponseDTO> sink);
+    PayrollRunSummaryDTO regeneratePayroll(int month, int year);
+    PayrollBackfillSummaryDTO backfillPayroll(int fromMonth, int fromYear, int toMonth, int toYear);
     List<PayslipResponseDTO> approvePayroll(int month, int year);
+    List<PayslipResponseDTO> approvePayroll(int month, int year, PayrollProgress progress);
     PayslipResponseDTO getPayslipForEmployee(String employeeCode, int month, int year);
     List<PayslipResponseDTO> getAllPayslipsForMonthYear(int month, int year);
+    void streamPayslipsForMonthYear(int month, int year, Consumer<PayslipResponseDTO> sink);
     void processAndSendSalaryNotifications(int month, int year);
     void processUnsentAndFailedEmails();
+    EmailDispatcherStatsDTO getEmailDispatcherStats();
 }
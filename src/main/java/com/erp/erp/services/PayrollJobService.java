@@ -0,0 +1,19 @@
+package com.erp.erp.services;
+
+import com.erp.erp.dto.response.PayrollJobResponseDTO;
+import com.erp.erp.enums.PayrollEngine;
+import java.util.List;
+
+public interface PayrollJobService {
+    PayrollJobResponseDTO submitGenerate(int month, int year, PayrollEngine engine, String requestedBy);
+    PayrollJobResponseDTO submitApprove(int month, int year, String requestedBy);
+    PayrollJobResponseDTO getJob(Long jobId);
+    List<PayrollJobResponseDTO> getRecentJobs();
+    PayrollJobResponseDTO cancelJob(Long jobId);
+
+    /**
+     * Renews the heartbeat of the jobs queued or running on this node and fails the jobs whose node stopped renewing
+     * theirs, e.g. because it was restarted while they ran.
+     */
+    void renewHeartbeats();
+}
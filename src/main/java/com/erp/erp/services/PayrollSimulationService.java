@@ -0,0 +1,8 @@
+package com.erp.erp.services;
+
+import com.erp.erp.dto.request.PayrollSimulationRequestDTO;
+import com.erp.erp.dto.response.PayrollSimulationResponseDTO;
+
+public interface PayrollSimulationService {
+    PayrollSimulationResponseDTO simulate(PayrollSimulationRequestDTO request);
+}
@@ -7,6 +7,9 @@ import com.erp.erp.exceptions.ResourceNotFoundException;
 import com.erp.erp.repository.EmployeeRepository;
 import com.erp.erp.repository.EmploymentRepository;
 import com.erp.erp.repository.PayslipRepository;
+import com.erp.erp.utils.PayslipPdfTemplate;
+import com.erp.erp.utils.PdfFileCache;
+import jakarta.annotation.PostConstruct;
 import org.apache.pdfbox.pdmodel.PDDocument;
 import org.apache.pdfbox.pdmodel.PDPage;
 import org.apache.pdfbox.pdmodel.PDPageContentStream;
@@ -18,20 +21,30 @@ import org.apache.pdfbox.pdmodel.graphics.color.PDDeviceRGB;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
 
 import java.awt.Color;
-import java.io.ByteArrayInputStream;
 import java.io.ByteArrayOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
 import java.math.BigDecimal;
 import java.math.RoundingMode;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
 import java.text.NumberFormat;
 import java.time.LocalDate;
+import java.time.LocalDateTime;
 import java.time.Month;
 import java.time.YearMonth;
 import java.time.format.DateTimeFormatter;
+import java.util.HexFormat;
 import java.util.Locale;
 
 @Service
@@ -48,6 +61,82 @@ public class PayslipPdfService {
     @Autowired
     private EmploymentRepository employmentRepository;
 
+    // Draws the static layout once per variant and only the values per payslip; false draws every payslip in full
+    @Value("${app.payroll.pdf.templateLayout:true}")
+    private boolean templateLayout;
+
+    // Downloaded PDFs are kept on local disk, keyed by payslip id and a hash of everything they show
+    @Value("${app.payroll.pdf.cacheDirectory:${java.io.tmpdir}/erp-payslip-pdf}")
+    private String cacheDirectory;
+
+    @Value("${app.payroll.pdf.cacheMaxBytes:268435456}")
+    private long cacheMaxBytes;
+
+    // Part of every cached PDF's version; bump it when the layout changes so cached files are rendered again
+    private static final int LAYOUT_VERSION = 1;
+
+    private final PayslipPdfTemplate payslipPdfTemplate = new PayslipPdfTemplate();
+
+    private PdfFileCache pdfCache;
+
+    @PostConstruct
+    void openCache() {
+        pdfCache = new PdfFileCache(Path.of(cacheDirectory), cacheMaxBytes);
+    }
+
+    /**
+     * Opens the PDF payslip of the given employee, month and year from the on-disk cache, rendering it on a miss.
+     * The cache key includes a hash of every value the PDF shows, so a payslip that was recomputed, approved or
+     * whose employee or employment changed is rendered again rather than served stale. Its "Generated on" time
+     * is when the cached file was rendered.
+     *
+     * @param employeeCode the employee code
+     * @param month the month (1-12)
+     * @param year the year
+     * @return the PDF, open for reading; the caller closes it
+     */
+    public FileChannel openPayslipPdf(String employeeCode, int month, int year) {
+        return fromCache(employeeCode, month, year, pdfCache::open);
+    }
+
+    /**
+     * Makes sure the PDF payslip of the given employee, month and year is in the on-disk cache, like
+     * {@link #openPayslipPdf}, but returns its file without opening it, so the caller can open it only where it
+     * also closes it. The file can be evicted before it is opened; {@link #openPayslipPdf} then renders it again.
+     *
+     * @param employeeCode the employee code
+     * @param month the month (1-12)
+     * @param year the year
+     * @return the cached PDF file
+     */
+    public Path cachePayslipPdf(String employeeCode, int month, int year) {
+        return fromCache(employeeCode, month, year, pdfCache::resolve);
+    }
+
+    // Loads everything the payslip PDF shows and looks it up in the cache by payslip id and a hash of those values
+    private <T> T fromCache(String employeeCode, int month, int year, CacheLookup<T> lookup) {
+        Employee employee = employeeRepository.findByCode(employeeCode)
+                .orElseThrow(() -> new ResourceNotFoundException("Employee not found with code: " + employeeCode));
+
+        PaySlip payslip = payslipRepository.findByEmployeeAndMonthAndYear(employee, month, year)
+                .orElseThrow(() -> new ResourceNotFoundException("Payslip not found for employee " + employeeCode + " for " + month + "/" + year));
+
+        Employment activeEmployment = employmentRepository.findByEmployeeCode(employeeCode)
+                .orElse(null);
+
+        try {
+            return lookup.find(String.valueOf(payslip.getId()), contentVersion(employee, payslip, activeEmployment),
+                    out -> writePayslipPdf(employee, payslip, activeEmployment, month, year, out));
+        } catch (IOException e) {
+            throw new UncheckedIOException("Could not cache the payslip PDF of employee " + employeeCode, e);
+        }
+    }
+
+    @FunctionalInterface
+    private interface CacheLookup<T> {
+        T find(String id, String version, PdfFileCache.Renderer renderer) throws IOException;
+    }
+
     /**
      * Generates a PDF payslip for the given employee, month, and year
      * Enhanced version with better formatting and more descriptive content
@@ -55,20 +144,91 @@ public class PayslipPdfService {
      * @param employeeCode the employee code
      * @param month the month (1-12)
      * @param year the year
-     * @return an InputStream containing the PDF data
+     * @return an InputStream reading the cached PDF file; the caller closes it
      */
     public InputStream generatePayslipPdf(String employeeCode, int month, int year) {
+        return Channels.newInputStream(openPayslipPdf(employeeCode, month, year));
+    }
+
+    /**
+     * Renders a PDF payslip from data the caller already loaded, without querying the database,
+     * so it can run on any thread outside a transaction
+     *
+     * @param employee the employee
+     * @param payslip the employee's payslip for the month
+     * @param activeEmployment the employee's employment, or null if there is none
+     * @param month the month (1-12)
+     * @param year the year
+     * @return the PDF bytes
+     */
+    public byte[] renderPayslipPdf(Employee employee, PaySlip payslip, Employment activeEmployment, int month, int year) {
+        ByteArrayOutputStream out = new ByteArrayOutputStream(4096);
         try {
-            // Fetch the required data
-            Employee employee = employeeRepository.findByCode(employeeCode)
-                    .orElseThrow(() -> new ResourceNotFoundException("Employee not found with code: " + employeeCode));
+            writePayslipPdf(employee, payslip, activeEmployment, month, year, out);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e); // A ByteArrayOutputStream does not throw
+        }
+        return out.toByteArray();
+    }
+
+    /**
+     * Writes a PDF payslip from data the caller already loaded to a stream, such as a cache file,
+     * without holding a copy of the whole document
+     */
+    public void writePayslipPdf(Employee employee, PaySlip payslip, Employment activeEmployment, int month, int year,
+                                OutputStream out) throws IOException {
+        if (!templateLayout) {
+            writeLegacyPayslipPdf(employee, payslip, activeEmployment, month, year, out);
+            return;
+        }
+        try {
+            payslipPdfTemplate.render(employee, payslip, activeEmployment, month, year, out);
+        } catch (IllegalArgumentException e) {
+            // Text outside Latin-1 needs PDFBox's font encoding; the template rejects it before writing anything
+            logger.debug("Rendering payslip of employee {} in full: {}", employee.getCode(), e.getMessage());
+            writeLegacyPayslipPdf(employee, payslip, activeEmployment, month, year, out);
+        }
+    }
 
-            PaySlip payslip = payslipRepository.findByEmployeeAndMonthAndYear(employee, month, year)
-                    .orElseThrow(() -> new ResourceNotFoundException("Payslip not found for employee " + employeeCode + " for " + month + "/" + year));
+    // Hash of every value the PDF shows and of how it is drawn
+    private String contentVersion(Employee employee, PaySlip payslip, Employment employment) {
+        StringBuilder content = new StringBuilder()
+                .append(LAYOUT_VERSION).append('|').append(templateLayout).append('|')
+                .append(employee.getCode()).append('|').append(employee.getFirstName()).append('|')
+                .append(employee.getLastName()).append('|').append(employee.getEmail()).append('|')
+                .append(employee.getMobile()).append('|')
+                .append(payslip.getMonth()).append('|').append(payslip.getYear()).append('|')
+                .append(payslip.getStatus()).append('|').append(payslip.getHouseAmount()).append('|')
+                .append(payslip.getTransportAmount()).append('|').append(payslip.getEmployeeTaxedAmount()).append('|')
+                .append(payslip.getPensionAmount()).append('|').append(payslip.getMedicalInsuranceAmount()).append('|')
+                .append(payslip.getOtherTaxedAmount()).append('|').append(payslip.getAdditionalDeductionsAmount()).append('|')
+                .append(payslip.getGrossSalary()).append('|').append(payslip.getNetSalary());
+        if (employment != null) {
+            content.append('|').append(employment.getCode()).append('|').append(employment.getDepartment())
+                    .append('|').append(employment.getPosition()).append('|').append(employment.getBaseSalary())
+                    .append('|').append(employment.getStatus()).append('|').append(employment.getJoiningDate());
+        }
+        try {
+            byte[] hash = MessageDigest.getInstance("SHA-256").digest(content.toString().getBytes(StandardCharsets.UTF_8));
+            return HexFormat.of().formatHex(hash, 0, 16);
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 is not available", e);
+        }
+    }
 
-            Employment activeEmployment = employmentRepository.findByEmployeeCode(employeeCode)
-                    .orElse(null);
+    /**
+     * Renders a PDF payslip by drawing the whole layout for this payslip.
+     * Used when app.payroll.pdf.templateLayout is false, and as the baseline of the PDF benchmark
+     */
+    public byte[] renderLegacyPayslipPdf(Employee employee, PaySlip payslip, Employment activeEmployment, int month, int year) {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        writeLegacyPayslipPdf(employee, payslip, activeEmployment, month, year, out);
+        return out.toByteArray();
+    }
 
+    private void writeLegacyPayslipPdf(Employee employee, PaySlip payslip, Employment activeEmployment, int month, int year,
+                                       OutputStream out) {
+        try {
             // Format currency values
             NumberFormat currencyFormat = NumberFormat.getCurrencyInstance(new Locale("en", "RW"));
             currencyFormat.setMaximumFractionDigits(2);
@@ -477,11 +637,25 @@ public class PayslipPdfService {
             contentStream.endText();
             yPosition -= leading;
 
+            // Deductions outside the fixed categories
+            BigDecimal additionalDeductions = payslip.getAdditionalDeductionsAmount();
+            if (additionalDeductions != null && additionalDeductions.signum() != 0) {
+                contentStream.beginText();
+                contentStream.setFont(normalFont, 10);
+                contentStream.newLineAtOffset(margin + 10, yPosition);
+                contentStream.showText("Additional Deductions");
+                contentStream.endText();
+
+                contentStream.beginText();
+                contentStream.setFont(normalFont, 10);
+                contentStream.newLineAtOffset(pageWidth - margin - 100, yPosition);
+                contentStream.showText(currencyFormat.format(additionalDeductions));
+                contentStream.endText();
+                yPosition -= leading;
+            }
+
             // Calculate total deductions
-            BigDecimal totalDeductions = payslip.getEmployeeTaxedAmount()
-                    .add(payslip.getPensionAmount())
-                    .add(payslip.getMedicalInsuranceAmount())
-                    .add(payslip.getOtherTaxedAmount());
+            BigDecimal totalDeductions = payslip.getGrossSalary().subtract(payslip.getNetSalary());
 
             // Draw total deductions line
             contentStream.setStrokingColor(secondaryColor);
@@ -598,7 +772,7 @@ public class PayslipPdfService {
             contentStream.setNonStrokingColor(secondaryColor);
             contentStream.setFont(normalFont, 9);
             contentStream.newLineAtOffset(margin, yPosition);
-            contentStream.showText("Generated on: " + LocalDate.now().format(DateTimeFormatter.ofPattern("dd-MMM-yyyy HH:mm")));
+            contentStream.showText("Generated on: " + LocalDateTime.now().format(DateTimeFormatter.ofPattern("dd-MMM-yyyy HH:mm")));
             contentStream.endText();
 
             // Disclaimer
@@ -610,13 +784,10 @@ public class PayslipPdfService {
 
             contentStream.close();
 
-            ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
-            document.save(outputStream);
+            document.save(out);
             document.close();
-
-            return new ByteArrayInputStream(outputStream.toByteArray());
         } catch (IOException e) {
-            logger.error("Error generating PDF payslip for employee {}: {}", employeeCode, e.getMessage());
+            logger.error("Error generating PDF payslip for employee {}: {}", employee.getCode(), e.getMessage());
             throw new RuntimeException("Failed to generate PDF payslip: " + e.getMessage(), e);
         }
     }
@@ -0,0 +1,105 @@
+package com.erp.erp.utils;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Concurrency limit that adapts with additive increase / multiplicative decrease (AIMD), like TCP congestion control.
+ * Every call that completes under the latency threshold raises the limit by 1/limit, so the limit grows by one per
+ * round of calls; a call that fails or exceeds the threshold multiplies it by the decrease factor, at most once per
+ * threshold interval so a burst of failures from one congested round only backs off once.
+ */
+public class AimdConcurrencyLimiter {
+
+    private final int minLimit;
+    private final int maxLimit;
+    private final long latencyThresholdNanos;
+    private final double decreaseFactor;
+
+    private final ReentrantLock lock = new ReentrantLock();
+    private final Condition slotFreed = lock.newCondition();
+    private double estimatedLimit;
+    private int inFlight;
+    private long lastDecreaseNanos;
+
+    public AimdConcurrencyLimiter(int initialLimit, int minLimit, int maxLimit, long latencyThresholdMillis, double decreaseFactor) {
+        this.minLimit = Math.max(1, minLimit);
+        this.maxLimit = Math.max(this.minLimit, maxLimit);
+        this.latencyThresholdNanos = TimeUnit.MILLISECONDS.toNanos(latencyThresholdMillis);
+        this.decreaseFactor = decreaseFactor;
+        this.estimatedLimit = Math.min(this.maxLimit, Math.max(this.minLimit, initialLimit));
+        this.lastDecreaseNanos = System.nanoTime() - latencyThresholdNanos;
+    }
+
+    /**
+     * Waits until fewer calls than the current limit are in flight and takes a slot.
+     */
+    public void acquire() throws InterruptedException {
+        lock.lock();
+        try {
+            while (inFlight >= (int) estimatedLimit) {
+                slotFreed.await();
+            }
+            inFlight++;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Frees the slot of a call and adapts the limit to its outcome.
+     *
+     * @param latencyNanos how long the call took
+     * @param succeeded false if the call failed in a way that signals overload
+     */
+    public void release(long latencyNanos, boolean succeeded) {
+        lock.lock();
+        try {
+            inFlight--;
+            if (!succeeded || latencyNanos > latencyThresholdNanos) {
+                long now = System.nanoTime();
+                if (now - lastDecreaseNanos >= latencyThresholdNanos) {
+                    estimatedLimit = Math.max(minLimit, estimatedLimit * decreaseFactor);
+                    lastDecreaseNanos = now;
+                }
+            } else {
+                estimatedLimit = Math.min(maxLimit, estimatedLimit + 1.0 / estimatedLimit);
+            }
+            slotFreed.signalAll();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Frees the slot of a call whose outcome says nothing about the downstream load, without adapting the limit.
+     */
+    public void releaseIgnored() {
+        lock.lock();
+        try {
+            inFlight--;
+            slotFreed.signalAll();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public int getLimit() {
+        lock.lock();
+        try {
+            return (int) estimatedLimit;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public int getInFlight() {
+        lock.lock();
+        try {
+            return inFlight;
+        } finally {
+            lock.unlock();
+        }
+    }
+}
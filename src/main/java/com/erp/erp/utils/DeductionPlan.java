@@ -0,0 +1,195 @@
+package com.erp.erp.utils;
+
+import com.erp.erp.entity.Deduction;
+import com.erp.erp.enums.EmployeeStatus;
+
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+
+/**
+ * Immutable, compiled form of the deductions table used by payroll runs.
+ * Housing and transport are earning slots; employee tax, pension, medical insurance and others are the
+ * fixed deduction slots, and any other deduction gets its own extra deduction slot after them instead
+ * of being ignored. Rates are kept both as basis points for {@link PayrollCalculator} and as the original
+ * percentages for the BigDecimal path. The version is a hash of the table contents, so it is the same on
+ * every node and across restarts for the same deductions.
+ */
+public class DeductionPlan {
+
+    public static final String HOUSING = "Housing";
+    public static final String TRANSPORT = "Transport";
+    public static final String EMPLOYEE_TAX = "Employee Tax";
+    public static final String PENSION = "Pension";
+    public static final String MEDICAL_INSURANCE = "Medical Insurance";
+    public static final String OTHERS = "Others";
+
+    // Earning slots
+    public static final int HOUSING_SLOT = 0;
+    public static final int TRANSPORT_SLOT = 1;
+
+    // Fixed deduction slots; extra deductions start at FIXED_DEDUCTION_SLOTS
+    public static final int EMPLOYEE_TAX_SLOT = 0;
+    public static final int PENSION_SLOT = 1;
+    public static final int MEDICAL_INSURANCE_SLOT = 2;
+    public static final int OTHERS_SLOT = 3;
+    public static final int FIXED_DEDUCTION_SLOTS = 4;
+
+    private static final List<String> EARNING_NAMES = List.of(HOUSING, TRANSPORT);
+    private static final List<String> FIXED_DEDUCTION_NAMES = List.of(EMPLOYEE_TAX, PENSION, MEDICAL_INSURANCE, OTHERS);
+
+    private final long version;
+    private final String[] deductionNames;
+    private final BigDecimal[] earningPercentages;
+    private final BigDecimal[] deductionPercentages;
+    private final int[] earningRates;
+    private final int[] deductionRates;
+
+    private DeductionPlan(long version, String[] deductionNames, BigDecimal[] earningPercentages, BigDecimal[] deductionPercentages) {
+        this.version = version;
+        this.deductionNames = deductionNames;
+        this.earningPercentages = earningPercentages;
+        this.deductionPercentages = deductionPercentages;
+        this.earningRates = toBasisPoints(earningPercentages);
+        this.deductionRates = toBasisPoints(deductionPercentages);
+    }
+
+    /**
+     * Compiles the deductions into a plan. Missing known deductions get a 0 rate.
+     *
+     * @param deductions every row of the deductions table
+     * @return the compiled plan
+     */
+    public static DeductionPlan compile(List<Deduction> deductions) {
+        List<Deduction> sorted = new ArrayList<>(deductions);
+        sorted.sort(Comparator.comparing(Deduction::getDeductionName));
+
+        BigDecimal[] earningPercentages = new BigDecimal[EARNING_NAMES.size()];
+        Arrays.fill(earningPercentages, BigDecimal.ZERO);
+        BigDecimal[] fixedDeductionPercentages = new BigDecimal[FIXED_DEDUCTION_NAMES.size()];
+        Arrays.fill(fixedDeductionPercentages, BigDecimal.ZERO);
+        List<String> extraNames = new ArrayList<>();
+        List<BigDecimal> extraPercentages = new ArrayList<>();
+
+        for (Deduction deduction : sorted) {
+            int earningSlot = EARNING_NAMES.indexOf(deduction.getDeductionName());
+            int deductionSlot = FIXED_DEDUCTION_NAMES.indexOf(deduction.getDeductionName());
+            if (earningSlot >= 0) {
+                earningPercentages[earningSlot] = deduction.getPercentage();
+            } else if (deductionSlot >= 0) {
+                fixedDeductionPercentages[deductionSlot] = deduction.getPercentage();
+            } else {
+                extraNames.add(deduction.getDeductionName());
+                extraPercentages.add(deduction.getPercentage());
+            }
+        }
+
+        String[] deductionNames = new String[FIXED_DEDUCTION_SLOTS + extraNames.size()];
+        BigDecimal[] deductionPercentages = new BigDecimal[deductionNames.length];
+        for (int slot = 0; slot < FIXED_DEDUCTION_SLOTS; slot++) {
+            deductionNames[slot] = FIXED_DEDUCTION_NAMES.get(slot);
+            deductionPercentages[slot] = fixedDeductionPercentages[slot];
+        }
+        for (int i = 0; i < extraNames.size(); i++) {
+            deductionNames[FIXED_DEDUCTION_SLOTS + i] = extraNames.get(i);
+            deductionPercentages[FIXED_DEDUCTION_SLOTS + i] = extraPercentages.get(i);
+        }
+
+        return new DeductionPlan(fingerprint(sorted), deductionNames, earningPercentages, deductionPercentages);
+    }
+
+    public long getVersion() { return version; }
+    public int getEarningSlotCount() { return earningPercentages.length; }
+    public int getDeductionSlotCount() { return deductionPercentages.length; }
+    public String getEarningName(int slot) { return EARNING_NAMES.get(slot); }
+    public String getDeductionName(int slot) { return deductionNames[slot]; }
+    public BigDecimal getEarningPercentage(int slot) { return earningPercentages[slot]; }
+    public BigDecimal getDeductionPercentage(int slot) { return deductionPercentages[slot]; }
+
+    /**
+     * @return true if every rate fits in basis points, so {@link #calculate(long, PayrollCalculator.Result)} can be used
+     */
+    public boolean isFixedPoint() {
+        return earningRates != null && deductionRates != null;
+    }
+
+    /**
+     * @return a result sized for this plan's slots, to be reused by one thread
+     */
+    public PayrollCalculator.Result newResult() {
+        return new PayrollCalculator.Result(getEarningSlotCount(), getDeductionSlotCount());
+    }
+
+    /**
+     * Runs the fixed-point kernel with this plan's rates. Only valid when {@link #isFixedPoint()} is true.
+     *
+     * @throws ArithmeticException if an amount overflows a long
+     */
+    public void calculate(long baseCents, PayrollCalculator.Result result) {
+        PayrollCalculator.calculate(baseCents, earningRates, deductionRates, result);
+    }
+
+    /**
+     * Fingerprints the inputs of one payslip: the base salary, this plan's version and the employee status.
+     * Two payslips computed from the same inputs have the same fingerprint, so an incremental run only
+     * recomputes the rows whose fingerprint differs from the one stored on the payslip. This is a cheap
+     * 64-bit mix rather than a cryptographic hash since it runs once per employee.
+     *
+     * @param baseSalary the base salary the payslip is computed from
+     * @param employeeStatus the employee's status
+     * @return the fingerprint
+     */
+    public long inputFingerprint(BigDecimal baseSalary, EmployeeStatus employeeStatus) {
+        long salaryHash = PayrollCalculator.isCents(baseSalary)
+                ? PayrollCalculator.toCents(baseSalary)
+                : baseSalary.stripTrailingZeros().toPlainString().hashCode();
+        long hash = mix(version ^ salaryHash);
+        return mix(hash ^ (employeeStatus != null ? employeeStatus.name().hashCode() : 0));
+    }
+
+    /**
+     * BigDecimal equivalent of the kernel for one slot amount.
+     */
+    public static BigDecimal applyPercentage(BigDecimal baseSalary, BigDecimal percentage) {
+        return baseSalary.multiply(percentage).setScale(2, RoundingMode.HALF_UP);
+    }
+
+    private static int[] toBasisPoints(BigDecimal[] percentages) {
+        int[] rates = new int[percentages.length];
+        for (int slot = 0; slot < percentages.length; slot++) {
+            if (!PayrollCalculator.isBasisPoints(percentages[slot])) {
+                return null;
+            }
+            rates[slot] = PayrollCalculator.toBasisPoints(percentages[slot]);
+        }
+        return rates;
+    }
+
+    // SplitMix64 finalizer
+    private static long mix(long value) {
+        value = (value ^ (value >>> 30)) * 0xbf58476d1ce4e5b9L;
+        value = (value ^ (value >>> 27)) * 0x94d049bb133111ebL;
+        return value ^ (value >>> 31);
+    }
+
+    private static long fingerprint(List<Deduction> sortedDeductions) {
+        try {
+            MessageDigest digest = MessageDigest.getInstance("SHA-256");
+            for (Deduction deduction : sortedDeductions) {
+                String line = deduction.getCode() + "|" + deduction.getDeductionName() + "|"
+                        + deduction.getPercentage().stripTrailingZeros().toPlainString() + "\n";
+                digest.update(line.getBytes(StandardCharsets.UTF_8));
+            }
+            return ByteBuffer.wrap(digest.digest()).getLong();
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 is not available", e);
+        }
+    }
+}
@@ -0,0 +1,56 @@
+package com.erp.erp.utils;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectWriter;
+
+import java.io.BufferedOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+
+/**
+ * Writes objects to a response as newline-delimited JSON (application/x-ndjson), one object per line.
+ * Lines are buffered and flushed to the client every {@code flushEvery} objects, so memory use does not
+ * depend on how many objects are written. Safe to share between threads.
+ */
+public class NdjsonWriter {
+
+    private static final int BUFFER_SIZE = 64 * 1024;
+
+    private final OutputStream out;
+    private final ObjectWriter objectWriter;
+    private final int flushEvery;
+    private int unflushed;
+
+    public NdjsonWriter(OutputStream out, ObjectMapper objectMapper, int flushEvery) {
+        this.out = new BufferedOutputStream(out, BUFFER_SIZE);
+        this.objectWriter = objectMapper.writer();
+        this.flushEvery = Math.max(1, flushEvery);
+    }
+
+    /**
+     * Writes one object as a line.
+     *
+     * @throws UncheckedIOException if the client stopped reading, so the producer can stop as well
+     */
+    public synchronized void write(Object value) {
+        try {
+            out.write(objectWriter.writeValueAsBytes(value));
+            out.write('\n');
+            if (++unflushed >= flushEvery) {
+                out.flush();
+                unflushed = 0;
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException("Failed to write NDJSON line", e);
+        }
+    }
+
+    /**
+     * Sends whatever is still buffered. Call once the last object has been written.
+     */
+    public synchronized void flush() throws IOException {
+        out.flush();
+        unflushed = 0;
+    }
+}
@@ -0,0 +1,143 @@
+package com.erp.erp.utils;
+
+import java.math.BigDecimal;
+
+/**
+ * Fixed-point payroll calculation kernel.
+ * Amounts are carried as long minor units (cents) and rates as int basis points (0.30 = 3000),
+ * so computing a payslip does not allocate. Every amount is rounded exactly like
+ * {@code baseSalary.multiply(rate).setScale(2, RoundingMode.HALF_UP)}: for a base salary with at most
+ * 2 decimals and a rate with at most 4 decimals the product is exact, and HALF_UP rounding of
+ * {@code cents * basisPoints / 10000} to a whole cent is the same operation on integers.
+ * Inputs that cannot be represented this way must use the BigDecimal path instead; see
+ * {@link #isCents(BigDecimal)} and {@link #isBasisPoints(BigDecimal)}.
+ */
+public class PayrollCalculator {
+
+    public static final int CENTS_SCALE = 2;
+    public static final int BASIS_POINTS_SCALE = 4;
+
+    private static final long BASIS_POINTS_PER_UNIT = 10_000L;
+    private static final long HALF_BASIS_POINTS_PER_UNIT = BASIS_POINTS_PER_UNIT / 2;
+
+    private PayrollCalculator() {
+    }
+
+    /**
+     * Reusable per-thread output of {@link #calculate}. Allocate one per worker and reuse it for every employee.
+     */
+    public static class Result {
+        private final long[] earnings;
+        private final long[] deductions;
+        private long grossCents;
+        private long totalDeductionsCents;
+        private long netCents;
+
+        public Result(int earningSlots, int deductionSlots) {
+            this.earnings = new long[earningSlots];
+            this.deductions = new long[deductionSlots];
+        }
+
+        public long getEarning(int slot) { return earnings[slot]; }
+        public long getDeduction(int slot) { return deductions[slot]; }
+        public long getGrossCents() { return grossCents; }
+        public long getTotalDeductionsCents() { return totalDeductionsCents; }
+        public long getNetCents() { return netCents; }
+    }
+
+    /**
+     * Computes every earning and deduction of one payslip.
+     * Gross is the base salary plus the rounded earnings, net is gross minus the rounded deductions.
+     *
+     * @param baseCents the base salary in cents
+     * @param earningRates earning rates in basis points, one per earning slot
+     * @param deductionRates deduction rates in basis points, one per deduction slot
+     * @param result the reusable result to fill
+     * @throws ArithmeticException if an amount overflows a long
+     */
+    public static void calculate(long baseCents, int[] earningRates, int[] deductionRates, Result result) {
+        long gross = baseCents;
+        for (int slot = 0; slot < earningRates.length; slot++) {
+            long amount = applyRate(baseCents, earningRates[slot]);
+            result.earnings[slot] = amount;
+            gross = Math.addExact(gross, amount);
+        }
+
+        long totalDeductions = 0;
+        for (int slot = 0; slot < deductionRates.length; slot++) {
+            long amount = applyRate(baseCents, deductionRates[slot]);
+            result.deductions[slot] = amount;
+            totalDeductions = Math.addExact(totalDeductions, amount);
+        }
+
+        result.grossCents = gross;
+        result.totalDeductionsCents = totalDeductions;
+        result.netCents = Math.subtractExact(gross, totalDeductions);
+    }
+
+    /**
+     * Multiplies an amount by a rate and rounds to the nearest cent, ties away from zero (HALF_UP).
+     *
+     * @param amountCents the amount in cents
+     * @param rateBasisPoints the rate in basis points
+     * @return the rounded amount in cents
+     * @throws ArithmeticException if the product overflows a long
+     */
+    public static long applyRate(long amountCents, int rateBasisPoints) {
+        long product = Math.multiplyExact(amountCents, (long) rateBasisPoints);
+        if (product >= 0) {
+            return Math.addExact(product, HALF_BASIS_POINTS_PER_UNIT) / BASIS_POINTS_PER_UNIT;
+        }
+        return -(Math.addExact(Math.negateExact(product), HALF_BASIS_POINTS_PER_UNIT) / BASIS_POINTS_PER_UNIT);
+    }
+
+    /**
+     * @return true if the amount has at most 2 decimals and fits in a long number of cents
+     */
+    public static boolean isCents(BigDecimal amount) {
+        return fitsScale(amount, CENTS_SCALE);
+    }
+
+    /**
+     * @return true if the rate has at most 4 decimals and fits in an int number of basis points
+     */
+    public static boolean isBasisPoints(BigDecimal rate) {
+        if (!fitsScale(rate, BASIS_POINTS_SCALE)) {
+            return false;
+        }
+        long basisPoints = rate.movePointRight(BASIS_POINTS_SCALE).longValue();
+        return basisPoints >= Integer.MIN_VALUE && basisPoints <= Integer.MAX_VALUE;
+    }
+
+    /**
+     * @throws ArithmeticException if the amount is not a whole number of cents or does not fit in a long
+     */
+    public static long toCents(BigDecimal amount) {
+        return amount.movePointRight(CENTS_SCALE).longValueExact();
+    }
+
+    /**
+     * @throws ArithmeticException if the rate is not a whole number of basis points or does not fit in an int
+     */
+    public static int toBasisPoints(BigDecimal rate) {
+        return rate.movePointRight(BASIS_POINTS_SCALE).intValueExact();
+    }
+
+    /**
+     * @return the amount as a BigDecimal with scale 2, equal (including scale) to the HALF_UP BigDecimal result
+     */
+    public static BigDecimal fromCents(long cents) {
+        return BigDecimal.valueOf(cents, CENTS_SCALE);
+    }
+
+    private static boolean fitsScale(BigDecimal value, int scale) {
+        if (value == null) {
+            return false;
+        }
+        BigDecimal scaled = value.movePointRight(scale);
+        if (scaled.signum() != 0 && scaled.stripTrailingZeros().scale() > 0) {
+            return false;
+        }
+        return scaled.abs().compareTo(BigDecimal.valueOf(Long.MAX_VALUE)) <= 0;
+    }
+}
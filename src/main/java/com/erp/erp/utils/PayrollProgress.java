@@ -0,0 +1,66 @@
+package com.erp.erp.utils;
+
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Live progress of one payroll run, shared by every thread working on it.
+ * Processed counts the employees worked through so far, less those of chunks that rolled back; failed counts
+ * the employees of failed chunks and partitions, and of a failed approval. Cancellation is cooperative: workers
+ * call {@link #checkCancelled()} between chunks, so an in-flight chunk always finishes or rolls back as a whole.
+ * A child progress counts processed employees on its own, for work whose total is tallied elsewhere, while its
+ * failures and cancellation are shared with its parent.
+ */
+public class PayrollProgress {
+
+    private final PayrollProgress parent;
+    private final AtomicInteger processed = new AtomicInteger();
+    private final AtomicInteger failed = new AtomicInteger();
+    private volatile int total;
+    private volatile boolean cancelled;
+
+    public PayrollProgress() {
+        this(null);
+    }
+
+    public PayrollProgress(PayrollProgress parent) {
+        this.parent = parent;
+    }
+
+    public int getTotal() { return total; }
+    public void setTotal(int total) { this.total = total; }
+    public int getProcessed() { return processed.get(); }
+    public int getFailed() { return failed.get(); }
+
+    public void addProcessed(int count) {
+        processed.addAndGet(count);
+    }
+
+    public void setProcessed(int count) {
+        processed.set(count);
+    }
+
+    public void addFailed(int count) {
+        failed.addAndGet(count);
+        if (parent != null) {
+            parent.addFailed(count);
+        }
+    }
+
+    public void cancel() {
+        cancelled = true;
+    }
+
+    public boolean isCancelled() {
+        return cancelled || (parent != null && parent.isCancelled());
+    }
+
+    /**
+     * @throws CancellationException if the run was cancelled
+     */
+    public void checkCancelled() {
+        if (isCancelled()) {
+            throw new CancellationException("Payroll run was cancelled");
+        }
+    }
+}
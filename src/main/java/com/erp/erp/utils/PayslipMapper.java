@@ -0,0 +1,44 @@
+package com.erp.erp.utils;
+
+import com.erp.erp.dto.response.PayslipResponseDTO;
+import com.erp.erp.entity.PaySlip;
+import org.springframework.beans.BeanUtils;
+
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+
+/**
+ * Utility class for converting payslip entities into response DTOs.
+ * Shared by the payroll service and the generation engines so every path returns the same shape.
+ */
+public class PayslipMapper {
+
+    /**
+     * Converts a payslip into its response DTO.
+     *
+     * @param payslip the payslip
+     * @param employeeName the employee's display name
+     * @param baseSalary the base salary the payslip was computed from
+     * @return the response DTO
+     */
+    public static PayslipResponseDTO toResponseDTO(PaySlip payslip, String employeeName, BigDecimal baseSalary) {
+        PayslipResponseDTO dto = new PayslipResponseDTO();
+        BeanUtils.copyProperties(payslip, dto);
+        dto.setEmployeeCode(payslip.getEmployee().getCode());
+        dto.setEmployeeName(employeeName);
+        dto.setBaseSalary(baseSalary.setScale(2, RoundingMode.HALF_UP)); // Add base salary to DTO
+        return dto;
+    }
+
+    /**
+     * Converts a payslip row read together with its employee and employment, as returned by the
+     * {@code findWithEmployee...} and {@code streamWithEmployee...} queries of {@code PayslipRepository}.
+     *
+     * @param row the payslip, the employee's first name, last name and base salary (null without an employment)
+     * @return the response DTO
+     */
+    public static PayslipResponseDTO fromRow(Object[] row) {
+        BigDecimal baseSalary = row[3] != null ? (BigDecimal) row[3] : BigDecimal.ZERO;
+        return toResponseDTO((PaySlip) row[0], row[1] + " " + row[2], baseSalary);
+    }
+}
@@ -0,0 +1,519 @@
+package com.erp.erp.utils;
+
+import com.erp.erp.entity.Employee;
+import com.erp.erp.entity.Employment;
+import com.erp.erp.entity.PaySlip;
+import org.apache.pdfbox.cos.COSName;
+import org.apache.pdfbox.cos.COSStream;
+import org.apache.pdfbox.pdmodel.PDDocument;
+import org.apache.pdfbox.pdmodel.PDPage;
+import org.apache.pdfbox.pdmodel.PDPageContentStream;
+import org.apache.pdfbox.pdmodel.PDResources;
+import org.apache.pdfbox.pdmodel.common.PDRectangle;
+import org.apache.pdfbox.pdmodel.font.PDFont;
+import org.apache.pdfbox.pdmodel.font.PDType1Font;
+import org.apache.pdfbox.pdmodel.font.Standard14Fonts;
+
+import java.awt.Color;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.text.NumberFormat;
+import java.time.LocalDateTime;
+import java.time.YearMonth;
+import java.time.format.DateTimeFormatter;
+import java.util.Arrays;
+import java.util.EnumMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Payslip PDF renderer that draws the static part of the layout once. Header bars, section titles, labels,
+ * table rules and boxes are rendered with PDFBox into a Form XObject per {@link Variant}, the few layout
+ * differences between payslips, and the whole document around it (catalog, page, the three standard fonts and
+ * the form) is serialized once and cached. A payslip then only costs its values: one small content stream that
+ * draws the form and stamps about twenty strings on it, appended to the cached bytes with a new cross-reference
+ * table. The geometry is the one of the original renderer, which PayslipPdfService keeps as a fallback for text
+ * this writer cannot encode. Thread-safe: the cache is the only shared state.
+ */
+public class PayslipPdfTemplate {
+
+    private static final float MARGIN = 50;
+    private static final float LEADING = 15;
+    private static final Color PRIMARY_COLOR = new Color(0, 102, 204); // Blue
+    private static final Color SECONDARY_COLOR = new Color(51, 51, 51); // Dark gray
+    private static final Color HIGHLIGHT_COLOR = new Color(0, 153, 0); // Green for positive values
+    private static final Color WARNING_COLOR = new Color(204, 0, 0); // Red for negative values
+    private static final DateTimeFormatter PERIOD_FORMAT = DateTimeFormatter.ofPattern("dd MMMM yyyy");
+    private static final DateTimeFormatter JOINING_DATE_FORMAT = DateTimeFormatter.ofPattern("dd-MMM-yyyy");
+    private static final DateTimeFormatter GENERATED_FORMAT = DateTimeFormatter.ofPattern("dd-MMM-yyyy HH:mm");
+    private static final NumberFormat CURRENCY_FORMAT = NumberFormat.getCurrencyInstance(new Locale("en", "RW"));
+
+    static {
+        CURRENCY_FORMAT.setMaximumFractionDigits(2);
+        CURRENCY_FORMAT.setMinimumFractionDigits(2);
+    }
+
+    // Object numbers of the cached document; the page content is written last, after the cached bytes
+    private static final int CATALOG = 1;
+    private static final int PAGES = 2;
+    private static final int PAGE = 3;
+    private static final int FORM = 4;
+    private static final int FIRST_FONT = 5;
+    private static final List<Standard14Fonts.FontName> FONTS = List.of(
+            Standard14Fonts.FontName.HELVETICA_BOLD, Standard14Fonts.FontName.HELVETICA, Standard14Fonts.FontName.HELVETICA_OBLIQUE);
+    private static final int PAGE_CONTENT = FIRST_FONT + FONTS.size();
+
+    /**
+     * The parts of the layout that change between payslips: the employment section and the additional deductions
+     * line move everything below them, and the status box is green only for paid payslips.
+     */
+    private record Variant(boolean hasEmployment, boolean hasAdditionalDeductions, boolean paid) {
+    }
+
+    // The serialized document of one variant without its page content, and the offset of each object in it
+    private record StaticLayout(byte[] head, long[] offsets) {
+    }
+
+    private record Values(String payPeriod, String employeeName, String employeeCode, String email, String mobile,
+                          String department, String position, String joiningDate, String baseSalary,
+                          String houseAmount, String transportAmount, String grossSalary, String employeeTax,
+                          String pension, String medicalInsurance, String otherDeductions,
+                          String additionalDeductions, String totalDeductions, String netSalary, String status,
+                          String generatedOn) {
+
+        List<String> all() {
+            return Arrays.asList(payPeriod, employeeName, employeeCode, email, mobile, department, position,
+                    joiningDate, baseSalary, houseAmount, transportAmount, grossSalary, employeeTax, pension,
+                    medicalInsurance, otherDeductions, additionalDeductions, totalDeductions, netSalary, status, generatedOn);
+        }
+    }
+
+    private static final Values NO_VALUES = new Values(null, null, null, null, null, null, null, null, null, null,
+            null, null, null, null, null, null, null, null, null, null, null);
+
+    private final Map<Variant, StaticLayout> layouts = new ConcurrentHashMap<>();
+
+    /**
+     * @return the PDF bytes of the payslip
+     * @throws IllegalArgumentException if a value has characters outside Latin-1, which this writer does not encode
+     */
+    public byte[] render(Employee employee, PaySlip payslip, Employment activeEmployment, int month, int year) {
+        ByteArrayOutputStream out = new ByteArrayOutputStream(4096);
+        try {
+            render(employee, payslip, activeEmployment, month, year, out);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e); // A ByteArrayOutputStream does not throw
+        }
+        return out.toByteArray();
+    }
+
+    /**
+     * Writes the PDF of the payslip to a stream without buffering the whole document.
+     *
+     * @throws IllegalArgumentException if a value has characters outside Latin-1, which this writer does not encode;
+     *                                  thrown before anything is written
+     */
+    public void render(Employee employee, PaySlip payslip, Employment activeEmployment, int month, int year,
+                       OutputStream out) throws IOException {
+        BigDecimal additionalDeductions = payslip.getAdditionalDeductionsAmount();
+        Variant variant = new Variant(activeEmployment != null,
+                additionalDeductions != null && additionalDeductions.signum() != 0,
+                payslip.getStatus().name().equals("PAID"));
+        Values values = valuesOf(employee, payslip, activeEmployment, month, year);
+        for (String value : values.all()) {
+            if (value != null && !isLatin1(value)) {
+                throw new IllegalArgumentException("Cannot encode payslip text: " + value);
+            }
+        }
+        StaticLayout layout = layouts.computeIfAbsent(variant, this::buildLayout);
+
+        ValuesPass pass = new ValuesPass();
+        pass.content.append("/Fm1 Do\n");
+        draw(pass, PDRectangle.A4, variant, values);
+        byte[] content = pass.content.toString().getBytes(StandardCharsets.ISO_8859_1);
+
+        byte[] contentHead = bytes(PAGE_CONTENT + " 0 obj\n<</Length " + content.length + ">>\nstream\n");
+        byte[] contentTail = bytes("\nendstream\nendobj\n");
+        out.write(layout.head());
+        out.write(contentHead);
+        out.write(content);
+        out.write(contentTail);
+
+        long[] offsets = layout.offsets().clone();
+        offsets[PAGE_CONTENT] = layout.head().length;
+        long xref = (long) layout.head().length + contentHead.length + content.length + contentTail.length;
+        StringBuilder trailer = new StringBuilder("xref\n0 ").append(PAGE_CONTENT + 1).append("\n0000000000 65535 f\r\n");
+        for (int object = 1; object <= PAGE_CONTENT; object++) {
+            String offset = Long.toString(offsets[object]);
+            trailer.append("0".repeat(10 - offset.length())).append(offset).append(" 00000 n\r\n");
+        }
+        trailer.append("trailer\n<</Size ").append(PAGE_CONTENT + 1).append("/Root ").append(CATALOG).append(" 0 R>>\n")
+                .append("startxref\n").append(xref).append("\n%%EOF\n");
+        out.write(bytes(trailer.toString()));
+    }
+
+    private StaticLayout buildLayout(Variant variant) {
+        PDRectangle mediaBox = PDRectangle.A4;
+        byte[] formContent;
+        Map<COSName, Standard14Fonts.FontName> formFonts = new LinkedHashMap<>();
+        try (PDDocument document = new PDDocument()) {
+            PDPage page = new PDPage(mediaBox);
+            document.addPage(page);
+            Map<Standard14Fonts.FontName, PDFont> fonts = new EnumMap<>(Standard14Fonts.FontName.class);
+            for (Standard14Fonts.FontName fontName : FONTS) {
+                fonts.put(fontName, new PDType1Font(fontName));
+            }
+            try (PDPageContentStream contentStream = new PDPageContentStream(document, page, PDPageContentStream.AppendMode.OVERWRITE, true)) {
+                draw(new StaticPass(contentStream, fonts), mediaBox, variant, NO_VALUES);
+            }
+
+            COSStream contents = (COSStream) page.getCOSObject().getDictionaryObject(COSName.CONTENTS);
+            try (InputStream raw = contents.createRawInputStream()) {
+                formContent = raw.readAllBytes();
+            }
+            PDResources resources = page.getResources();
+            for (COSName name : resources.getFontNames()) {
+                String baseFont = resources.getFont(name).getName();
+                FONTS.stream()
+                        .filter(fontName -> fontName.getName().equals(baseFont))
+                        .findFirst()
+                        .ifPresent(fontName -> formFonts.put(name, fontName));
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException("Failed to build the payslip layout for " + variant, e);
+        }
+
+        String box = "[0 0 " + number(mediaBox.getWidth()) + " " + number(mediaBox.getHeight()) + "]";
+        StringBuilder formFontResources = new StringBuilder();
+        formFonts.forEach((name, fontName) -> formFontResources.append("/").append(name.getName()).append(" ").append(fontObject(fontName)).append(" 0 R"));
+        StringBuilder pageFontResources = new StringBuilder();
+        for (Standard14Fonts.FontName fontName : FONTS) {
+            pageFontResources.append(resourceName(fontName)).append(" ").append(fontObject(fontName)).append(" 0 R");
+        }
+
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        long[] offsets = new long[PAGE_CONTENT + 1];
+        write(out, "%PDF-1.4\n%\u00e2\u00e3\u00cf\u00d3\n");
+        offsets[CATALOG] = out.size();
+        write(out, CATALOG + " 0 obj\n<</Type/Catalog/Pages " + PAGES + " 0 R>>\nendobj\n");
+        offsets[PAGES] = out.size();
+        write(out, PAGES + " 0 obj\n<</Type/Pages/Kids[" + PAGE + " 0 R]/Count 1>>\nendobj\n");
+        offsets[PAGE] = out.size();
+        write(out, PAGE + " 0 obj\n<</Type/Page/Parent " + PAGES + " 0 R/MediaBox" + box
+                + "/Resources<</Font<<" + pageFontResources + ">>/XObject<</Fm1 " + FORM + " 0 R>>>>/Contents " + PAGE_CONTENT + " 0 R>>\nendobj\n");
+        offsets[FORM] = out.size();
+        write(out, FORM + " 0 obj\n<</Type/XObject/Subtype/Form/BBox" + box + "/Resources<</Font<<" + formFontResources
+                + ">>>>/Filter/FlateDecode/Length " + formContent.length + ">>\nstream\n");
+        out.writeBytes(formContent);
+        write(out, "\nendstream\nendobj\n");
+        for (Standard14Fonts.FontName fontName : FONTS) {
+            offsets[fontObject(fontName)] = out.size();
+            write(out, fontObject(fontName) + " 0 obj\n<</Type/Font/Subtype/Type1/BaseFont/" + fontName.getName()
+                    + "/Encoding/WinAnsiEncoding>>\nendobj\n");
+        }
+        return new StaticLayout(out.toByteArray(), offsets);
+    }
+
+    private static int fontObject(Standard14Fonts.FontName fontName) {
+        return FIRST_FONT + FONTS.indexOf(fontName);
+    }
+
+    private static String resourceName(Standard14Fonts.FontName fontName) {
+        return "/F" + (FONTS.indexOf(fontName) + 1);
+    }
+
+    // WinAnsiEncoding matches Latin-1 for the printable ASCII and 0xA0-0xFF ranges, so those bytes are written as is
+    private static boolean isLatin1(String text) {
+        for (int i = 0; i < text.length(); i++) {
+            char c = text.charAt(i);
+            if ((c < 0x20 || c > 0x7E) && (c < 0xA0 || c > 0xFF)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    // Coordinates, sizes and colour components are small enough that Float.toString never uses an exponent
+    private static String number(float value) {
+        return value == (int) value ? Integer.toString((int) value) : Float.toString(value);
+    }
+
+    private static void write(ByteArrayOutputStream out, String text) {
+        out.writeBytes(bytes(text));
+    }
+
+    private static byte[] bytes(String text) {
+        return text.getBytes(StandardCharsets.ISO_8859_1);
+    }
+
+    private static Values valuesOf(Employee employee, PaySlip payslip, Employment activeEmployment, int month, int year) {
+        NumberFormat currencyFormat = (NumberFormat) CURRENCY_FORMAT.clone();
+
+        YearMonth yearMonth = YearMonth.of(year, month);
+        BigDecimal additionalDeductions = payslip.getAdditionalDeductionsAmount();
+        String baseSalary = activeEmployment != null ? currencyFormat.format(activeEmployment.getBaseSalary()) : "N/A";
+        return new Values(
+                "Pay Period: " + yearMonth.atDay(1).format(PERIOD_FORMAT) + " to " + yearMonth.atEndOfMonth().format(PERIOD_FORMAT),
+                employee.getFirstName() + " " + employee.getLastName(),
+                employee.getCode(),
+                employee.getEmail(),
+                employee.getMobile() != null ? employee.getMobile() : "N/A",
+                activeEmployment != null ? activeEmployment.getDepartment() : null,
+                activeEmployment != null ? activeEmployment.getPosition() : null,
+                activeEmployment != null && activeEmployment.getJoiningDate() != null
+                        ? activeEmployment.getJoiningDate().format(JOINING_DATE_FORMAT) : "N/A",
+                baseSalary,
+                currencyFormat.format(payslip.getHouseAmount()),
+                currencyFormat.format(payslip.getTransportAmount()),
+                currencyFormat.format(payslip.getGrossSalary()),
+                currencyFormat.format(payslip.getEmployeeTaxedAmount()),
+                currencyFormat.format(payslip.getPensionAmount()),
+                currencyFormat.format(payslip.getMedicalInsuranceAmount()),
+                currencyFormat.format(payslip.getOtherTaxedAmount()),
+                additionalDeductions != null ? currencyFormat.format(additionalDeductions) : null,
+                currencyFormat.format(payslip.getGrossSalary().subtract(payslip.getNetSalary())),
+                currencyFormat.format(payslip.getNetSalary()),
+                "Status: " + payslip.getStatus().name(),
+                "Generated on: " + LocalDateTime.now().format(GENERATED_FORMAT));
+    }
+
+    /**
+     * Walks the layout once: the static pass draws everything but the values, the values pass only the values.
+     */
+    private static void draw(Pass pass, PDRectangle mediaBox, Variant variant, Values values) throws IOException {
+        Standard14Fonts.FontName bold = Standard14Fonts.FontName.HELVETICA_BOLD;
+        Standard14Fonts.FontName normal = Standard14Fonts.FontName.HELVETICA;
+        Standard14Fonts.FontName italic = Standard14Fonts.FontName.HELVETICA_OBLIQUE;
+
+        float pageWidth = mediaBox.getWidth();
+        float contentWidth = pageWidth - 2 * MARGIN;
+        float columnWidth = contentWidth / 2;
+        float leftColumnX = MARGIN;
+        float rightColumnX = MARGIN + columnWidth;
+        float amountX = pageWidth - MARGIN - 100;
+        float yPosition = mediaBox.getHeight() - MARGIN;
+
+        // ===== HEADER SECTION =====
+        pass.fillRect(PRIMARY_COLOR, MARGIN, yPosition - 30, contentWidth, 40);
+        pass.label(bold, 18, Color.WHITE, MARGIN + 10, yPosition - 20, "PAYSLIP");
+        pass.label(bold, 14, Color.WHITE, pageWidth - MARGIN - 200, yPosition - 20, "Government of Rwanda");
+        yPosition -= 50;
+
+        pass.value(bold, 12, SECONDARY_COLOR, MARGIN, yPosition, values.payPeriod());
+        yPosition -= LEADING * 1.5f;
+        pass.line(PRIMARY_COLOR, 1f, MARGIN, yPosition, pageWidth - MARGIN, yPosition);
+        yPosition -= LEADING;
+
+        // ===== EMPLOYEE INFORMATION SECTION =====
+        pass.label(bold, 14, PRIMARY_COLOR, MARGIN, yPosition, "Employee Information");
+        yPosition -= LEADING * 1.5f;
+
+        pass.label(bold, 11, SECONDARY_COLOR, leftColumnX, yPosition, "Employee Name:");
+        pass.value(normal, 11, SECONDARY_COLOR, leftColumnX + 120, yPosition, values.employeeName());
+        pass.label(bold, 11, SECONDARY_COLOR, rightColumnX, yPosition, "Employee ID:");
+        pass.value(normal, 11, SECONDARY_COLOR, rightColumnX + 100, yPosition, values.employeeCode());
+        yPosition -= LEADING;
+
+        pass.label(bold, 11, SECONDARY_COLOR, leftColumnX, yPosition, "Email:");
+        pass.value(normal, 11, SECONDARY_COLOR, leftColumnX + 120, yPosition, values.email());
+        pass.label(bold, 11, SECONDARY_COLOR, rightColumnX, yPosition, "Mobile:");
+        pass.value(normal, 11, SECONDARY_COLOR, rightColumnX + 100, yPosition, values.mobile());
+        yPosition -= LEADING * 1.5f;
+
+        if (variant.hasEmployment()) {
+            pass.label(bold, 12, PRIMARY_COLOR, MARGIN, yPosition, "Employment Details");
+            yPosition -= LEADING;
+
+            pass.label(bold, 11, SECONDARY_COLOR, leftColumnX, yPosition, "Department:");
+            pass.value(normal, 11, SECONDARY_COLOR, leftColumnX + 120, yPosition, values.department());
+            pass.label(bold, 11, SECONDARY_COLOR, rightColumnX, yPosition, "Position:");
+            pass.value(normal, 11, SECONDARY_COLOR, rightColumnX + 100, yPosition, values.position());
+            yPosition -= LEADING;
+
+            pass.label(bold, 11, SECONDARY_COLOR, leftColumnX, yPosition, "Joining Date:");
+            pass.value(normal, 11, SECONDARY_COLOR, leftColumnX + 120, yPosition, values.joiningDate());
+            pass.label(bold, 11, SECONDARY_COLOR, rightColumnX, yPosition, "Base Salary:");
+            pass.value(normal, 11, SECONDARY_COLOR, rightColumnX + 100, yPosition, values.baseSalary());
+            yPosition -= LEADING * 1.5f;
+        }
+
+        pass.line(PRIMARY_COLOR, 1f, MARGIN, yPosition, pageWidth - MARGIN, yPosition);
+        yPosition -= LEADING * 1.5f;
+
+        // ===== EARNINGS SECTION =====
+        pass.label(bold, 14, PRIMARY_COLOR, MARGIN, yPosition, "Earnings");
+        yPosition -= LEADING;
+        yPosition = tableHeader(pass, bold, contentWidth, amountX, yPosition);
+
+        pass.label(normal, 10, SECONDARY_COLOR, MARGIN + 10, yPosition, "Base Salary");
+        pass.value(normal, 10, SECONDARY_COLOR, amountX, yPosition, values.baseSalary());
+        yPosition -= LEADING;
+        pass.label(normal, 10, SECONDARY_COLOR, MARGIN + 10, yPosition, "Housing Allowance");
+        pass.value(normal, 10, SECONDARY_COLOR, amountX, yPosition, values.houseAmount());
+        yPosition -= LEADING;
+        pass.label(normal, 10, SECONDARY_COLOR, MARGIN + 10, yPosition, "Transport Allowance");
+        pass.value(normal, 10, SECONDARY_COLOR, amountX, yPosition, values.transportAmount());
+        yPosition -= LEADING;
+
+        pass.line(SECONDARY_COLOR, 0.5f, MARGIN, yPosition - 5, pageWidth - MARGIN, yPosition - 5);
+        yPosition -= 20;
+        pass.label(bold, 11, HIGHLIGHT_COLOR, MARGIN + 10, yPosition, "Total Earnings");
+        pass.value(bold, 11, HIGHLIGHT_COLOR, amountX, yPosition, values.grossSalary());
+        yPosition -= LEADING * 2;
+
+        // ===== DEDUCTIONS SECTION =====
+        pass.label(bold, 14, PRIMARY_COLOR, MARGIN, yPosition, "Deductions");
+        yPosition -= LEADING;
+        yPosition = tableHeader(pass, bold, contentWidth, amountX, yPosition);
+
+        pass.label(normal, 10, SECONDARY_COLOR, MARGIN + 10, yPosition, "Employee Tax");
+        pass.value(normal, 10, SECONDARY_COLOR, amountX, yPosition, values.employeeTax());
+        yPosition -= LEADING;
+        pass.label(normal, 10, SECONDARY_COLOR, MARGIN + 10, yPosition, "Pension");
+        pass.value(normal, 10, SECONDARY_COLOR, amountX, yPosition, values.pension());
+        yPosition -= LEADING;
+        pass.label(normal, 10, SECONDARY_COLOR, MARGIN + 10, yPosition, "Medical Insurance");
+        pass.value(normal, 10, SECONDARY_COLOR, amountX, yPosition, values.medicalInsurance());
+        yPosition -= LEADING;
+        pass.label(normal, 10, SECONDARY_COLOR, MARGIN + 10, yPosition, "Other Deductions");
+        pass.value(normal, 10, SECONDARY_COLOR, amountX, yPosition, values.otherDeductions());
+        yPosition -= LEADING;
+        if (variant.hasAdditionalDeductions()) {
+            pass.label(normal, 10, SECONDARY_COLOR, MARGIN + 10, yPosition, "Additional Deductions");
+            pass.value(normal, 10, SECONDARY_COLOR, amountX, yPosition, values.additionalDeductions());
+            yPosition -= LEADING;
+        }
+
+        pass.line(SECONDARY_COLOR, 0.5f, MARGIN, yPosition - 5, pageWidth - MARGIN, yPosition - 5);
+        yPosition -= 20;
+        pass.label(bold, 11, WARNING_COLOR, MARGIN + 10, yPosition, "Total Deductions");
+        pass.value(bold, 11, WARNING_COLOR, amountX, yPosition, values.totalDeductions());
+        yPosition -= LEADING * 2;
+
+        // ===== SUMMARY SECTION =====
+        pass.fillRect(new Color(240, 240, 240), MARGIN, yPosition - 80, contentWidth, 80);
+        pass.label(bold, 14, PRIMARY_COLOR, MARGIN + 10, yPosition - 20, "Payment Summary");
+        yPosition -= 40;
+
+        pass.label(normal, 11, SECONDARY_COLOR, MARGIN + 20, yPosition, "Gross Salary:");
+        pass.value(normal, 11, SECONDARY_COLOR, MARGIN + 150, yPosition, values.grossSalary());
+        yPosition -= LEADING;
+        pass.label(normal, 11, SECONDARY_COLOR, MARGIN + 20, yPosition, "Total Deductions:");
+        pass.value(normal, 11, SECONDARY_COLOR, MARGIN + 150, yPosition, values.totalDeductions());
+        yPosition -= LEADING;
+        pass.label(bold, 12, HIGHLIGHT_COLOR, MARGIN + 20, yPosition, "Net Salary:");
+        pass.value(bold, 12, HIGHLIGHT_COLOR, MARGIN + 150, yPosition, values.netSalary());
+        yPosition -= 50;
+
+        // ===== PAYMENT STATUS =====
+        pass.fillRect(variant.paid() ? new Color(230, 255, 230) : new Color(255, 230, 230), MARGIN, yPosition - 30, contentWidth, 30);
+        pass.value(bold, 12, variant.paid() ? new Color(0, 120, 0) : new Color(180, 0, 0),
+                MARGIN + contentWidth / 2 - 50, yPosition - 20, values.status());
+        yPosition -= 50;
+
+        // ===== FOOTER =====
+        pass.line(PRIMARY_COLOR, 1f, MARGIN, yPosition, pageWidth - MARGIN, yPosition);
+        yPosition -= 20;
+        pass.value(normal, 9, SECONDARY_COLOR, MARGIN, yPosition, values.generatedOn());
+        pass.label(italic, 9, SECONDARY_COLOR, MARGIN, yPosition - 15,
+                "This is an electronic payslip and does not require a signature. For any queries, please contact HR department.");
+    }
+
+    private static float tableHeader(Pass pass, Standard14Fonts.FontName bold, float contentWidth, float amountX, float yPosition) throws IOException {
+        pass.fillRect(PRIMARY_COLOR.brighter(), MARGIN, yPosition - 15, contentWidth, 20);
+        pass.label(bold, 11, Color.WHITE, MARGIN + 10, yPosition - 10, "Description");
+        pass.label(bold, 11, Color.WHITE, amountX, yPosition - 10, "Amount (RWF)");
+        return yPosition - 25;
+    }
+
+    /**
+     * One pass over the layout: the static pass draws everything but the values, the values pass only the values.
+     */
+    private interface Pass {
+
+        void label(Standard14Fonts.FontName font, float size, Color color, float x, float y, String text) throws IOException;
+
+        void value(Standard14Fonts.FontName font, float size, Color color, float x, float y, String text) throws IOException;
+
+        void fillRect(Color color, float x, float y, float width, float height) throws IOException;
+
+        void line(Color color, float width, float fromX, float fromY, float toX, float toY) throws IOException;
+    }
+
+    private record StaticPass(PDPageContentStream contentStream, Map<Standard14Fonts.FontName, PDFont> fonts) implements Pass {
+
+        @Override
+        public void label(Standard14Fonts.FontName font, float size, Color color, float x, float y, String text) throws IOException {
+            contentStream.beginText();
+            contentStream.setNonStrokingColor(color);
+            contentStream.setFont(fonts.get(font), size);
+            contentStream.newLineAtOffset(x, y);
+            contentStream.showText(text);
+            contentStream.endText();
+        }
+
+        @Override
+        public void value(Standard14Fonts.FontName font, float size, Color color, float x, float y, String text) {
+        }
+
+        @Override
+        public void fillRect(Color color, float x, float y, float width, float height) throws IOException {
+            contentStream.setNonStrokingColor(color);
+            contentStream.addRect(x, y, width, height);
+            contentStream.fill();
+        }
+
+        @Override
+        public void line(Color color, float width, float fromX, float fromY, float toX, float toY) throws IOException {
+            contentStream.setStrokingColor(color);
+            contentStream.setLineWidth(width);
+            contentStream.moveTo(fromX, fromY);
+            contentStream.lineTo(toX, toY);
+            contentStream.stroke();
+        }
+    }
+
+    // Writes the content stream operators directly; the values are plain Latin-1 strings in Standard 14 fonts
+    private static class ValuesPass implements Pass {
+
+        private final StringBuilder content = new StringBuilder(2048);
+
+        @Override
+        public void label(Standard14Fonts.FontName font, float size, Color color, float x, float y, String text) {
+        }
+
+        @Override
+        public void value(Standard14Fonts.FontName font, float size, Color color, float x, float y, String text) {
+            content.append("BT\n")
+                    .append(number(color.getRed() / 255f)).append(' ')
+                    .append(number(color.getGreen() / 255f)).append(' ')
+                    .append(number(color.getBlue() / 255f)).append(" rg\n")
+                    .append(resourceName(font)).append(' ').append(number(size)).append(" Tf\n")
+                    .append(number(x)).append(' ').append(number(y)).append(" Td\n(");
+            for (int i = 0; i < text.length(); i++) {
+                char c = text.charAt(i);
+                if (c == '(' || c == ')' || c == '\\') {
+                    content.append('\\');
+                }
+                content.append(c);
+            }
+            content.append(") Tj\nET\n");
+        }
+
+        @Override
+        public void fillRect(Color color, float x, float y, float width, float height) {
+        }
+
+        @Override
+        public void line(Color color, float width, float fromX, float fromY, float toX, float toY) {
+        }
+    }
+}
@@ -0,0 +1,236 @@
+package com.erp.erp.utils;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.BufferedOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.stream.Stream;
+
+/**
+ * Content-addressed cache of generated PDFs in one directory on local disk. An entry is keyed by the id of what
+ * it renders and a version of the rendered content, so a changed document gets a new key and is never served
+ * stale; storing it deletes the previous version of the same id. Concurrent misses for one key render once
+ * (single-flight), and the least recently used files are deleted once the directory grows past maxBytes.
+ * Entries are read as {@link FileChannel}s, so they can be sent with {@link #transferTo(FileChannel, OutputStream)}
+ * in small chunks instead of being read into memory whole, and a file evicted while it is being sent stays readable
+ * until it is closed.
+ * Files left by a previous run are indexed at startup, oldest first.
+ */
+public class PdfFileCache {
+
+    private static final Logger logger = LoggerFactory.getLogger(PdfFileCache.class);
+
+    private static final String SUFFIX = ".pdf";
+
+    private final Path directory;
+    private final long maxBytes;
+
+    // Key to file size, in access order; guarded by itself, like totalBytes and keysById
+    private final LinkedHashMap<String, Long> entries = new LinkedHashMap<>(16, 0.75f, true);
+    private final Map<String, String> keysById = new HashMap<>();
+    private long totalBytes;
+
+    private final ConcurrentHashMap<String, CompletableFuture<Path>> inFlight = new ConcurrentHashMap<>();
+
+    /**
+     * Writes a PDF that is not cached yet.
+     */
+    @FunctionalInterface
+    public interface Renderer {
+        void render(OutputStream out) throws IOException;
+    }
+
+    public PdfFileCache(Path directory, long maxBytes) {
+        this.directory = directory;
+        this.maxBytes = maxBytes;
+        try {
+            Files.createDirectories(directory);
+            List<Path> files;
+            try (Stream<Path> listing = Files.list(directory)) {
+                files = listing.filter(file -> file.getFileName().toString().endsWith(SUFFIX)
+                        && file.getFileName().toString().contains("-")).toList();
+            }
+            Map<Path, BasicFileAttributes> attributes = new HashMap<>();
+            for (Path file : files) {
+                attributes.put(file, Files.readAttributes(file, BasicFileAttributes.class));
+            }
+            files.stream()
+                    .sorted(Comparator.comparing(file -> attributes.get(file).lastModifiedTime()))
+                    .forEach(file -> {
+                        String name = file.getFileName().toString();
+                        admit(name.substring(0, name.length() - SUFFIX.length()), attributes.get(file).size());
+                    });
+        } catch (IOException e) {
+            throw new UncheckedIOException("Cannot use PDF cache directory " + directory, e);
+        }
+        logger.info("PDF cache in {}: {} files, {} bytes of {}", directory, entries.size(), totalBytes, maxBytes);
+    }
+
+    /**
+     * Opens the cached PDF of an id and version, rendering and storing it first on a miss.
+     *
+     * @param id what the PDF renders, e.g. a payslip id; only the latest version of an id is kept
+     * @param version the version of the rendered content, e.g. a hash of it; letters and digits only
+     * @param renderer writes the PDF on a miss, straight into the cache file
+     * @return the PDF, open for reading; the caller closes it
+     */
+    public FileChannel open(String id, String version, Renderer renderer) throws IOException {
+        try {
+            return FileChannel.open(resolve(id, version, renderer), StandardOpenOption.READ);
+        } catch (NoSuchFileException e) {
+            // Evicted between being resolved and opened; resolving it again renders it anew
+            return FileChannel.open(resolve(id, version, renderer), StandardOpenOption.READ);
+        }
+    }
+
+    /**
+     * Finds the cached PDF of an id and version, rendering and storing it first on a miss, without opening it.
+     * The file can be evicted before the caller opens it, in which case opening fails with
+     * {@link NoSuchFileException}; {@link #open} retries that itself.
+     *
+     * @return the cache file of the PDF
+     * @see #open(String, String, Renderer)
+     */
+    public Path resolve(String id, String version, Renderer renderer) throws IOException {
+        String key = id + "-" + version;
+        Path file = directory.resolve(key + SUFFIX);
+        if (touch(key)) {
+            if (Files.exists(file)) {
+                return file;
+            }
+            // Deleted behind the cache's back; render it again
+            remove(key);
+        }
+
+        CompletableFuture<Path> stored = new CompletableFuture<>();
+        CompletableFuture<Path> pending = inFlight.putIfAbsent(key, stored);
+        if (pending == null) {
+            try {
+                store(key, file, renderer);
+                stored.complete(file);
+            } catch (IOException | RuntimeException e) {
+                stored.completeExceptionally(e);
+                throw e;
+            } finally {
+                inFlight.remove(key, stored);
+            }
+        } else {
+            try {
+                pending.join();
+            } catch (CompletionException e) {
+                if (e.getCause() instanceof IOException cause) {
+                    throw cause;
+                }
+                throw e.getCause() instanceof RuntimeException cause ? cause : e;
+            }
+            // Stored by another request; looked up again in case it was evicted in the meantime
+            return resolve(id, version, renderer);
+        }
+        return file;
+    }
+
+    /**
+     * Sends a file to an output stream with {@link FileChannel#transferTo}. The stream is wrapped with
+     * {@link Channels#newChannel}, which is not a socket or file channel, so this is not a zero-copy transfer: the
+     * file goes through a small buffer a chunk at a time. What it saves is reading the whole file into memory.
+     */
+    public static void transferTo(FileChannel file, OutputStream out) throws IOException {
+        WritableByteChannel target = Channels.newChannel(out);
+        long position = 0;
+        long size = file.size();
+        while (position < size) {
+            position += file.transferTo(position, size - position, target);
+        }
+        out.flush();
+    }
+
+    private void store(String key, Path file, Renderer renderer) throws IOException {
+        // Written under a temporary name and renamed, so readers never see a partial file
+        Path temporary = Files.createTempFile(directory, key, ".tmp");
+        long size;
+        try {
+            try (OutputStream out = new BufferedOutputStream(Files.newOutputStream(temporary))) {
+                renderer.render(out);
+            }
+            size = Files.size(temporary);
+            Files.move(temporary, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } finally {
+            Files.deleteIfExists(temporary);
+        }
+        admit(key, size);
+    }
+
+    private boolean touch(String key) {
+        synchronized (entries) {
+            return entries.get(key) != null;
+        }
+    }
+
+    // Adds an entry, replacing the previous version of its id, and evicts the least recently used ones until the
+    // cache fits in maxBytes again
+    private void admit(String key, long size) {
+        synchronized (entries) {
+            Long previous = entries.put(key, size);
+            totalBytes += size - (previous != null ? previous : 0);
+            String previousVersion = keysById.put(idOf(key), key);
+            if (previousVersion != null && !previousVersion.equals(key)) {
+                remove(previousVersion);
+            }
+            Iterator<Map.Entry<String, Long>> eldest = entries.entrySet().iterator();
+            while (totalBytes > maxBytes && eldest.hasNext()) {
+                Map.Entry<String, Long> entry = eldest.next();
+                if (entry.getKey().equals(key)) {
+                    break;
+                }
+                eldest.remove();
+                totalBytes -= entry.getValue();
+                keysById.remove(idOf(entry.getKey()), entry.getKey());
+                deleteFile(entry.getKey());
+            }
+        }
+    }
+
+    private void remove(String key) {
+        synchronized (entries) {
+            Long size = entries.remove(key);
+            if (size != null) {
+                totalBytes -= size;
+            }
+            keysById.remove(idOf(key), key);
+        }
+        deleteFile(key);
+    }
+
+    private static String idOf(String key) {
+        return key.substring(0, key.lastIndexOf('-'));
+    }
+
+    private void deleteFile(String key) {
+        try {
+            Files.deleteIfExists(directory.resolve(key + SUFFIX));
+        } catch (IOException e) {
+            logger.warn("Could not delete cached PDF {}: {}", key, e.getMessage());
+        }
+    }
+}
@@ -0,0 +1,42 @@
+package com.erp.erp.utils;
+
+/**
+ * Counts events in one-second buckets over a sliding window, for a cheap events-per-second reading.
+ */
+public class ThroughputMeter {
+
+    private final int windowSeconds;
+    private final long[] bucketSeconds;
+    private final long[] bucketCounts;
+
+    public ThroughputMeter(int windowSeconds) {
+        this.windowSeconds = windowSeconds;
+        this.bucketSeconds = new long[windowSeconds];
+        this.bucketCounts = new long[windowSeconds];
+    }
+
+    public synchronized void record() {
+        long second = System.currentTimeMillis() / 1000;
+        int bucket = (int) (second % windowSeconds);
+        if (bucketSeconds[bucket] != second) {
+            bucketSeconds[bucket] = second;
+            bucketCounts[bucket] = 0;
+        }
+        bucketCounts[bucket]++;
+    }
+
+    /**
+     * @return the average events per second over the window, excluding the current, incomplete second
+     */
+    public synchronized double getRatePerSecond() {
+        long currentSecond = System.currentTimeMillis() / 1000;
+        long total = 0;
+        for (int bucket = 0; bucket < windowSeconds; bucket++) {
+            long age = currentSecond - bucketSeconds[bucket];
+            if (age >= 1 && age <= windowSeconds) {
+                total += bucketCounts[bucket];
+            }
+        }
+        return (double) total / windowSeconds;
+    }
+}
@@ -0,0 +1,127 @@
+package com.erp.erp;
+
+import org.junit.jupiter.api.Assumptions;
+import org.junit.jupiter.api.BeforeAll;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.context.DynamicPropertyRegistry;
+import org.springframework.test.context.DynamicPropertySource;
+import org.testcontainers.DockerClientFactory;
+import org.testcontainers.containers.PostgreSQLContainer;
+
+import java.math.BigDecimal;
+import java.sql.Date;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Base of the tests that need PostgreSQL. The application runs against the database in ERP_TEST_DATABASE_URL
+ * (with ERP_TEST_DATABASE_USERNAME and ERP_TEST_DATABASE_PASSWORD) when it is set, and otherwise against a
+ * Testcontainers PostgreSQL started once per JVM; without either, the tests are skipped.
+ * Hibernate creates the schema (ddl-auto=update). Tests share the database, so each one works on its own
+ * employee-code prefix and payroll months and cleans them up itself.
+ */
+@SpringBootTest
+@ActiveProfiles("test")
+public abstract class PostgresIntegrationTest {
+
+    private static Map<String, String> databaseProperties;
+
+    @Autowired
+    protected JdbcTemplate jdbcTemplate;
+
+    @BeforeAll
+    static void requireDatabase() {
+        Assumptions.assumeTrue(databaseProperties() != null,
+                "Set ERP_TEST_DATABASE_URL or make Docker available to run the PostgreSQL tests");
+    }
+
+    @DynamicPropertySource
+    static void datasource(DynamicPropertyRegistry registry) {
+        Map<String, String> properties = databaseProperties();
+        if (properties != null) {
+            properties.forEach((name, value) -> registry.add(name, () -> value));
+        }
+    }
+
+    /**
+     * @return the datasource properties of the test database, or null if there is none
+     */
+    protected static synchronized Map<String, String> databaseProperties() {
+        if (databaseProperties == null) {
+            String url = System.getenv("ERP_TEST_DATABASE_URL");
+            Map<String, String> properties = new LinkedHashMap<>();
+            if (url != null && !url.isBlank()) {
+                properties.put("spring.datasource.url", url);
+                properties.put("spring.datasource.username", System.getenv().getOrDefault("ERP_TEST_DATABASE_USERNAME", "postgres"));
+                properties.put("spring.datasource.password", System.getenv().getOrDefault("ERP_TEST_DATABASE_PASSWORD", ""));
+            } else if (DockerClientFactory.instance().isDockerAvailable()) {
+                // Stopped by Testcontainers when the JVM exits
+                PostgreSQLContainer<?> container = new PostgreSQLContainer<>("postgres:16-alpine");
+                container.start();
+                properties.put("spring.datasource.url", container.getJdbcUrl());
+                properties.put("spring.datasource.username", container.getUsername());
+                properties.put("spring.datasource.password", container.getPassword());
+            } else {
+                return null;
+            }
+            databaseProperties = properties;
+        }
+        return databaseProperties;
+    }
+
+    /**
+     * Inserts active employees with an active employment each, coded prefix00000, prefix00001, ... in salary order.
+     */
+    protected void insertRoster(String prefix, List<BigDecimal> baseSalaries) {
+        List<String> codes = new ArrayList<>();
+        for (int i = 0; i < baseSalaries.size(); i++) {
+            codes.add(String.format("%s%05d", prefix, i));
+        }
+        insertRoster(codes, baseSalaries);
+    }
+
+    /**
+     * Inserts active employees with the given codes, with an active employment each.
+     */
+    protected void insertRoster(List<String> codes, List<BigDecimal> baseSalaries) {
+        List<Object[]> employees = new ArrayList<>();
+        List<Object[]> employments = new ArrayList<>();
+        Date joiningDate = Date.valueOf(LocalDate.of(2020, 1, 1));
+        for (int i = 0; i < codes.size(); i++) {
+            String code = codes.get(i);
+            employees.add(new Object[] {code, "First" + i, "Last" + i, code.toLowerCase() + "@test.erp", "ACTIVE"});
+            employments.add(new Object[] {"EML-" + code, code, "Engineering", "Engineer", baseSalaries.get(i), "ACTIVE", joiningDate});
+        }
+        jdbcTemplate.batchUpdate("INSERT INTO employees (code, first_name, last_name, email, status) VALUES (?, ?, ?, ?, ?)", employees);
+        jdbcTemplate.batchUpdate("INSERT INTO employments (code, employee_code, department, position, base_salary, status, joining_date) "
+                + "VALUES (?, ?, ?, ?, ?, ?, ?)", employments);
+    }
+
+    /**
+     * Deletes the employees of a prefix with their employments, payslips and messages.
+     */
+    protected void deleteRoster(String prefix) {
+        String pattern = prefix + "%";
+        jdbcTemplate.update("DELETE FROM messages WHERE employee_code LIKE ?", pattern);
+        jdbcTemplate.update("DELETE FROM payslips WHERE employee_code LIKE ?", pattern);
+        jdbcTemplate.update("DELETE FROM employments WHERE employee_code LIKE ?", pattern);
+        jdbcTemplate.update("DELETE FROM employees WHERE code LIKE ?", pattern);
+    }
+
+    /**
+     * Deletes every payslip, message and payroll run of a month, so it can be generated from scratch.
+     */
+    protected void deletePayroll(int month, int year) {
+        jdbcTemplate.update("DELETE FROM messages WHERE month = ? AND year = ?", month, year);
+        jdbcTemplate.update("DELETE FROM payslips WHERE month = ? AND year = ?", month, year);
+        jdbcTemplate.update("DELETE FROM payroll_run_partitions WHERE run_id IN (SELECT id FROM payroll_runs WHERE month = ? AND year = ?)",
+                month, year);
+        jdbcTemplate.update("DELETE FROM payroll_runs WHERE month = ? AND year = ?", month, year);
+    }
+}
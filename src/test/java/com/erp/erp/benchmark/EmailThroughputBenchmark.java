@@ -0,0 +1,195 @@
+package com.erp.erp.benchmark;
+
+import com.erp.erp.dto.response.EmailDispatcherStatsDTO;
+import com.erp.erp.entity.Employee;
+import com.erp.erp.entity.Employment;
+import com.erp.erp.enums.EmployeeStatus;
+import com.erp.erp.enums.EmploymentStatus;
+import com.erp.erp.enums.MessageSentStatus;
+import com.erp.erp.repository.EmployeeRepository;
+import com.erp.erp.repository.MessageRepository;
+import com.erp.erp.repository.PayslipRepository;
+import com.erp.erp.services.PayRollService;
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.PersistenceContext;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.SpringApplication;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.ApplicationContext;
+import org.springframework.context.annotation.Profile;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * End-to-end payslip email throughput benchmark, run once the application is ready with the mail-benchmark profile
+ * (application-mail-benchmark.properties), which points the mailer at {@link SmtpStandIn} instead of the real relay.
+ * Run it against a scratch database: it seeds app.benchmark.employees employees, generates the payroll of every
+ * active employee for app.benchmark.month/year and then times three phases: approvePayroll until the outbox has no
+ * UNSENT or PROCESSING message left, processAndSendSalaryNotifications for the period, and
+ * processUnsentAndFailedEmails. Each phase logs messages per second, p50/p99 SMTP transaction latency and
+ * p50/p99/max database connection hold time. It lives in the test sources with its stand-ins, so it is never
+ * packaged; run the application on the test classpath:
+ * <pre>
+ * ./mvnw spring-boot:test-run -Dspring-boot.run.main-class=com.erp.erp.ErpApplication -Dspring-boot.run.profiles=mail-benchmark
+ * </pre>
+ */
+@Component
+@Profile("mail-benchmark")
+public class EmailThroughputBenchmark {
+
+    private static final Logger logger = LoggerFactory.getLogger(EmailThroughputBenchmark.class);
+
+    private static final String EMPLOYEE_CODE_PREFIX = "BENCH";
+
+    @Autowired
+    private PayRollService payRollService;
+
+    @Autowired
+    private EmployeeRepository employeeRepository;
+
+    @Autowired
+    private PayslipRepository payslipRepository;
+
+    @Autowired
+    private MessageRepository messageRepository;
+
+    @Autowired
+    private SmtpStandIn smtpStandIn;
+
+    @Autowired
+    private ConnectionHoldTimer connectionHoldTimer;
+
+    @Autowired
+    private TransactionTemplate transactionTemplate;
+
+    @Autowired
+    private ApplicationContext applicationContext;
+
+    @PersistenceContext
+    private EntityManager entityManager;
+
+    @Value("${app.benchmark.employees:1000}")
+    private int employeeCount;
+
+    @Value("${app.benchmark.month:1}")
+    private int month;
+
+    @Value("${app.benchmark.year:2000}")
+    private int year;
+
+    @Value("${app.benchmark.timeoutSeconds:600}")
+    private long timeoutSeconds;
+
+    @Value("${app.benchmark.exitOnFinish:true}")
+    private boolean exitOnFinish;
+
+    @Value("${app.payroll.batchSize:500}")
+    private int batchSize;
+
+    // After the Seeder and every other runner, so the deductions exist
+    @EventListener(ApplicationReadyEvent.class)
+    public void run() {
+        if (payslipRepository.countByMonthAndYear(month, year) > 0) {
+            logger.error("Payslips for {}/{} already exist; set app.benchmark.month/year to an empty period of a scratch database", month, year);
+        } else {
+            seedEmployees();
+            payRollService.generatePayroll(month, year);
+            logger.info("Benchmark payroll generated for {}/{}", month, year);
+
+            runPhase("approvePayroll", () -> {
+                payRollService.approvePayroll(month, year);
+                awaitOutboxDrained();
+            });
+            runPhase("processAndSendSalaryNotifications", () -> payRollService.processAndSendSalaryNotifications(month, year));
+            runPhase("processUnsentAndFailedEmails", () -> payRollService.processUnsentAndFailedEmails());
+
+            EmailDispatcherStatsDTO stats = payRollService.getEmailDispatcherStats();
+            logger.info("Benchmark finished: {} SMTP connections, dispatcher concurrency limit {}, {} waiting for retry, {} dead letters",
+                    smtpStandIn.getConnections(), stats.getConcurrencyLimit(), stats.getRetryWaiting(), stats.getDeadLetters());
+        }
+        if (exitOnFinish) {
+            System.exit(SpringApplication.exit(applicationContext, () -> 0));
+        }
+    }
+
+    private void seedEmployees() {
+        List<String> codes = new ArrayList<>(employeeCount);
+        for (int i = 1; i <= employeeCount; i++) {
+            codes.add(String.format("%s%06d", EMPLOYEE_CODE_PREFIX, i));
+        }
+        Set<String> existing = new HashSet<>();
+        employeeRepository.findAllById(codes).forEach(employee -> existing.add(employee.getCode()));
+
+        List<String> missing = codes.stream().filter(code -> !existing.contains(code)).toList();
+        for (int from = 0; from < missing.size(); from += batchSize) {
+            List<String> chunk = missing.subList(from, Math.min(missing.size(), from + batchSize));
+            transactionTemplate.executeWithoutResult(status -> {
+                for (String code : chunk) {
+                    Employee employee = new Employee(code, "Bench", code, code.toLowerCase() + "@benchmark.example.com",
+                            null, null, LocalDate.of(1990, 1, 1), EmployeeStatus.ACTIVE);
+                    entityManager.persist(employee);
+                    entityManager.persist(new Employment("EML-" + code, employee, "Benchmark", "Engineer",
+                            new BigDecimal("500000.00"), EmploymentStatus.ACTIVE, LocalDate.of(2020, 1, 1)));
+                }
+            });
+        }
+        logger.info("Benchmark employees: {} existing, {} seeded", existing.size(), missing.size());
+    }
+
+    private void runPhase(String name, Runnable phase) {
+        long acceptedBefore = smtpStandIn.getAccepted();
+        long rejectedBefore = smtpStandIn.getRejected();
+        smtpStandIn.getTransactionLatency().reset();
+        connectionHoldTimer.getHoldTimes().reset();
+        long startedAt = System.nanoTime();
+
+        phase.run();
+
+        double seconds = (System.nanoTime() - startedAt) / 1e9;
+        long accepted = smtpStandIn.getAccepted() - acceptedBefore;
+        long rejected = smtpStandIn.getRejected() - rejectedBefore;
+        logger.info("{}: {} sent and {} rejected in {} s, {} messages/s; SMTP transaction p50 {} ms, p99 {} ms; "
+                        + "DB connection hold p50 {} ms, p99 {} ms, max {} ms over {} checkouts",
+                name, accepted, rejected, String.format("%.2f", seconds), String.format("%.1f", accepted / Math.max(seconds, 1e-9)),
+                millis(smtpStandIn.getTransactionLatency().getPercentileNanos(50)),
+                millis(smtpStandIn.getTransactionLatency().getPercentileNanos(99)),
+                millis(connectionHoldTimer.getHoldTimes().getPercentileNanos(50)),
+                millis(connectionHoldTimer.getHoldTimes().getPercentileNanos(99)),
+                millis(connectionHoldTimer.getHoldTimes().getMaxNanos()),
+                connectionHoldTimer.getHoldTimes().getCount());
+    }
+
+    // Approval only wakes the dispatcher, so its phase lasts until the dispatcher has taken every message
+    private void awaitOutboxDrained() {
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(timeoutSeconds);
+        while (messageRepository.countByEmailSentStatus(MessageSentStatus.UNSENT) > 0
+                || messageRepository.countByEmailSentStatus(MessageSentStatus.PROCESSING) > 0) {
+            if (System.nanoTime() > deadline) {
+                logger.warn("Outbox not drained after {} s", timeoutSeconds);
+                return;
+            }
+            try {
+                Thread.sleep(100);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            }
+        }
+    }
+
+    private static String millis(long nanos) {
+        return String.format("%.1f", nanos / 1e6);
+    }
+}
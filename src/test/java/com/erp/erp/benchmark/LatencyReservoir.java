@@ -0,0 +1,60 @@
+package com.erp.erp.benchmark;
+
+import java.util.Arrays;
+
+/**
+ * Keeps the latest latency samples in a fixed ring, for percentiles over recent activity without an unbounded
+ * list. The count and maximum cover every sample since the last reset, not only those still in the ring.
+ */
+public class LatencyReservoir {
+
+    private final long[] samples;
+    private int next;
+    private int size;
+    private long count;
+    private long maxNanos;
+
+    public LatencyReservoir(int capacity) {
+        this.samples = new long[capacity];
+    }
+
+    public synchronized void record(long nanos) {
+        samples[next] = nanos;
+        next = (next + 1) % samples.length;
+        size = Math.min(size + 1, samples.length);
+        count++;
+        maxNanos = Math.max(maxNanos, nanos);
+    }
+
+    public synchronized long getCount() {
+        return count;
+    }
+
+    public synchronized long getMaxNanos() {
+        return maxNanos;
+    }
+
+    /**
+     * @param percentile between 0 and 100
+     * @return the nearest-rank percentile of the samples in the ring, or 0 if there are none
+     */
+    public long getPercentileNanos(double percentile) {
+        long[] sorted;
+        synchronized (this) {
+            sorted = Arrays.copyOf(samples, size);
+        }
+        if (sorted.length == 0) {
+            return 0;
+        }
+        Arrays.sort(sorted);
+        int rank = (int) Math.ceil(percentile / 100 * sorted.length);
+        return sorted[Math.max(0, Math.min(sorted.length, rank) - 1)];
+    }
+
+    public synchronized void reset() {
+        next = 0;
+        size = 0;
+        count = 0;
+        maxNanos = 0;
+    }
+}
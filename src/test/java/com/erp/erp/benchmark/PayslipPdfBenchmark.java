@@ -0,0 +1,140 @@
+package com.erp.erp.benchmark;
+
+import com.erp.erp.entity.Employee;
+import com.erp.erp.entity.Employment;
+import com.erp.erp.entity.PaySlip;
+import com.erp.erp.enums.EmployeeStatus;
+import com.erp.erp.enums.EmploymentStatus;
+import com.erp.erp.enums.PayslipStatus;
+import com.erp.erp.services.PayslipPdfService;
+import com.erp.erp.utils.PayslipPdfTemplate;
+import org.apache.pdfbox.Loader;
+import org.apache.pdfbox.pdmodel.PDDocument;
+import org.apache.pdfbox.rendering.PDFRenderer;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.awt.image.BufferedImage;
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.math.BigDecimal;
+import java.time.LocalDate;
+
+/**
+ * Compares the per-PDF CPU time and allocation of the template payslip renderer ({@link PayslipPdfTemplate})
+ * with the legacy one that draws the whole layout for every payslip. Needs no database or Spring context, and
+ * runs from the test classes after {@code ./mvnw test-compile}:
+ * <pre>
+ * java -cp target/test-classes:target/classes:<test classpath> com.erp.erp.benchmark.PayslipPdfBenchmark [iterations]
+ * </pre>
+ * Before timing it rasterizes both renderers' PDF of every layout variant and reports how many pixels differ,
+ * which should be none.
+ */
+public class PayslipPdfBenchmark {
+
+    private static final Logger logger = LoggerFactory.getLogger(PayslipPdfBenchmark.class);
+
+    public static void main(String[] args) throws IOException {
+        int iterations = args.length > 0 ? Integer.parseInt(args[0]) : 2000;
+
+        Employee employee = new Employee("EMP001", "Jane", "Doe", "jane.doe@example.com", null, "0788000000",
+                LocalDate.of(1990, 1, 1), EmployeeStatus.ACTIVE);
+        Employment employment = new Employment("EML001", employee, "Finance", "Accountant",
+                new BigDecimal("700000.00"), EmploymentStatus.ACTIVE, LocalDate.of(2020, 3, 1));
+        PaySlip payslip = new PaySlip();
+        payslip.setEmployee(employee);
+        payslip.setHouseAmount(new BigDecimal("98000.00"));
+        payslip.setTransportAmount(new BigDecimal("98000.00"));
+        payslip.setEmployeeTaxedAmount(new BigDecimal("210000.00"));
+        payslip.setPensionAmount(new BigDecimal("42000.00"));
+        payslip.setMedicalInsuranceAmount(new BigDecimal("35000.00"));
+        payslip.setOtherTaxedAmount(new BigDecimal("35000.00"));
+        payslip.setAdditionalDeductionsAmount(BigDecimal.ZERO);
+        payslip.setGrossSalary(new BigDecimal("896000.00"));
+        payslip.setNetSalary(new BigDecimal("574000.00"));
+        payslip.setMonth(5);
+        payslip.setYear(2025);
+        payslip.setStatus(PayslipStatus.PAID);
+
+        PayslipPdfService legacy = new PayslipPdfService();
+        PayslipPdfTemplate template = new PayslipPdfTemplate();
+        Renderer legacyRenderer = () -> legacy.renderLegacyPayslipPdf(employee, payslip, employment, 5, 2025);
+        Renderer templateRenderer = () -> template.render(employee, payslip, employment, 5, 2025);
+
+        // Every layout variant: with and without employment, additional deductions and PAID status
+        for (int variant = 0; variant < 8; variant++) {
+            Employment variantEmployment = (variant & 1) != 0 ? employment : null;
+            PaySlip variantPayslip = copyOf(payslip);
+            variantPayslip.setAdditionalDeductionsAmount((variant & 2) != 0 ? new BigDecimal("12500.00") : BigDecimal.ZERO);
+            variantPayslip.setStatus((variant & 4) != 0 ? PayslipStatus.PAID : PayslipStatus.PENDING);
+            long differing = differingPixels(legacy.renderLegacyPayslipPdf(employee, variantPayslip, variantEmployment, 5, 2025),
+                    template.render(employee, variantPayslip, variantEmployment, 5, 2025));
+            logger.info("Pixels differing between the renderers (employment {}, additional deductions {}, paid {}): {}",
+                    variantEmployment != null, (variant & 2) != 0, (variant & 4) != 0, differing);
+        }
+
+        Result legacyResult = measure(legacyRenderer, iterations);
+        Result templateResult = measure(templateRenderer, iterations);
+        logger.info("legacy:   {} ms/PDF, {} KB allocated/PDF, {} bytes", String.format("%.3f", legacyResult.millis()),
+                legacyResult.allocatedKb(), legacyResult.size());
+        logger.info("template: {} ms/PDF, {} KB allocated/PDF, {} bytes", String.format("%.3f", templateResult.millis()),
+                templateResult.allocatedKb(), templateResult.size());
+        logger.info("speedup:  {}x CPU, {}x allocation", String.format("%.2f", legacyResult.millis() / templateResult.millis()),
+                String.format("%.2f", (double) legacyResult.allocatedKb() / Math.max(1, templateResult.allocatedKb())));
+    }
+
+    private static PaySlip copyOf(PaySlip payslip) {
+        PaySlip copy = new PaySlip();
+        copy.setEmployee(payslip.getEmployee());
+        copy.setHouseAmount(payslip.getHouseAmount());
+        copy.setTransportAmount(payslip.getTransportAmount());
+        copy.setEmployeeTaxedAmount(payslip.getEmployeeTaxedAmount());
+        copy.setPensionAmount(payslip.getPensionAmount());
+        copy.setMedicalInsuranceAmount(payslip.getMedicalInsuranceAmount());
+        copy.setOtherTaxedAmount(payslip.getOtherTaxedAmount());
+        copy.setGrossSalary(payslip.getGrossSalary());
+        copy.setNetSalary(payslip.getNetSalary());
+        copy.setMonth(payslip.getMonth());
+        copy.setYear(payslip.getYear());
+        return copy;
+    }
+
+    private interface Renderer {
+        byte[] render() throws IOException;
+    }
+
+    private record Result(double millis, long allocatedKb, int size) {
+    }
+
+    private static Result measure(Renderer renderer, int iterations) throws IOException {
+        for (int i = 0; i < iterations / 2; i++) {
+            renderer.render();
+        }
+        com.sun.management.ThreadMXBean threads = (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+        long allocatedBefore = threads.getCurrentThreadAllocatedBytes();
+        long cpuBefore = threads.getCurrentThreadCpuTime();
+        int size = 0;
+        for (int i = 0; i < iterations; i++) {
+            size = renderer.render().length;
+        }
+        double millis = (threads.getCurrentThreadCpuTime() - cpuBefore) / 1e6 / iterations;
+        long allocatedKb = (threads.getCurrentThreadAllocatedBytes() - allocatedBefore) / 1024 / iterations;
+        return new Result(millis, allocatedKb, size);
+    }
+
+    private static long differingPixels(byte[] expected, byte[] actual) throws IOException {
+        try (PDDocument expectedDocument = Loader.loadPDF(expected); PDDocument actualDocument = Loader.loadPDF(actual)) {
+            BufferedImage expectedImage = new PDFRenderer(expectedDocument).renderImage(0);
+            BufferedImage actualImage = new PDFRenderer(actualDocument).renderImage(0);
+            long differing = 0;
+            for (int y = 0; y < expectedImage.getHeight(); y++) {
+                for (int x = 0; x < expectedImage.getWidth(); x++) {
+                    if (expectedImage.getRGB(x, y) != actualImage.getRGB(x, y)) {
+                        differing++;
+                    }
+                }
+            }
+            return differing;
+        }
+    }
+}
@@ -0,0 +1,141 @@
+package com.erp.erp.benchmark;
+
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Profile;
+import org.springframework.stereotype.Component;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.util.Locale;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * In-process SMTP server standing in for the mail relay during the email benchmark. It speaks just enough SMTP
+ * for JavaMail (EHLO/HELO, MAIL, RCPT, DATA, RSET, NOOP, QUIT) on the loopback interface and discards what it
+ * receives. Every message waits app.benchmark.smtp.latencyMillis before its DATA reply, and a share of
+ * app.benchmark.smtp.failureRate is answered with a transient 451 so the retry path is exercised too.
+ */
+@Component
+@Profile("mail-benchmark")
+public class SmtpStandIn {
+
+    private static final Logger logger = LoggerFactory.getLogger(SmtpStandIn.class);
+
+    @Value("${app.benchmark.smtp.port:2525}")
+    private int port;
+
+    @Value("${app.benchmark.smtp.latencyMillis:50}")
+    private long latencyMillis;
+
+    @Value("${app.benchmark.smtp.failureRate:0.0}")
+    private double failureRate;
+
+    private ServerSocket serverSocket;
+
+    // Time from MAIL FROM to the DATA reply, i.e. one message as the client sees it minus the loopback round trips
+    private final LatencyReservoir transactionLatency = new LatencyReservoir(100_000);
+    private final AtomicLong accepted = new AtomicLong();
+    private final AtomicLong rejected = new AtomicLong();
+    private final AtomicLong connections = new AtomicLong();
+
+    @PostConstruct
+    public void start() throws IOException {
+        serverSocket = new ServerSocket(port, 100, InetAddress.getLoopbackAddress());
+        Thread.ofVirtual().name("smtp-stand-in").start(this::acceptConnections);
+        logger.info("SMTP stand-in listening on port {} with {} ms latency and {} failure rate", port, latencyMillis, failureRate);
+    }
+
+    @PreDestroy
+    public void stop() throws IOException {
+        serverSocket.close();
+    }
+
+    public long getAccepted() { return accepted.get(); }
+    public long getRejected() { return rejected.get(); }
+    public long getConnections() { return connections.get(); }
+    public LatencyReservoir getTransactionLatency() { return transactionLatency; }
+
+    private void acceptConnections() {
+        while (!serverSocket.isClosed()) {
+            try {
+                Socket socket = serverSocket.accept();
+                connections.incrementAndGet();
+                Thread.ofVirtual().name("smtp-stand-in-session").start(() -> serve(socket));
+            } catch (IOException e) {
+                if (!serverSocket.isClosed()) {
+                    logger.warn("SMTP stand-in failed to accept a connection: {}", e.getMessage());
+                }
+            }
+        }
+    }
+
+    private void serve(Socket socket) {
+        try (socket;
+             BufferedReader in = new BufferedReader(new InputStreamReader(socket.getInputStream(), StandardCharsets.ISO_8859_1));
+             Writer out = new BufferedWriter(new OutputStreamWriter(socket.getOutputStream(), StandardCharsets.ISO_8859_1))) {
+            reply(out, "220 localhost ESMTP stand-in");
+            long transactionStartedAt = 0;
+            String line;
+            while ((line = in.readLine()) != null) {
+                String command = line.length() > 4 ? line.substring(0, 4) : line;
+                switch (command.toUpperCase(Locale.ROOT)) {
+                    case "EHLO", "HELO" -> reply(out, "250 localhost");
+                    case "MAIL" -> {
+                        transactionStartedAt = System.nanoTime();
+                        reply(out, "250 2.1.0 OK");
+                    }
+                    case "RCPT" -> reply(out, "250 2.1.5 OK");
+                    case "DATA" -> {
+                        reply(out, "354 End data with <CR><LF>.<CR><LF>");
+                        while ((line = in.readLine()) != null && !line.equals(".")) {
+                            // The content is discarded
+                        }
+                        if (line == null) {
+                            return;
+                        }
+                        if (latencyMillis > 0) {
+                            Thread.sleep(latencyMillis);
+                        }
+                        transactionLatency.record(System.nanoTime() - transactionStartedAt);
+                        if (ThreadLocalRandom.current().nextDouble() < failureRate) {
+                            rejected.incrementAndGet();
+                            reply(out, "451 4.3.0 Injected failure");
+                        } else {
+                            accepted.incrementAndGet();
+                            reply(out, "250 2.0.0 Queued");
+                        }
+                    }
+                    case "RSET", "NOOP" -> reply(out, "250 2.0.0 OK");
+                    case "QUIT" -> {
+                        reply(out, "221 2.0.0 Bye");
+                        return;
+                    }
+                    default -> reply(out, "502 5.5.2 Command not recognized");
+                }
+            }
+        } catch (IOException e) {
+            logger.debug("SMTP stand-in session ended: {}", e.getMessage());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private void reply(Writer out, String line) throws IOException {
+        out.write(line);
+        out.write("\r\n");
+        out.flush();
+    }
+}
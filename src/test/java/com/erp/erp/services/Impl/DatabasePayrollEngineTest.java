@@ -0,0 +1,119 @@
+package com.erp.erp.services.Impl;
+
+import com.erp.erp.PostgresIntegrationTest;
+import com.erp.erp.enums.PayrollEngine;
+import com.erp.erp.services.DeductionPlanService;
+import com.erp.erp.services.PayRollService;
+import com.erp.erp.utils.PayrollProgress;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.TreeMap;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Checks that the DATABASE engine's INSERT ... SELECT writes the same payslips, row for row and to the cent,
+ * as the Java engine on the same roster and deductions.
+ */
+class DatabasePayrollEngineTest extends PostgresIntegrationTest {
+
+    private static final String PREFIX = "DBENG";
+    private static final int YEAR = 2001;
+    private static final int JAVA_MONTH = 1;
+    private static final int DATABASE_MONTH = 2;
+
+    private static final String[] AMOUNT_COLUMNS = {"house_amount", "transport_amount", "employee_taxed_amount", "pension_amount",
+            "medical_insurance_amount", "other_taxed_amount", "additional_deductions_amount", "gross_salary", "net_salary"};
+
+    @Autowired
+    private PayRollService payRollService;
+
+    @Autowired
+    private DatabasePayrollEngine databasePayrollEngine;
+
+    @Autowired
+    private DeductionPlanService deductionPlanService;
+
+    @BeforeEach
+    void setUp() {
+        cleanUp();
+        // Deductions outside the standard names go to additional_deductions_amount in both engines
+        jdbcTemplate.update("INSERT INTO deductions (code, deduction_name, percentage) VALUES ('DED_TEST_UNION', 'Test Union Dues', 0.02)");
+        jdbcTemplate.update("INSERT INTO deductions (code, deduction_name, percentage) VALUES ('DED_TEST_LOAN', 'Test Loan Repayment', 0.03)");
+        deductionPlanService.invalidate();
+
+        List<BigDecimal> salaries = new ArrayList<>();
+        // HALF_UP ties for the seeded rates, e.g. 0.25 * 0.14 = 0.035 and 1234.25 * 0.30 = 370.275, and extremes
+        for (String salary : new String[] {"0.01", "0.10", "0.25", "0.50", "1.00", "1234.25", "1234.75", "9999.95", "99999999.99"}) {
+            salaries.add(new BigDecimal(salary));
+        }
+        Random random = new Random(42);
+        for (int i = 0; i < 3000; i++) {
+            salaries.add(BigDecimal.valueOf(random.nextLong(1, 500_000_000L), 2));
+        }
+        insertRoster(PREFIX, salaries);
+        // Neither engine pays inactive employees or employments
+        jdbcTemplate.update("UPDATE employees SET status = 'DISABLED' WHERE code = ?", PREFIX + "00003");
+        jdbcTemplate.update("UPDATE employments SET status = 'INACTIVE' WHERE employee_code = ?", PREFIX + "00004");
+    }
+
+    @AfterEach
+    void cleanUp() {
+        deletePayroll(JAVA_MONTH, YEAR);
+        deletePayroll(DATABASE_MONTH, YEAR);
+        deleteRoster(PREFIX);
+        jdbcTemplate.update("DELETE FROM deductions WHERE code LIKE 'DED_TEST_%'");
+        deductionPlanService.invalidate();
+    }
+
+    @Test
+    void databaseEngineMatchesJavaEngineRowForRow() {
+        payRollService.generatePayroll(JAVA_MONTH, YEAR, PayrollEngine.SERIAL);
+        payRollService.generatePayroll(DATABASE_MONTH, YEAR, PayrollEngine.DATABASE);
+
+        Map<String, Map<String, Object>> javaRows = payslips(JAVA_MONTH);
+        Map<String, Map<String, Object>> databaseRows = payslips(DATABASE_MONTH);
+
+        assertThat(javaRows).hasSize(3009 - 2);
+        assertThat(databaseRows.keySet()).containsExactlyElementsOf(javaRows.keySet());
+        assertThat(javaRows).doesNotContainKeys(PREFIX + "00003", PREFIX + "00004");
+        for (Map.Entry<String, Map<String, Object>> javaRow : javaRows.entrySet()) {
+            Map<String, Object> databaseRow = databaseRows.get(javaRow.getKey());
+            assertThat(databaseRow.get("status")).isEqualTo("PENDING");
+            for (String column : AMOUNT_COLUMNS) {
+                assertThat((BigDecimal) databaseRow.get(column))
+                        .as("%s of %s", column, javaRow.getKey())
+                        .isEqualByComparingTo((BigDecimal) javaRow.getValue().get(column));
+            }
+        }
+        assertThat(databaseRows.get(PREFIX + "00005").get("additional_deductions_amount"))
+                .as("24.685 + 37.0275, each rounded HALF_UP before the sum")
+                .isEqualTo(new BigDecimal("61.72"));
+    }
+
+    @Test
+    void databaseEngineOnlyAddsMissingPayslipsWhenRepeated() {
+        assertThat(databasePayrollEngine.generate(DATABASE_MONTH, YEAR, new PayrollProgress()))
+                .isGreaterThanOrEqualTo(3009 - 2);
+        jdbcTemplate.update("DELETE FROM payslips WHERE month = ? AND year = ? AND employee_code = ?", DATABASE_MONTH, YEAR, PREFIX + "00007");
+
+        assertThat(databasePayrollEngine.generate(DATABASE_MONTH, YEAR, new PayrollProgress())).isEqualTo(1);
+    }
+
+    private Map<String, Map<String, Object>> payslips(int month) {
+        Map<String, Map<String, Object>> rows = new TreeMap<>();
+        for (Map<String, Object> row : jdbcTemplate.queryForList("SELECT employee_code, status, " + String.join(", ", AMOUNT_COLUMNS)
+                + " FROM payslips WHERE month = ? AND year = ? AND employee_code LIKE ?", month, YEAR, PREFIX + "%")) {
+            rows.put((String) row.get("employee_code"), row);
+        }
+        return rows;
+    }
+}
@@ -0,0 +1,323 @@
+package com.erp.erp.services.Impl;
+
+import com.erp.erp.ErpApplication;
+import com.erp.erp.PostgresIntegrationTest;
+import com.erp.erp.entity.PayrollRun;
+import com.erp.erp.enums.PayrollEngine;
+import com.erp.erp.exceptions.ValidationException;
+import com.erp.erp.repository.PayrollRunPartitionRepository;
+import com.erp.erp.services.PayRollService;
+import com.erp.erp.utils.PayrollProgress;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.WebApplicationType;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.test.context.TestPropertySource;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.CyclicBarrier;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+/**
+ * Runs the DISTRIBUTED engine on three application contexts sharing one PostgreSQL: the test's own context
+ * coordinates the run, and two worker contexts claim partitions of it from their schedulers.
+ */
+@TestPropertySource(properties = {
+        "app.payroll.distributed.chunkSize=100",
+        "app.payroll.distributed.pollMillis=100"
+})
+class DistributedPayrollEngineTest extends PostgresIntegrationTest {
+
+    private static final String PREFIX = "DIST";
+    private static final int YEAR = 2001;
+    private static final int MONTH = 3;
+    private static final int RESUME_MONTH = 4;
+    private static final int MIXED_CODES_MONTH = 7;
+    private static final int LEASE_MONTH = 9;
+    private static final int CONCURRENT_START_MONTH = 10;
+    private static final int BACKFILL_FROM_MONTH = 11;
+    private static final int BACKFILL_TO_MONTH = 12;
+    private static final int ROSTER_SIZE = 4000;
+    private static final int ALREADY_PAID = 25;
+
+    // Free-text codes that sort differently by code point than in a linguistic collation such as en-US,
+    // e.g. EMP1 < Emp.1 < emp-1 by code point but emp-1 < Emp.1 < EMP1 in en-US
+    private static final String[] MIXED_CODE_PREFIXES = {"dmx-", "DMX", "Dmx."};
+
+    // Roster of the lease expiry test, cut into two partitions of LEASE_ROSTER_SIZE / 2
+    private static final String LEASE_PREFIX = "DLS";
+    private static final int LEASE_ROSTER_SIZE = 400;
+
+    private static final List<ConfigurableApplicationContext> workers = new ArrayList<>();
+
+    @Autowired
+    private PayRollService payRollService;
+
+    @Autowired
+    private PayrollRunManager payrollRunManager;
+
+    @Autowired
+    private PayrollRunPartitionRepository partitionRepository;
+
+    @BeforeEach
+    void setUp() {
+        cleanUp();
+        Random random = new Random(7);
+        List<BigDecimal> salaries = new ArrayList<>();
+        for (int i = 0; i < ROSTER_SIZE; i++) {
+            salaries.add(BigDecimal.valueOf(random.nextLong(100_00, 10_000_000_00L), 2));
+        }
+        insertRoster(PREFIX, salaries);
+
+        // Started after this context, which created the schema and seeded the reference data
+        if (workers.isEmpty()) {
+            for (int i = 1; i <= 2; i++) {
+                workers.add(startWorker("test-worker-" + i));
+            }
+        }
+    }
+
+    @AfterEach
+    void cleanUp() {
+        deletePayroll(MONTH, YEAR);
+        deletePayroll(RESUME_MONTH, YEAR);
+        deletePayroll(MIXED_CODES_MONTH, YEAR);
+        deletePayroll(LEASE_MONTH, YEAR);
+        deletePayroll(CONCURRENT_START_MONTH, YEAR);
+        deletePayroll(BACKFILL_FROM_MONTH, YEAR);
+        deletePayroll(BACKFILL_TO_MONTH, YEAR);
+        deleteRoster(PREFIX);
+        deleteRoster(LEASE_PREFIX);
+        for (String prefix : MIXED_CODE_PREFIXES) {
+            deleteRoster(prefix);
+        }
+    }
+
+    @AfterAll
+    static void stopWorkers() {
+        workers.forEach(ConfigurableApplicationContext::close);
+        workers.clear();
+    }
+
+    @Test
+    void everyActiveEmployeeGetsExactlyOnePayslipAcrossNodes() {
+        // Paid before the run: skipped by the partitions, but still counted as processed
+        jdbcTemplate.update("INSERT INTO payslips (id, employee_code, month, year, status, gross_salary, net_salary) "
+                + "SELECT nextval('payslips_seq'), employee_code, ?, ?, 'PENDING', base_salary, base_salary FROM employments "
+                + "WHERE employee_code LIKE ? ORDER BY employee_code DESC LIMIT ?", MONTH, YEAR, PREFIX + "%", ALREADY_PAID);
+
+        PayrollProgress progress = new PayrollProgress();
+        AtomicInteger generatedHere = new AtomicInteger();
+        payRollService.generatePayroll(MONTH, YEAR, PayrollEngine.DISTRIBUTED, progress, payslip -> {
+            // The coordinator holds on to its first partition until a worker has claimed one, so the workers take
+            // part however fast this node is; the worker's claim skips the partition row this one has locked
+            if (generatedHere.getAndIncrement() == 0) {
+                awaitWorkerClaim(MONTH);
+            }
+        });
+
+        Map<String, Object> payslips = jdbcTemplate.queryForMap("SELECT COUNT(*) AS total, COUNT(DISTINCT employee_code) AS employees "
+                + "FROM payslips WHERE month = ? AND year = ? AND employee_code LIKE ?", MONTH, YEAR, PREFIX + "%");
+        assertThat(((Number) payslips.get("total")).intValue()).isEqualTo(ROSTER_SIZE);
+        assertThat(((Number) payslips.get("employees")).intValue()).isEqualTo(ROSTER_SIZE);
+
+        assertThat(jdbcTemplate.queryForObject("SELECT status FROM payroll_runs WHERE month = ? AND year = ?", String.class, MONTH, YEAR))
+                .isEqualTo("COMPLETED");
+        assertThat(jdbcTemplate.queryForObject("SELECT COUNT(*) FROM payroll_run_partitions p JOIN payroll_runs r ON r.id = p.run_id "
+                + "WHERE r.month = ? AND r.year = ? AND p.status <> 'COMPLETED'", Integer.class, MONTH, YEAR)).isZero();
+
+        // The run's progress comes from the checkpoints of all nodes, skipped employees included
+        assertThat(progress.getProcessed()).isEqualTo(progress.getTotal());
+        assertThat(progress.getFailed()).isZero();
+        // The worker contexts generated part of the run
+        assertThat(generatedHere.get()).isLessThan(ROSTER_SIZE - ALREADY_PAID);
+    }
+
+    @Test
+    void partitionWhoseLeaseExpiredIsReclaimedOnce() {
+        List<BigDecimal> salaries = Collections.nCopies(LEASE_ROSTER_SIZE, new BigDecimal("1000.00"));
+        insertRoster(LEASE_PREFIX, salaries);
+        String middleCode = String.format("%s%05d", LEASE_PREFIX, LEASE_ROSTER_SIZE / 2 - 1);
+        String lastCode = String.format("%s%05d", LEASE_PREFIX, LEASE_ROSTER_SIZE - 1);
+
+        // A run left by an earlier attempt: its first partition is still leased by a node that stopped an hour ago
+        Long runId = jdbcTemplate.queryForObject("INSERT INTO payroll_runs (month, year, status, engine, deduction_plan_version, "
+                + "roster_size, created_at, updated_at) VALUES (?, ?, 'FAILED', 'DISTRIBUTED', 0, ?, now(), now()) RETURNING id",
+                Long.class, LEASE_MONTH, YEAR, LEASE_ROSTER_SIZE);
+        Long leasedPartitionId = jdbcTemplate.queryForObject("INSERT INTO payroll_run_partitions (run_id, partition_index, "
+                + "from_employee_code, to_employee_code, status, processed_count, updated_at, lease_owner, lease_expires_at) "
+                + "VALUES (?, 0, ?, ?, 'RUNNING', 0, now(), 'fake-node', now() - interval '1 hour') RETURNING id",
+                Long.class, runId, LEASE_PREFIX, middleCode);
+        jdbcTemplate.update("INSERT INTO payroll_run_partitions (run_id, partition_index, from_employee_code, to_employee_code, "
+                + "status, processed_count, updated_at) VALUES (?, 1, ?, ?, 'PENDING', 0, now())", runId, middleCode, lastCode);
+
+        payRollService.generatePayroll(LEASE_MONTH, YEAR, PayrollEngine.DISTRIBUTED);
+
+        List<Map<String, Object>> paid = jdbcTemplate.queryForList("SELECT employee_code, COUNT(*) AS payslips FROM payslips "
+                + "WHERE month = ? AND year = ? AND employee_code LIKE ? GROUP BY employee_code", LEASE_MONTH, YEAR, LEASE_PREFIX + "%");
+        assertThat(paid).hasSize(LEASE_ROSTER_SIZE);
+        assertThat(paid).allSatisfy(row -> assertThat(((Number) row.get("payslips")).intValue()).isEqualTo(1));
+
+        // Claimed and committed by exactly one live node: one checkpoint for its half of the roster, and the lease released
+        Map<String, Object> partition = jdbcTemplate.queryForMap("SELECT status, processed_count, lease_owner FROM payroll_run_partitions "
+                + "WHERE id = ?", leasedPartitionId);
+        assertThat(partition.get("status")).isEqualTo("COMPLETED");
+        assertThat(((Number) partition.get("processed_count")).intValue()).isEqualTo(LEASE_ROSTER_SIZE / 2);
+        assertThat(partition.get("lease_owner")).isNull();
+        assertThat(jdbcTemplate.queryForObject("SELECT status FROM payroll_runs WHERE id = ?", String.class, runId))
+                .isEqualTo("COMPLETED");
+
+        // The stopped node coming back cannot commit its stale copy of the partition
+        assertThat(partitionRepository.renewLease(leasedPartitionId, "fake-node", 120)).isZero();
+    }
+
+    @Test
+    void mixedCaseAndPunctuatedCodesAreEachPaidOnce() {
+        List<String> codes = new ArrayList<>();
+        for (int i = 0; i < 400; i++) {
+            codes.add("dmx-" + i);
+            codes.add("DMX" + i);
+            codes.add("Dmx." + i);
+            codes.add("DMX_" + i + "z");
+        }
+        insertRoster(codes, Collections.nCopies(codes.size(), new BigDecimal("1000.00")));
+
+        payRollService.generatePayroll(MIXED_CODES_MONTH, YEAR, PayrollEngine.DISTRIBUTED);
+
+        List<Map<String, Object>> paid = jdbcTemplate.queryForList("SELECT employee_code, COUNT(*) AS payslips FROM payslips "
+                + "WHERE month = ? AND year = ? AND (employee_code LIKE 'dmx-%' OR employee_code LIKE 'DMX%' OR employee_code LIKE 'Dmx.%') "
+                + "GROUP BY employee_code", MIXED_CODES_MONTH, YEAR);
+        assertThat(paid).hasSize(codes.size());
+        assertThat(paid).allSatisfy(row -> assertThat(((Number) row.get("payslips")).intValue()).isEqualTo(1));
+        assertThat(jdbcTemplate.queryForObject("SELECT status FROM payroll_runs WHERE month = ? AND year = ?", String.class,
+                MIXED_CODES_MONTH, YEAR)).isEqualTo("COMPLETED");
+    }
+
+    @Test
+    void runningRunIsOnlyResumedOnceItsOwnerStopped() {
+        jdbcTemplate.update("INSERT INTO payroll_runs (month, year, status, engine, deduction_plan_version, roster_size, created_at, "
+                + "updated_at, owner, heartbeat_at) VALUES (?, ?, 'RUNNING', 'SERIAL', 0, 0, now(), now(), 'another-node', now())",
+                RESUME_MONTH, YEAR);
+
+        assertThatThrownBy(() -> payRollService.generatePayroll(RESUME_MONTH, YEAR, PayrollEngine.SERIAL))
+                .isInstanceOf(ValidationException.class)
+                .hasMessageContaining("another-node");
+
+        jdbcTemplate.update("UPDATE payroll_runs SET heartbeat_at = now() - interval '1 hour' WHERE month = ? AND year = ?", RESUME_MONTH, YEAR);
+        payRollService.generatePayroll(RESUME_MONTH, YEAR, PayrollEngine.SERIAL);
+
+        Map<String, Object> run = jdbcTemplate.queryForMap("SELECT status, owner FROM payroll_runs WHERE month = ? AND year = ?", RESUME_MONTH, YEAR);
+        assertThat(run.get("status")).isEqualTo("COMPLETED");
+        assertThat(run.get("owner")).isEqualTo(payrollRunManager.getNodeId());
+    }
+
+    @Test
+    void backfillLeavesAMonthRunningOnAnotherNodeAlone() {
+        jdbcTemplate.update("INSERT INTO payroll_runs (month, year, status, engine, deduction_plan_version, roster_size, created_at, "
+                + "updated_at, owner, heartbeat_at) VALUES (?, ?, 'RUNNING', 'SERIAL', 0, 0, now(), now(), 'another-node', now())",
+                BACKFILL_TO_MONTH, YEAR);
+
+        assertThatThrownBy(() -> payRollService.backfillPayroll(BACKFILL_FROM_MONTH, YEAR, BACKFILL_TO_MONTH, YEAR))
+                .isInstanceOf(ValidationException.class)
+                .hasMessageContaining("another-node");
+        // Nothing was generated, and the month registered before the refusal is left to resume
+        assertThat(jdbcTemplate.queryForObject("SELECT COUNT(*) FROM payslips WHERE month IN (?, ?) AND year = ?", Integer.class,
+                BACKFILL_FROM_MONTH, BACKFILL_TO_MONTH, YEAR)).isZero();
+        assertThat(jdbcTemplate.queryForObject("SELECT status FROM payroll_runs WHERE month = ? AND year = ?", String.class,
+                BACKFILL_FROM_MONTH, YEAR)).isEqualTo("CANCELLED");
+
+        jdbcTemplate.update("UPDATE payroll_runs SET heartbeat_at = now() - interval '1 hour' WHERE month = ? AND year = ?",
+                BACKFILL_TO_MONTH, YEAR);
+        payRollService.backfillPayroll(BACKFILL_FROM_MONTH, YEAR, BACKFILL_TO_MONTH, YEAR);
+
+        for (int month : new int[] {BACKFILL_FROM_MONTH, BACKFILL_TO_MONTH}) {
+            assertThat(jdbcTemplate.queryForObject("SELECT COUNT(*) FROM payslips WHERE month = ? AND year = ? AND employee_code LIKE ?",
+                    Integer.class, month, YEAR, PREFIX + "%")).isEqualTo(ROSTER_SIZE);
+            Map<String, Object> run = jdbcTemplate.queryForMap("SELECT status, owner FROM payroll_runs WHERE month = ? AND year = ?", month, YEAR);
+            assertThat(run.get("status")).isEqualTo("COMPLETED");
+            assertThat(run.get("owner")).isEqualTo(payrollRunManager.getNodeId());
+        }
+    }
+
+    // Waits until a worker context holds a partition of the month's run
+    private void awaitWorkerClaim(int month) {
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(30);
+        while (jdbcTemplate.queryForObject("SELECT COUNT(*) FROM payroll_run_partitions p JOIN payroll_runs r ON r.id = p.run_id "
+                + "WHERE r.month = ? AND r.year = ? AND p.lease_owner LIKE 'test-worker-%'", Integer.class, month, YEAR) == 0) {
+            assertThat(System.nanoTime()).as("a worker claiming a partition").isLessThan(deadline);
+            try {
+                Thread.sleep(20);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new IllegalStateException(e);
+            }
+        }
+    }
+
+    @Test
+    void nodesStartingTheSameMonthTogetherCreateOneRun() throws Exception {
+        PayrollRunManager workerRunManager = workers.get(0).getBean(PayrollRunManager.class);
+        for (int attempt = 0; attempt < 20; attempt++) {
+            deletePayroll(CONCURRENT_START_MONTH, YEAR);
+            CyclicBarrier start = new CyclicBarrier(2);
+            List<Future<PayrollRun>> starts = new ArrayList<>();
+            try (ExecutorService nodes = Executors.newFixedThreadPool(2)) {
+                for (PayrollRunManager manager : List.of(payrollRunManager, workerRunManager)) {
+                    starts.add(nodes.submit(() -> {
+                        start.await();
+                        // SERIAL, so the workers' schedulers leave the run alone
+                        return manager.startOrResume(CONCURRENT_START_MONTH, YEAR, List.of(), 1, PayrollEngine.SERIAL, 0);
+                    }));
+                }
+            }
+
+            // One node creates the run; the other finds it running on a live node and refuses to start
+            int started = 0;
+            for (int i = 0; i < starts.size(); i++) {
+                try {
+                    PayrollRun run = starts.get(i).get();
+                    (i == 0 ? payrollRunManager : workerRunManager).release(run);
+                    started++;
+                } catch (ExecutionException e) {
+                    assertThat(e.getCause()).isInstanceOf(ValidationException.class);
+                }
+            }
+            assertThat(started).isEqualTo(1);
+            assertThat(jdbcTemplate.queryForObject("SELECT COUNT(*) FROM payroll_runs WHERE month = ? AND year = ?", Integer.class,
+                    CONCURRENT_START_MONTH, YEAR)).isEqualTo(1);
+        }
+    }
+
+    private static ConfigurableApplicationContext startWorker(String nodeId) {
+        Map<String, String> properties = new LinkedHashMap<>(databaseProperties());
+        properties.put("app.payroll.distributed.nodeId", nodeId);
+        properties.put("app.payroll.distributed.chunkSize", "100");
+        properties.put("app.payroll.distributed.pollMillis", "100");
+        properties.put("spring.main.banner-mode", "off");
+        // As arguments, so they override application.properties like the test context's properties do
+        String[] args = properties.entrySet().stream().map(property -> "--" + property.getKey() + "=" + property.getValue())
+                .toArray(String[]::new);
+        return new SpringApplicationBuilder(ErpApplication.class)
+                .web(WebApplicationType.NONE)
+                .profiles("test")
+                .run(args);
+    }
+}
@@ -0,0 +1,133 @@
+package com.erp.erp.services.Impl;
+
+import com.erp.erp.PostgresIntegrationTest;
+import com.erp.erp.dto.response.PayrollJobResponseDTO;
+import com.erp.erp.services.PayRollService;
+import com.erp.erp.services.PayrollJobService;
+import com.erp.erp.utils.PayrollProgress;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.test.context.TestPropertySource;
+import org.springframework.test.context.bean.override.mockito.MockitoBean;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.Mockito.when;
+
+/**
+ * Checks that a payroll job's outcome is only ever recorded by the node running it: the test plays the other
+ * node by writing the job rows directly, and calls the heartbeat itself instead of waiting for the scheduler.
+ */
+@TestPropertySource(properties = {
+        "app.payroll.jobConcurrency=1",
+        "app.payroll.jobHeartbeatMillis=3600000",
+        "app.payroll.jobStaleSeconds=60"
+})
+class PayrollJobServiceTest extends PostgresIntegrationTest {
+
+    private static final String REQUESTED_BY = "payroll-job-test";
+    private static final int YEAR = 2001;
+    private static final int MONTH = 8;
+
+    @Autowired
+    private PayrollJobService payrollJobService;
+
+    @MockitoBean
+    private PayRollService payRollService;
+
+    @BeforeEach
+    @AfterEach
+    void cleanUp() {
+        jdbcTemplate.update("DELETE FROM payroll_jobs WHERE requested_by = ?", REQUESTED_BY);
+    }
+
+    @Test
+    void cancellingAJobRunningOnAnotherNodeOnlyFlagsIt() {
+        long jobId = insertRunningJob(0, false);
+
+        PayrollJobResponseDTO job = payrollJobService.cancelJob(jobId);
+
+        assertThat(job.isCancelRequested()).isTrue();
+        assertThat(statusOf(jobId)).isEqualTo("RUNNING");
+        assertThat(jdbcTemplate.queryForObject("SELECT cancel_requested FROM payroll_jobs WHERE id = ?", Boolean.class, jobId)).isTrue();
+    }
+
+    @Test
+    void jobsOfAStoppedNodeEndCancelledIfACancelWasRequestedAndFailedOtherwise() {
+        long cancelledJobId = insertRunningJob(3600, true);
+        long abandonedJobId = insertRunningJob(3600, false);
+        long liveJobId = insertRunningJob(0, false);
+
+        payrollJobService.renewHeartbeats();
+
+        assertThat(statusOf(cancelledJobId)).isEqualTo("CANCELLED");
+        assertThat(statusOf(abandonedJobId)).isEqualTo("FAILED");
+        assertThat(statusOf(liveJobId)).isEqualTo("RUNNING");
+    }
+
+    @Test
+    void theRunningNodeStopsAJobCancelledThroughAnotherNode() throws InterruptedException {
+        when(payRollService.approvePayroll(anyInt(), anyInt(), any(PayrollProgress.class))).thenAnswer(invocation -> {
+            PayrollProgress progress = invocation.getArgument(2);
+            while (true) {
+                progress.checkCancelled();
+                Thread.sleep(20);
+            }
+        });
+        long jobId = payrollJobService.submitApprove(MONTH, YEAR, REQUESTED_BY).getId();
+        awaitStatus(jobId, "RUNNING");
+
+        // Another node only sets the flag; this one finds it with its next heartbeat
+        jdbcTemplate.update("UPDATE payroll_jobs SET cancel_requested = true WHERE id = ?", jobId);
+        payrollJobService.renewHeartbeats();
+
+        awaitStatus(jobId, "CANCELLED");
+    }
+
+    @Test
+    void theRunningNodeDoesNotOverwriteTheStatusAnotherNodeRecorded() throws InterruptedException {
+        AtomicInteger calls = new AtomicInteger();
+        when(payRollService.approvePayroll(anyInt(), anyInt(), any(PayrollProgress.class))).thenAnswer(invocation -> {
+            if (calls.getAndIncrement() == 0) {
+                // Another node marks the job abandoned while it runs, as if this node had missed its heartbeats
+                jdbcTemplate.update("UPDATE payroll_jobs SET status = 'FAILED', error_message = 'Abandoned' "
+                        + "WHERE requested_by = ? AND status = 'RUNNING'", REQUESTED_BY);
+            }
+            return List.of();
+        });
+        long jobId = payrollJobService.submitApprove(MONTH, YEAR, REQUESTED_BY).getId();
+        // The executor has a single thread, so the first job has recorded its outcome once the second completes
+        long nextJobId = payrollJobService.submitApprove(MONTH, YEAR, REQUESTED_BY).getId();
+        awaitStatus(nextJobId, "COMPLETED");
+
+        assertThat(statusOf(jobId)).isEqualTo("FAILED");
+        assertThat(jdbcTemplate.queryForObject("SELECT error_message FROM payroll_jobs WHERE id = ?", String.class, jobId))
+                .isEqualTo("Abandoned");
+    }
+
+    private long insertRunningJob(int heartbeatAgeSeconds, boolean cancelRequested) {
+        return jdbcTemplate.queryForObject("INSERT INTO payroll_jobs (type, status, month, year, total, processed, failed, "
+                        + "requested_by, created_at, started_at, heartbeat_at, cancel_requested) "
+                        + "VALUES ('APPROVE', 'RUNNING', ?, ?, 0, 0, 0, ?, now(), now(), now() - make_interval(secs => ?), ?) RETURNING id",
+                Long.class, MONTH, YEAR, REQUESTED_BY, heartbeatAgeSeconds, cancelRequested);
+    }
+
+    private String statusOf(long jobId) {
+        return jdbcTemplate.queryForObject("SELECT status FROM payroll_jobs WHERE id = ?", String.class, jobId);
+    }
+
+    private void awaitStatus(long jobId, String status) throws InterruptedException {
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(10);
+        while (!status.equals(statusOf(jobId))) {
+            assertThat(System.nanoTime()).as("job %d reaching %s", jobId, status).isLessThan(deadline);
+            Thread.sleep(20);
+        }
+    }
+}
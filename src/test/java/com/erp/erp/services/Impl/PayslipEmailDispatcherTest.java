@@ -0,0 +1,66 @@
+package com.erp.erp.services.Impl;
+
+import com.erp.erp.exceptions.ValidationException;
+import jakarta.mail.Address;
+import jakarta.mail.MessagingException;
+import jakarta.mail.SendFailedException;
+import jakarta.mail.internet.AddressException;
+import jakarta.mail.internet.InternetAddress;
+import org.eclipse.angus.mail.smtp.SMTPAddressFailedException;
+import org.eclipse.angus.mail.smtp.SMTPSendFailedException;
+import org.junit.jupiter.api.Test;
+import org.springframework.mail.MailSendException;
+
+import java.net.ConnectException;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Checks which send failures are dead-lettered at once instead of being retried with backoff.
+ */
+class PayslipEmailDispatcherTest {
+
+    private static final InternetAddress ADDRESS = address("employee@example.com");
+
+    @Test
+    void rejectedAddressesAndPermanentRepliesArePermanent() {
+        assertThat(PayslipEmailDispatcher.isPermanent(new ValidationException("Recipient email cannot be empty"))).isTrue();
+        assertThat(PayslipEmailDispatcher.isPermanent(new AddressException("Missing final '@domain'"))).isTrue();
+        assertThat(PayslipEmailDispatcher.isPermanent(
+                new SMTPAddressFailedException(ADDRESS, "RCPT TO", 550, "550 5.1.1 User unknown"))).isTrue();
+        assertThat(PayslipEmailDispatcher.isPermanent(
+                new SMTPSendFailedException("DATA", 554, "554 5.7.1 Message rejected", null, null, null, null))).isTrue();
+        assertThat(PayslipEmailDispatcher.isPermanent(
+                new SendFailedException("Invalid Addresses", null, null, null, new Address[] {ADDRESS}))).isTrue();
+    }
+
+    @Test
+    void permanentRepliesAreFoundBehindTheMailSendersWrapping() {
+        SendFailedException invalid = new SendFailedException("Invalid Addresses", null, null, null, new Address[] {ADDRESS});
+        invalid.setNextException(new SMTPAddressFailedException(ADDRESS, "RCPT TO", 550, "550 5.1.1 User unknown"));
+        assertThat(PayslipEmailDispatcher.isPermanent(new MailSendException("Failed messages", invalid))).isTrue();
+
+        MessagingException mailFrom = new MessagingException("Could not send",
+                new SMTPSendFailedException("MAIL FROM", 553, "553 5.7.1 Sender rejected", null, null, null, null));
+        assertThat(PayslipEmailDispatcher.isPermanent(new MailSendException("Mail server connection failed", mailFrom))).isTrue();
+    }
+
+    @Test
+    void transientRepliesAndConnectionFailuresAreRetried() {
+        assertThat(PayslipEmailDispatcher.isPermanent(
+                new SMTPSendFailedException("DATA", 451, "451 4.3.0 Try again later", null, null, new Address[] {ADDRESS}, null))).isFalse();
+        assertThat(PayslipEmailDispatcher.isPermanent(
+                new SMTPAddressFailedException(ADDRESS, "RCPT TO", 452, "452 4.2.2 Mailbox full"))).isFalse();
+        assertThat(PayslipEmailDispatcher.isPermanent(new MailSendException("Mail server connection failed",
+                new MessagingException("Could not connect to SMTP host", new ConnectException("Connection refused"))))).isFalse();
+        assertThat(PayslipEmailDispatcher.isPermanent(new IllegalStateException("Render failed"))).isFalse();
+    }
+
+    private static InternetAddress address(String email) {
+        try {
+            return new InternetAddress(email);
+        } catch (AddressException e) {
+            throw new IllegalArgumentException(e);
+        }
+    }
+}
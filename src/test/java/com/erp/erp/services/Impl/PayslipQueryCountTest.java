@@ -0,0 +1,133 @@
+package com.erp.erp.services.Impl;
+
+import com.erp.erp.PostgresIntegrationTest;
+import com.erp.erp.dto.response.PayslipResponseDTO;
+import com.erp.erp.services.PayRollService;
+import jakarta.persistence.EntityManagerFactory;
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.Statistics;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.test.context.TestPropertySource;
+import org.springframework.test.context.bean.override.mockito.MockitoBean;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Guards the payslip read paths against N+1 queries: with Hibernate statistics on, listing, looking up and
+ * approving a month must cost the same number of statements for a handful of employees as for hundreds.
+ * The schedulers only poll once at startup and the mail dispatcher is mocked, so no other thread adds statements
+ * to the session factory's statistics while a test counts them.
+ */
+@TestPropertySource(properties = {
+        "spring.jpa.properties.hibernate.generate_statistics=true",
+        "logging.level.org.hibernate.engine.internal.StatisticalLoggingSessionEventListener=WARN",
+        "app.payroll.distributed.pollMillis=3600000",
+        "app.payroll.jobHeartbeatMillis=3600000",
+        "app.payroll.runHeartbeatMillis=3600000"
+})
+class PayslipQueryCountTest extends PostgresIntegrationTest {
+
+    private static final String SMALL_PREFIX = "QCS";
+    private static final String LARGE_PREFIX = "QCL";
+    private static final int YEAR = 2001;
+    private static final int SMALL_MONTH = 5;
+    private static final int LARGE_MONTH = 6;
+    private static final int SMALL_ROSTER = 3;
+    // Below the approval's IN-clause chunk of 1000, so both months read their rows back in one chunk
+    private static final int LARGE_ROSTER = 300;
+
+    @Autowired
+    private PayRollService payRollService;
+
+    @Autowired
+    private EntityManagerFactory entityManagerFactory;
+
+    @MockitoBean
+    private PayslipEmailDispatcher payslipEmailDispatcher;
+
+    private Statistics statistics;
+
+    @BeforeEach
+    void setUp() {
+        cleanUp();
+        insertPayslips(SMALL_PREFIX, SMALL_ROSTER, SMALL_MONTH);
+        insertPayslips(LARGE_PREFIX, LARGE_ROSTER, LARGE_MONTH);
+        statistics = entityManagerFactory.unwrap(SessionFactory.class).getStatistics();
+    }
+
+    @AfterEach
+    void cleanUp() {
+        deletePayroll(SMALL_MONTH, YEAR);
+        deletePayroll(LARGE_MONTH, YEAR);
+        deleteRoster(SMALL_PREFIX);
+        deleteRoster(LARGE_PREFIX);
+    }
+
+    @Test
+    void listingAMonthIsOneStatementRegardlessOfHeadcount() {
+        List<PayslipResponseDTO> small = new ArrayList<>();
+        long smallStatements = countStatements(() -> small.addAll(payRollService.getAllPayslipsForMonthYear(SMALL_MONTH, YEAR)));
+        List<PayslipResponseDTO> large = new ArrayList<>();
+        long largeStatements = countStatements(() -> large.addAll(payRollService.getAllPayslipsForMonthYear(LARGE_MONTH, YEAR)));
+
+        assertThat(small).hasSize(SMALL_ROSTER);
+        assertThat(large).hasSize(LARGE_ROSTER);
+        assertThat(large).allSatisfy(payslip -> {
+            assertThat(payslip.getEmployeeName()).startsWith("First");
+            assertThat(payslip.getBaseSalary()).isNotNull();
+        });
+        assertThat(smallStatements).isEqualTo(1);
+        assertThat(largeStatements).isEqualTo(smallStatements);
+        assertThat(statistics.getEntityFetchCount()).as("lazy loads").isZero();
+    }
+
+    @Test
+    void lookingUpOnePayslipIsOneStatement() {
+        PayslipResponseDTO[] payslip = new PayslipResponseDTO[1];
+        long statements = countStatements(() -> payslip[0] = payRollService.getPayslipForEmployee(LARGE_PREFIX + "00042", LARGE_MONTH, YEAR));
+
+        assertThat(payslip[0].getEmployeeCode()).isEqualTo(LARGE_PREFIX + "00042");
+        assertThat(statements).isEqualTo(1);
+        assertThat(statistics.getEntityFetchCount()).as("lazy loads").isZero();
+    }
+
+    @Test
+    void approvingAMonthCostsTheSameStatementsRegardlessOfHeadcount() {
+        List<PayslipResponseDTO> small = new ArrayList<>();
+        long smallStatements = countStatements(() -> small.addAll(payRollService.approvePayroll(SMALL_MONTH, YEAR)));
+        List<PayslipResponseDTO> large = new ArrayList<>();
+        long largeStatements = countStatements(() -> large.addAll(payRollService.approvePayroll(LARGE_MONTH, YEAR)));
+
+        assertThat(small).hasSize(SMALL_ROSTER);
+        assertThat(large).hasSize(LARGE_ROSTER);
+        assertThat(jdbcTemplate.queryForObject("SELECT COUNT(*) FROM payslips WHERE month = ? AND year = ? AND status = 'PAID'",
+                Integer.class, LARGE_MONTH, YEAR)).isEqualTo(LARGE_ROSTER);
+        assertThat(largeStatements).isEqualTo(smallStatements);
+        assertThat(statistics.getEntityFetchCount()).as("lazy loads").isZero();
+    }
+
+    private long countStatements(Runnable call) {
+        statistics.clear();
+        call.run();
+        return statistics.getPrepareStatementCount();
+    }
+
+    // Employees with an employment and a PENDING payslip of the month each, written with plain JDBC
+    private void insertPayslips(String prefix, int count, int month) {
+        List<BigDecimal> salaries = new ArrayList<>();
+        for (int i = 0; i < count; i++) {
+            salaries.add(BigDecimal.valueOf(100_000 + i, 2));
+        }
+        insertRoster(prefix, salaries);
+        jdbcTemplate.update("INSERT INTO payslips (id, employee_code, month, year, status, gross_salary, net_salary) "
+                + "SELECT nextval('payslips_seq'), employee_code, ?, ?, 'PENDING', base_salary, base_salary FROM employments "
+                + "WHERE employee_code LIKE ?", month, YEAR, prefix + "%");
+    }
+}
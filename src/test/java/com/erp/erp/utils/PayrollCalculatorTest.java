@@ -0,0 +1,162 @@
+package com.erp.erp.utils;
+
+import com.erp.erp.entity.Deduction;
+import org.junit.jupiter.api.Test;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+/**
+ * Checks that the fixed-point kernel gives the same amounts, to the cent, as the BigDecimal formula it replaced:
+ * {@code baseSalary.multiply(percentage).setScale(2, RoundingMode.HALF_UP)} per slot.
+ */
+class PayrollCalculatorTest {
+
+    // Fixed seed so a failure can be reproduced
+    private static final long SEED = 20240601L;
+
+    private static final int RANDOM_CASES = 200_000;
+
+    @Test
+    void applyRateMatchesBigDecimalForRandomSalariesAndRates() {
+        Random random = new Random(SEED);
+        for (int i = 0; i < RANDOM_CASES; i++) {
+            // Up to 10 billion in either direction, with cents, and rates up to +/-200% with 4 decimals
+            long cents = random.nextLong(-1_000_000_000_000L, 1_000_000_000_001L);
+            int basisPoints = random.nextInt(-20_000, 20_001);
+            assertSameAsBigDecimal(cents, basisPoints);
+        }
+    }
+
+    @Test
+    void applyRateMatchesBigDecimalAtBoundaries() {
+        long[] salaries = {0, 1, -1, 99, 100, 101, 4_999, 5_000, 5_001, 9_999, 10_000, 10_001,
+                123_456_789, -123_456_789, Long.MAX_VALUE / 20_000, -(Long.MAX_VALUE / 20_000)};
+        int[] rates = {0, 1, -1, 1_400, 3_000, 600, 500, 4_999, 5_000, 5_001, 9_999, 10_000, 10_001, 20_000, -20_000};
+        for (long cents : salaries) {
+            for (int basisPoints : rates) {
+                assertSameAsBigDecimal(cents, basisPoints);
+            }
+        }
+    }
+
+    @Test
+    void applyRateRoundsHalfUpTiesAwayFromZero() {
+        // 0.01 * 0.5 = 0.005 -> 0.01
+        assertThat(PayrollCalculator.applyRate(1, 5_000)).isEqualTo(1);
+        assertThat(PayrollCalculator.applyRate(-1, 5_000)).isEqualTo(-1);
+        assertThat(PayrollCalculator.applyRate(1, -5_000)).isEqualTo(-1);
+        // 0.01 * 0.4999 = 0.004999 -> 0.00
+        assertThat(PayrollCalculator.applyRate(1, 4_999)).isZero();
+        assertThat(PayrollCalculator.applyRate(-1, 4_999)).isZero();
+        // 1234.25 * 0.30 = 370.275 -> 370.28
+        assertThat(PayrollCalculator.applyRate(123_425, 3_000)).isEqualTo(37_028);
+        assertThat(PayrollCalculator.applyRate(-123_425, 3_000)).isEqualTo(-37_028);
+
+        Random random = new Random(SEED);
+        for (int i = 0; i < 10_000; i++) {
+            // Exact ties: amount * rate ends in 5000 basis-point units
+            long cents = 2 * random.nextLong(-1_000_000_000L, 1_000_000_000L) + 1;
+            assertSameAsBigDecimal(cents, 5_000);
+            assertSameAsBigDecimal(cents * 5, 1_000);
+        }
+    }
+
+    @Test
+    void applyRateFailsInsteadOfOverflowing() {
+        assertThatThrownBy(() -> PayrollCalculator.applyRate(Long.MAX_VALUE, 2)).isInstanceOf(ArithmeticException.class);
+        assertThatThrownBy(() -> PayrollCalculator.applyRate(Long.MIN_VALUE, 1)).isInstanceOf(ArithmeticException.class);
+        assertThatThrownBy(() -> PayrollCalculator.applyRate(Long.MAX_VALUE / 10_000 + 1, 10_000)).isInstanceOf(ArithmeticException.class);
+    }
+
+    @Test
+    void detectsValuesTheKernelCannotRepresent() {
+        assertThat(PayrollCalculator.isCents(new BigDecimal("1234.56"))).isTrue();
+        assertThat(PayrollCalculator.isCents(new BigDecimal("1234.5600"))).isTrue();
+        assertThat(PayrollCalculator.isCents(new BigDecimal("1234.567"))).isFalse();
+        assertThat(PayrollCalculator.isCents(new BigDecimal("1E+30"))).isFalse();
+        assertThat(PayrollCalculator.isCents(null)).isFalse();
+
+        assertThat(PayrollCalculator.isBasisPoints(new BigDecimal("0.30"))).isTrue();
+        assertThat(PayrollCalculator.isBasisPoints(new BigDecimal("0.1234"))).isTrue();
+        assertThat(PayrollCalculator.isBasisPoints(new BigDecimal("0.12345"))).isFalse();
+        assertThat(PayrollCalculator.isBasisPoints(new BigDecimal("1000000"))).isFalse();
+    }
+
+    @Test
+    void planMatchesBigDecimalFormulaWithExtraDeductions() {
+        List<Deduction> deductions = new ArrayList<>(defaultDeductions());
+        deductions.add(new Deduction("DED_UNION", "Union Dues", new BigDecimal("0.0125")));
+        deductions.add(new Deduction("DED_LOAN", "Loan Repayment", new BigDecimal("0.0333")));
+        deductions.add(new Deduction("DED_ZERO", "Zero Rated", BigDecimal.ZERO));
+        DeductionPlan plan = DeductionPlan.compile(deductions);
+
+        assertThat(plan.isFixedPoint()).isTrue();
+        assertThat(plan.getDeductionSlotCount()).isEqualTo(DeductionPlan.FIXED_DEDUCTION_SLOTS + 3);
+
+        PayrollCalculator.Result result = plan.newResult();
+        Random random = new Random(SEED);
+        for (int i = 0; i < RANDOM_CASES / 10; i++) {
+            BigDecimal baseSalary = BigDecimal.valueOf(random.nextLong(0, 100_000_000_001L), 2);
+            assertPlanMatches(plan, baseSalary, result);
+        }
+        for (String boundary : new String[] {"0", "0.01", "0.05", "0.50", "1234.25", "99999999.99"}) {
+            assertPlanMatches(plan, new BigDecimal(boundary), result);
+        }
+    }
+
+    @Test
+    void planWithRateFinerThanBasisPointsFallsBackToBigDecimal() {
+        List<Deduction> deductions = new ArrayList<>(defaultDeductions());
+        deductions.add(new Deduction("DED_FINE", "Fine Grained", new BigDecimal("0.01255")));
+
+        assertThat(DeductionPlan.compile(deductions).isFixedPoint()).isFalse();
+    }
+
+    private static void assertSameAsBigDecimal(long cents, int basisPoints) {
+        BigDecimal expected = DeductionPlan.applyPercentage(PayrollCalculator.fromCents(cents), BigDecimal.valueOf(basisPoints, 4));
+        BigDecimal actual = PayrollCalculator.fromCents(PayrollCalculator.applyRate(cents, basisPoints));
+        assertThat(actual)
+                .as("%d cents at %d basis points", cents, basisPoints)
+                .isEqualTo(expected);
+    }
+
+    private static void assertPlanMatches(DeductionPlan plan, BigDecimal baseSalary, PayrollCalculator.Result result) {
+        plan.calculate(PayrollCalculator.toCents(baseSalary), result);
+
+        BigDecimal gross = baseSalary;
+        for (int slot = 0; slot < plan.getEarningSlotCount(); slot++) {
+            BigDecimal amount = DeductionPlan.applyPercentage(baseSalary, plan.getEarningPercentage(slot));
+            assertThat(PayrollCalculator.fromCents(result.getEarning(slot))).isEqualTo(amount);
+            gross = gross.add(amount);
+        }
+        BigDecimal totalDeductions = BigDecimal.ZERO.setScale(2);
+        for (int slot = 0; slot < plan.getDeductionSlotCount(); slot++) {
+            BigDecimal amount = DeductionPlan.applyPercentage(baseSalary, plan.getDeductionPercentage(slot));
+            assertThat(PayrollCalculator.fromCents(result.getDeduction(slot)))
+                    .as("%s of %s", plan.getDeductionName(slot), baseSalary)
+                    .isEqualTo(amount);
+            totalDeductions = totalDeductions.add(amount);
+        }
+
+        assertThat(PayrollCalculator.fromCents(result.getGrossCents())).isEqualByComparingTo(gross);
+        assertThat(PayrollCalculator.fromCents(result.getTotalDeductionsCents())).isEqualByComparingTo(totalDeductions);
+        assertThat(PayrollCalculator.fromCents(result.getNetCents())).isEqualByComparingTo(gross.subtract(totalDeductions));
+    }
+
+    // The rates the Seeder creates
+    private static List<Deduction> defaultDeductions() {
+        return List.of(
+                new Deduction("DED_TAX", DeductionPlan.EMPLOYEE_TAX, new BigDecimal("0.30")),
+                new Deduction("DED_PENSION", DeductionPlan.PENSION, new BigDecimal("0.06")),
+                new Deduction("DED_MED", DeductionPlan.MEDICAL_INSURANCE, new BigDecimal("0.05")),
+                new Deduction("DED_OTHERS", DeductionPlan.OTHERS, new BigDecimal("0.05")),
+                new Deduction("DED_HOUSING", DeductionPlan.HOUSING, new BigDecimal("0.14")),
+                new Deduction("DED_TRANSPORT", DeductionPlan.TRANSPORT, new BigDecimal("0.14")));
+    }
+}